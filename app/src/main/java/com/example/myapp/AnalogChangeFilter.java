@@ -0,0 +1,91 @@
+package com.example.myapp;
+
+/**
+ * Drops analog samples that do not differ from what the receiver already has.
+ * A sample is sent when either axis moved more than the source's dead-band
+ * since the last sent value, when it lands exactly on rest (0) or full scale
+ * (+/-1), or when the last send is older than the heartbeat interval, so a
+ * still but active source keeps refreshing the receiver at a low rate.
+ *
+ * Sources are the {@link WireProtocol#SOURCES} codes. Counts per source show
+ * what was saved. Thread-safe: sticks report from the UI thread, tilt from
+ * the sensor thread.
+ */
+class AnalogChangeFilter {
+
+    static final float DEFAULT_DEADBAND = 0.005f; // 0.5% of full scale
+    static final long DEFAULT_HEARTBEAT_NANOS = 250_000_000L; // 4 Hz
+
+    private final float[] deadband = new float[WireProtocol.SOURCES.length + 1];
+    private long heartbeatNanos = DEFAULT_HEARTBEAT_NANOS;
+
+    private final boolean[] hasSent = new boolean[deadband.length];
+    private final float[] sentX = new float[deadband.length];
+    private final float[] sentY = new float[deadband.length];
+    private final long[] sentAtNanos = new long[deadband.length];
+    private final long[] sentCount = new long[deadband.length];
+    private final long[] suppressedCount = new long[deadband.length];
+
+    AnalogChangeFilter() {
+        for (int i = 0; i < deadband.length; i++) {
+            deadband[i] = DEFAULT_DEADBAND;
+        }
+    }
+
+    /** 0 sends every sample that changed at all. */
+    synchronized void setDeadband(int source, float epsilon) {
+        if (epsilon < 0f)
+            throw new IllegalArgumentException("Negative dead-band");
+        deadband[source] = epsilon;
+    }
+
+    synchronized void setHeartbeatNanos(long heartbeatNanos) {
+        this.heartbeatNanos = heartbeatNanos;
+    }
+
+    /**
+     * Decides whether the sample should be sent, and if so records it as the
+     * receiver's current value.
+     */
+    synchronized boolean shouldSend(int source, float x, float y, long nowNanos) {
+        if (hasSent[source] && !changed(source, x, y) && nowNanos - sentAtNanos[source] < heartbeatNanos) {
+            suppressedCount[source]++;
+            return false;
+        }
+        hasSent[source] = true;
+        sentX[source] = x;
+        sentY[source] = y;
+        sentAtNanos[source] = nowNanos;
+        sentCount[source]++;
+        return true;
+    }
+
+    private boolean changed(int source, float x, float y) {
+        float px = sentX[source];
+        float py = sentY[source];
+        if (px == x && py == y)
+            return false;
+        float epsilon = deadband[source];
+        return Math.abs(x - px) > epsilon || Math.abs(y - py) > epsilon || isEndpoint(x) || isEndpoint(y);
+    }
+
+    // Rest and full scale are exact, a release must not stop a hair short of 0
+    private static boolean isEndpoint(float v) {
+        return v == 0f || v == 1f || v == -1f;
+    }
+
+    /** Forgets what was sent, e.g. for a new connection; counts are kept. */
+    synchronized void reset() {
+        for (int i = 0; i < hasSent.length; i++) {
+            hasSent[i] = false;
+        }
+    }
+
+    synchronized long getSentCount(int source) {
+        return sentCount[source];
+    }
+
+    synchronized long getSuppressedCount(int source) {
+        return suppressedCount[source];
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.myapp;
+
+/**
+ * Current state of the on-screen controller: one bit per held button and
+ * x, y for both sticks and tilt. Written from the UI and sensor threads,
+ * sampled by {@link StateSnapshotSender}.
+ */
+public class ControllerState {
+
+    private int buttons = 0;
+    private final float[] axes = new float[WireProtocol.STATE_AXES];
+
+    /** Unknown keys are ignored. */
+    public synchronized void setButton(String key, String group, boolean pressed) {
+        int bit = WireProtocol.buttonBit(WireProtocol.keyCode(key), WireProtocol.groupCode(group));
+        if (bit < 0)
+            return;
+        if (pressed) {
+            buttons |= 1 << bit;
+        } else {
+            buttons &= ~(1 << bit);
+        }
+    }
+
+    /** Unknown sources are ignored. */
+    public synchronized void setAnalog(String source, float x, float y) {
+        int code = WireProtocol.sourceCode(source);
+        if (code == 0)
+            return;
+        axes[(code - 1) * 2] = x;
+        axes[(code - 1) * 2 + 1] = y;
+    }
+
+    public synchronized void clear() {
+        buttons = 0;
+        java.util.Arrays.fill(axes, 0f);
+    }
+
+    /** Copies the quantized axes into {@code axesOut}. @return the button mask */
+    synchronized int sample(int[] axesOut) {
+        for (int i = 0; i < axes.length; i++) {
+            axesOut[i] = WireProtocol.quantizeAxis(axes[i]);
+        }
+        return buttons;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.myapp;
+
+import android.util.Log;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+
+/** Blocking {@link DatagramSocket} transport, the original behaviour. */
+class DatagramSocketTransport implements Transport {
+    private static final String TAG = "DatagramSocketTransport";
+
+    private DatagramSocket socket;
+    private DatagramPacket sendPacket; // Guarded by itself
+    private Thread receiveThread;
+
+    @Override
+    public void open(InetAddress address, int port) throws IOException {
+        socket = new DatagramSocket();
+        sendPacket = new DatagramPacket(new byte[0], 0, address, port);
+    }
+
+    @Override
+    public void send(byte[] data, int offset, int length) throws IOException {
+        synchronized (sendPacket) {
+            sendPacket.setData(data, offset, length);
+            socket.send(sendPacket);
+        }
+    }
+
+    @Override
+    public int receive(byte[] buffer, int timeoutMs) throws IOException {
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        socket.setSoTimeout(timeoutMs);
+        try {
+            socket.receive(packet);
+        } finally {
+            socket.setSoTimeout(0);
+        }
+        return packet.getLength();
+    }
+
+    @Override
+    public void startReceiving(Receiver receiver) {
+        receiveThread = new Thread(() -> {
+            byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (!socket.isClosed()) {
+                try {
+                    packet.setLength(buffer.length);
+                    socket.receive(packet);
+                    receiver.onDatagram(buffer, packet.getLength());
+                } catch (IOException e) {
+                    if (!socket.isClosed()) {
+                        Log.e(TAG, "Receive failed", e);
+                    }
+                }
+            }
+        }, "UdpReceiver");
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+    }
+
+    @Override
+    public void close() {
+        if (socket != null) {
+            socket.close(); // Unblocks receive()
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.myapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer/single-consumer ring of primitive input records.
+ *
+ * Records live in parallel arrays, so offering and polling never allocate.
+ * The consumer claims a record by advancing head with a CAS. The producer
+ * uses the same CAS to evict the oldest record when the ring is full and the
+ * overflow policy allows it; the consumer then sees its CAS fail and simply
+ * reads the next record.
+ */
+class EventRing {
+
+    enum OverflowPolicy {
+        /** Evict the oldest droppable record to make room, e.g. stale motion. */
+        DROP_OLDEST,
+        /** Discard the record being offered. */
+        DROP_NEWEST,
+        /**
+         * Wait for the consumer to make room, up to {@link #setMaxWaitNanos}, then
+         * discard the record being offered. Used for button press/release.
+         */
+        NEVER_DROP
+    }
+
+    /** One input event. Reused by the consumer between polls. */
+    static final class Record {
+        int type;
+        int code;
+        int group;
+        int value;
+        float x;
+        float y;
+        final float[] aux = new float[AUX_SIZE]; // Extra payload for combined frames
+        long timeNanos;
+    }
+
+    static final int AUX_SIZE = 6;
+    private static final int MAX_TYPES = 64;
+    // Producers are usually the UI thread: long enough for a busy sender, short of a dropped frame
+    static final long DEFAULT_MAX_WAIT_NANOS = 10_000_000L;
+
+    private final int capacity;
+    private final int mask;
+    private final int[] types;
+    private final int[] codes;
+    private final int[] groups;
+    private final int[] values;
+    private final float[] xs;
+    private final float[] ys;
+    private final float[] auxes;
+    private final long[] times;
+
+    private final OverflowPolicy[] policies = new OverflowPolicy[MAX_TYPES];
+
+    private final AtomicLong head = new AtomicLong(); // Next record to consume
+    private final AtomicLong tail = new AtomicLong(); // Next slot to publish
+    private long producerTail = 0; // Producer's private copy of tail
+    private int holdDepth = 0; // > 0 while the producer holds back publication, see beginBatch()
+    private long maxWaitNanos = DEFAULT_MAX_WAIT_NANOS;
+
+    private volatile Thread consumerThread;
+    private volatile boolean consumerParked = false;
+    private volatile boolean closed = false;
+    private volatile long droppedCount = 0;
+
+    EventRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        types = new int[capacity];
+        codes = new int[capacity];
+        groups = new int[capacity];
+        values = new int[capacity];
+        xs = new float[capacity];
+        ys = new float[capacity];
+        auxes = new float[capacity * AUX_SIZE];
+        times = new long[capacity];
+        for (int i = 0; i < MAX_TYPES; i++) {
+            policies[i] = OverflowPolicy.NEVER_DROP;
+        }
+    }
+
+    void setOverflowPolicy(int type, OverflowPolicy policy) {
+        policies[type] = policy;
+    }
+
+    /** How long a NEVER_DROP offer waits for room before it is dropped. */
+    void setMaxWaitNanos(long maxWaitNanos) {
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    long getDroppedCount() {
+        return droppedCount;
+    }
+
+    // Producer side
+
+    /** @return false if the record (or nothing, when the ring is closed) was dropped */
+    boolean offer(int type, int code, int group, int value, float x, float y, long timeNanos) {
+        return offer(type, code, group, value, x, y, null, timeNanos);
+    }
+
+    /** Same as above, also copying {@link #AUX_SIZE} extra values from {@code aux} if not null. */
+    boolean offer(int type, int code, int group, int value, float x, float y, float[] aux, long timeNanos) {
+        if (closed)
+            return false;
+        long t = producerTail;
+        long waitStart = 0;
+        while (t - head.get() >= capacity) {
+            // A held batch that fills the ring is published early, otherwise nobody could make room
+            publish();
+            if (waitStart == 0)
+                waitStart = System.nanoTime();
+            if (closed || !makeRoom(type, waitStart))
+                return false;
+        }
+
+        int i = (int) (t & mask);
+        types[i] = type;
+        codes[i] = code;
+        groups[i] = group;
+        values[i] = value;
+        xs[i] = x;
+        ys[i] = y;
+        if (aux != null) {
+            System.arraycopy(aux, 0, auxes, i * AUX_SIZE, AUX_SIZE);
+        }
+        times[i] = timeNanos;
+        producerTail = t + 1;
+        if (holdDepth == 0) {
+            publish();
+        }
+        return true;
+    }
+
+    /**
+     * Holds back the records offered from now on until the matching
+     * {@link #endBatch()}, so the consumer sees them all at once and can send
+     * them together. Calls may nest.
+     */
+    void beginBatch() {
+        holdDepth++;
+    }
+
+    /** Publishes the records offered since {@link #beginBatch()}. */
+    void endBatch() {
+        if (holdDepth > 0 && --holdDepth == 0) {
+            publish();
+        }
+    }
+
+    private void publish() {
+        if (tail.get() == producerTail)
+            return;
+        tail.set(producerTail);
+        if (consumerParked) {
+            LockSupport.unpark(consumerThread);
+        }
+    }
+
+    // Called while full. Returns false if the offered record has to be dropped instead.
+    private boolean makeRoom(int type, long waitStart) {
+        OverflowPolicy policy = policies[type];
+        if (policy == OverflowPolicy.DROP_NEWEST) {
+            droppedCount++;
+            return false;
+        }
+
+        long h = head.get();
+        if (producerTail - h < capacity)
+            return true; // Consumer caught up meanwhile
+
+        if (policies[types[(int) (h & mask)]] == OverflowPolicy.DROP_OLDEST) {
+            if (head.compareAndSet(h, h + 1)) {
+                droppedCount++;
+            }
+            return true;
+        }
+
+        // The oldest record must not be dropped
+        if (policy == OverflowPolicy.DROP_OLDEST) {
+            droppedCount++;
+            return false;
+        }
+        // NEVER_DROP: wait for the sender, but never stall the producer for long
+        if (System.nanoTime() - waitStart > maxWaitNanos) {
+            droppedCount++;
+            return false;
+        }
+        Thread.yield();
+        return true;
+    }
+
+    // Consumer side
+
+    /** Copies the oldest record into {@code out}. @return false if the ring is empty */
+    boolean poll(Record out) {
+        while (true) {
+            long h = head.get();
+            if (h >= tail.get())
+                return false;
+
+            int i = (int) (h & mask);
+            out.type = types[i];
+            out.code = codes[i];
+            out.group = groups[i];
+            out.value = values[i];
+            out.x = xs[i];
+            out.y = ys[i];
+            System.arraycopy(auxes, i * AUX_SIZE, out.aux, 0, AUX_SIZE);
+            out.timeNanos = times[i];
+
+            if (head.compareAndSet(h, h + 1))
+                return true;
+            // The producer evicted this record while we were reading it, try the next one
+        }
+    }
+
+    /**
+     * Waits until a record is available or the ring is closed. Busy-polls for
+     * {@code spins} iterations first, which is cheaper than a park/unpark
+     * round trip when events arrive back to back.
+     */
+    void awaitRecord(int spins) {
+        awaitRecord(spins, -1);
+    }
+
+    /** Same as above, but gives up after {@code timeoutNanos} unless it is negative. */
+    void awaitRecord(int spins, long timeoutNanos) {
+        for (int i = 0; i < spins; i++) {
+            if (!isEmpty() || closed)
+                return;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        consumerThread = Thread.currentThread();
+        consumerParked = true;
+        while (isEmpty() && !closed && !Thread.currentThread().isInterrupted()) {
+            if (timeoutNanos < 0) {
+                LockSupport.park(this);
+            } else {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    break;
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+        consumerParked = false;
+    }
+
+    /** Stops the ring and wakes the consumer. Offers fail until {@link #reset()}. */
+    void close() {
+        closed = true;
+        Thread consumer = consumerThread;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /** Empties the ring for a new session. Only call while no consumer is running. */
+    void reset() {
+        tail.set(producerTail);
+        head.set(producerTail);
+        holdDepth = 0;
+        consumerThread = null;
+        consumerParked = false;
+        closed = false;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+}
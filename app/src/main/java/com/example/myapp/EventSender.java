@@ -0,0 +1,271 @@
+package com.example.myapp;
+
+import java.io.IOException;
+
+/**
+ * Consumer side of the {@link EventRing}: turns queued records into binary
+ * frames and hands them to a {@link FrameSink}. Runs on the sender thread
+ * only and reuses its buffers, so it does not allocate.
+ *
+ * With batching on, everything sent by one {@link #drain()} is packed into
+ * as few {@link WireProtocol#TYPE_BATCH} containers as fit, sharing one
+ * sequence number and timestamp. A lone record still goes out as a plain frame.
+ *
+ * Datagrams that contain a button, click, key or swipe are flagged reliable and
+ * handed to a {@link ReliableLane}, which resends them until acked.
+ *
+ * A mouse button press or release is also an ordering barrier: nothing
+ * queued after it is sent until its datagram is acked (or
+ * {@link #MAX_BARRIER_NANOS} passed), so drag motion cannot reach the
+ * receiver ahead of a press that had to be resent.
+ */
+class EventSender {
+
+    interface FrameSink {
+        void sendFrame(byte[] frame, int length) throws IOException;
+    }
+
+    private static final int RELIABLE_SLOTS = 32;
+    static final long MAX_BARRIER_NANOS = 200_000_000L; // Then the receiver is likely gone, carry on
+
+    private final EventRing ring;
+    private final FrameSink sink;
+    private final byte[] frameBuffer = new byte[WireProtocol.MAX_FRAME_SIZE];
+    private final EventRing.Record record = new EventRing.Record();
+    private final EventRing.Record merged = new EventRing.Record();
+    private final MotionCoalescer coalescer = new MotionCoalescer();
+    private final ReliableLane reliableLane = new ReliableLane(RELIABLE_SLOTS);
+
+    // Pending batch. The first record is kept as a plain frame until a second one arrives.
+    private final byte[] batchBuffer = new byte[WireProtocol.MAX_BATCH_SIZE];
+    private final byte[] firstFrame = new byte[WireProtocol.MAX_FRAME_SIZE];
+    private int firstLength;
+    private int batchLength;
+    private int batchCount = 0;
+    private int batchSequence;
+    private long batchTimeMs;
+
+    private volatile boolean coalescing = true;
+    private volatile boolean batching = false;
+    private long sessionStartNanos;
+    private int sequence = 0;
+    private long framesSent = 0;
+
+    // Ordering barrier: sequence of the unacked datagram with a mouse button edge, or -1.
+    // Cleared by the ack on the receive thread.
+    private volatile int barrierSeq = -1;
+    private long barrierDeadline;
+    private boolean barrierInFrame = false; // The datagram being built carries a mouse button edge
+
+    EventSender(EventRing ring, FrameSink sink) {
+        this.ring = ring;
+        this.sink = sink;
+    }
+
+    /** Starts a new session: sequence numbers and timestamps restart from zero. */
+    void reset(long sessionStartNanos) {
+        this.sessionStartNanos = sessionStartNanos;
+        sequence = 0;
+        framesSent = 0;
+        batchCount = 0;
+        barrierSeq = -1;
+        barrierInFrame = false;
+        coalescer.clear();
+        reliableLane.clear();
+    }
+
+    void setCoalescing(boolean enabled) {
+        coalescing = enabled;
+    }
+
+    void setBatching(boolean enabled) {
+        batching = enabled;
+    }
+
+    /** Datagrams handed to the sink; a batch counts once. Resends are not counted. */
+    long getFramesSent() {
+        return framesSent;
+    }
+
+    ReliableLane getReliableLane() {
+        return reliableLane;
+    }
+
+    /**
+     * Called from the receive thread when the receiver acknowledged a reliable datagram.
+     *
+     * @return true if that lifted the ordering barrier, and queued records can go out again
+     */
+    boolean onAck(int seq) {
+        reliableLane.onAck(seq, System.nanoTime());
+        if (seq != barrierSeq)
+            return false;
+        barrierSeq = -1;
+        return true;
+    }
+
+    /** How long sending stays held back behind a mouse button edge, or -1 if it is not. */
+    long nanosUntilBarrierLifts(long nowNanos) {
+        if (barrierSeq < 0)
+            return -1;
+        long remaining = barrierDeadline - nowNanos;
+        if (remaining <= 0) {
+            barrierSeq = -1;
+            return -1;
+        }
+        return remaining;
+    }
+
+    /** Resends reliable datagrams whose ack is overdue. Sender thread only. */
+    void retransmitDue() throws IOException {
+        reliableLane.retransmitDue(System.nanoTime(), sink);
+    }
+
+    /**
+     * Sends everything currently queued. With coalescing on, consecutive motion
+     * and analog records are merged into one frame each before the next edge
+     * event (click, button, key, scroll) goes out.
+     */
+    void drain() throws IOException {
+        if (nanosUntilBarrierLifts(System.nanoTime()) >= 0)
+            return;
+        EventRing.Record r = record;
+        // Only take what is queued right now, so a producer that never lets the
+        // ring run empty cannot hold back the merged motion forever
+        int budget = ring.size();
+        while (budget-- > 0 && ring.poll(r)) {
+            if (coalescing && coalescer.add(r))
+                continue;
+            flushCoalesced();
+            send(r);
+            if (r.type == WireProtocol.TYPE_MOUSE_BUTTON)
+                break; // The rest waits for its ack
+        }
+        flushCoalesced();
+        flushBatch();
+    }
+
+    private void flushCoalesced() throws IOException {
+        while (coalescer.next(merged)) {
+            send(merged);
+        }
+    }
+
+    private void send(EventRing.Record r) throws IOException {
+        if (batching) {
+            addToBatch(r);
+            return;
+        }
+        int seq = nextSequence();
+        int length = encode(r, frameBuffer, seq, timeMs(r));
+        barrierInFrame = r.type == WireProtocol.TYPE_MOUSE_BUTTON;
+        transmit(frameBuffer, length, seq);
+    }
+
+    private void addToBatch(EventRing.Record r) throws IOException {
+        if (batchCount == 0) {
+            batchSequence = nextSequence();
+            batchTimeMs = timeMs(r);
+            firstLength = encode(r, firstFrame, batchSequence, batchTimeMs);
+            batchCount = 1;
+            barrierInFrame = r.type == WireProtocol.TYPE_MOUSE_BUTTON;
+            return;
+        }
+        if (batchCount == 1) {
+            batchLength = WireProtocol.beginBatch(batchBuffer, 0, batchSequence, batchTimeMs);
+            batchLength = WireProtocol.appendToBatch(batchBuffer, 0, batchLength, firstFrame, 0, firstLength);
+        }
+        int length = encode(r, frameBuffer, batchSequence, batchTimeMs);
+        int newLength = WireProtocol.appendToBatch(batchBuffer, 0, batchLength, frameBuffer, 0, length);
+        if (newLength < 0) {
+            // Full: send what we have and start the next datagram with this record
+            flushBatch();
+            addToBatch(r);
+            return;
+        }
+        batchLength = newLength;
+        batchCount++;
+        barrierInFrame |= r.type == WireProtocol.TYPE_MOUSE_BUTTON;
+    }
+
+    private void flushBatch() throws IOException {
+        int count = batchCount;
+        if (count == 0)
+            return;
+        batchCount = 0;
+        if (count == 1) {
+            transmit(firstFrame, firstLength, batchSequence);
+        } else {
+            transmit(batchBuffer, batchLength, batchSequence);
+        }
+    }
+
+    private void transmit(byte[] frame, int length, int seq) throws IOException {
+        // Tracked before sending, so an ack cannot arrive before we know about the datagram
+        if (WireProtocol.isReliable(frame, 0)) {
+            reliableLane.track(seq, frame, length, System.nanoTime());
+        }
+        if (barrierInFrame) {
+            barrierInFrame = false;
+            barrierDeadline = System.nanoTime() + MAX_BARRIER_NANOS;
+            barrierSeq = seq;
+        }
+        sink.sendFrame(frame, length);
+        framesSent++;
+    }
+
+    private long timeMs(EventRing.Record r) {
+        return (r.timeNanos - sessionStartNanos) / 1_000_000L;
+    }
+
+    private static int encode(EventRing.Record r, byte[] buf, int seq, long timeMs) {
+        int length = encodeRecord(r, buf, seq, timeMs);
+        if (isReliable(r.type)) {
+            WireProtocol.setReliable(buf, 0);
+        }
+        return length;
+    }
+
+    // Edges that leave the receiver in the wrong state if lost. Motion, analog,
+    // scroll and zoom stay unreliable: a newer sample or the next notch makes up for them.
+    private static boolean isReliable(int type) {
+        return type == WireProtocol.TYPE_BUTTON || type == WireProtocol.TYPE_CLICK || type == WireProtocol.TYPE_KEY
+                || type == WireProtocol.TYPE_SWIPE || type == WireProtocol.TYPE_MOUSE_BUTTON;
+    }
+
+    private static int encodeRecord(EventRing.Record r, byte[] buf, int seq, long timeMs) {
+        switch (r.type) {
+            case WireProtocol.TYPE_MOTION:
+                return WireProtocol.encodeMotion(buf, 0, seq, timeMs, r.x, r.y);
+            case WireProtocol.TYPE_CLICK:
+                return WireProtocol.encodeClick(buf, 0, seq, timeMs, r.code);
+            case WireProtocol.TYPE_SCROLL:
+                return WireProtocol.encodeScroll(buf, 0, seq, timeMs, r.value);
+            case WireProtocol.TYPE_SMOOTH_SCROLL:
+                return WireProtocol.encodeSmoothScroll(buf, 0, seq, timeMs, r.value);
+            case WireProtocol.TYPE_HSCROLL:
+                return WireProtocol.encodeHorizontalScroll(buf, 0, seq, timeMs, r.value);
+            case WireProtocol.TYPE_ZOOM:
+                return WireProtocol.encodeZoom(buf, 0, seq, timeMs, r.value);
+            case WireProtocol.TYPE_SWIPE:
+                return WireProtocol.encodeSwipe(buf, 0, seq, timeMs, r.code);
+            case WireProtocol.TYPE_MOUSE_BUTTON:
+                return WireProtocol.encodeMouseButton(buf, 0, seq, timeMs, r.code, r.value != 0);
+            case WireProtocol.TYPE_KEY:
+                return WireProtocol.encodeKey(buf, 0, seq, timeMs, r.code);
+            case WireProtocol.TYPE_BUTTON:
+                return WireProtocol.encodeButton(buf, 0, seq, timeMs, r.code, r.group, r.value != 0);
+            case WireProtocol.TYPE_ANALOG:
+                return WireProtocol.encodeAnalog(buf, 0, seq, timeMs, r.code, r.x, r.y);
+            case WireProtocol.TYPE_TICK:
+                return WireProtocol.encodeTick(buf, 0, seq, timeMs, r.value, r.x, r.y, r.aux);
+            default:
+                throw new IllegalArgumentException("Unknown event type " + r.type);
+        }
+    }
+
+    private int nextSequence() {
+        sequence = (sequence + 1) & 0xFFFF;
+        return sequence;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.myapp;
 
 import android.content.pm.ActivityInfo;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
@@ -12,19 +13,19 @@ import android.widget.Button;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
-import org.json.JSONException;
-import org.json.JSONObject;
 import android.content.SharedPreferences;
 import android.content.Context;
 import android.widget.TextView;
 import android.widget.LinearLayout;
 
 public class GameFragment extends Fragment implements JoystickView.JoystickListener, SensorHelper.SensorCallback {
+    private static final String TAG = "GameFragment";
 
     private NetworkManager networkManager;
     private SensorHelper sensorHelper;
-    private boolean isTiltEnabled = false;
-    private float tiltSensitivity = 1.0f;
+    // Read on the sensor thread in onTiltDetected
+    private volatile boolean isTiltEnabled = false;
+    private volatile float tiltSensitivity = 1.0f;
     private float leftStickSensitivity = 1.0f;
     private float rightStickSensitivity = 1.0f;
 
@@ -45,6 +46,12 @@ public class GameFragment extends Fragment implements JoystickView.JoystickListe
     private TextView tvSelectedControl;
     private SeekBar seekSize, seekOpacity;
     private SharedPreferences prefs;
+    private LatencyOverlay latencyOverlay;
+    private final TouchDispatchLatency touchLatency = new TouchDispatchLatency();
+
+    // Snapshot mode: the whole controller state is sent at a fixed rate instead of per-event frames
+    private final ControllerState controllerState = new ControllerState();
+    private boolean useStateSnapshots = false;
 
     @Nullable
     @Override
@@ -53,6 +60,26 @@ public class GameFragment extends Fragment implements JoystickView.JoystickListe
         return inflater.inflate(R.layout.fragment_game, container, false);
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        latencyOverlay.start();
+        // One joystick move can produce up to 9 events; batching is process-wide, so only while visible
+        networkManager.setBatching(true);
+        if (useStateSnapshots) {
+            networkManager.startStateSnapshots(controllerState);
+        }
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        latencyOverlay.stop();
+        networkManager.setBatching(false);
+        networkManager.stopStateSnapshots();
+        Log.d(TAG, "Sticks: " + touchLatency);
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
@@ -66,6 +93,7 @@ public class GameFragment extends Fragment implements JoystickView.JoystickListe
         super.onViewCreated(view, savedInstanceState);
 
         networkManager = NetworkManager.getInstance();
+        latencyOverlay = new LatencyOverlay(view.findViewById(R.id.tv_latency), networkManager);
         sensorHelper = new SensorHelper(requireContext());
         sensorHelper.setCallback(this);
 
@@ -82,6 +110,9 @@ public class GameFragment extends Fragment implements JoystickView.JoystickListe
 
         leftJoystick.setListener(this);
         rightJoystick.setListener(this);
+        leftJoystick.setDispatchLatency(touchLatency);
+        rightJoystick.setDispatchLatency(touchLatency);
+        latencyOverlay.setTouchLatency(touchLatency);
 
         // Setup Buttons with Press/Release logic
         setupButton(view.findViewById(R.id.btn_up), "UP", "dpad");
@@ -120,6 +151,33 @@ public class GameFragment extends Fragment implements JoystickView.JoystickListe
             }
         });
 
+        CheckBox cbSnapshots = view.findViewById(R.id.cb_state_snapshots);
+        SharedPreferences settings = requireContext().getSharedPreferences("GyroPrefs", Context.MODE_PRIVATE);
+        useStateSnapshots = settings.getBoolean("state_snapshots", false);
+        cbSnapshots.setChecked(useStateSnapshots);
+        cbSnapshots.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            useStateSnapshots = isChecked;
+            settings.edit().putBoolean("state_snapshots", isChecked).apply();
+            if (isChecked) {
+                networkManager.startStateSnapshots(controllerState);
+            } else {
+                networkManager.stopStateSnapshots();
+            }
+        });
+
+        // Low-latency touch: sticks (and the touchpad) get touches as they arrive, not per frame
+        CheckBox cbUnbuffered = view.findViewById(R.id.cb_unbuffered_touch);
+        boolean unbuffered = settings.getBoolean("unbuffered_touch", false);
+        cbUnbuffered.setChecked(unbuffered);
+        leftJoystick.setUnbufferedDispatch(unbuffered);
+        rightJoystick.setUnbufferedDispatch(unbuffered);
+        cbUnbuffered.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            settings.edit().putBoolean("unbuffered_touch", isChecked).apply();
+            leftJoystick.setUnbufferedDispatch(isChecked);
+            rightJoystick.setUnbufferedDispatch(isChecked);
+            touchLatency.reset(); // Measure the new mode on its own
+        });
+
         setupSensitivitySeekBar(view.findViewById(R.id.seek_sensitivity_left), value -> {
             leftStickSensitivity = value;
             leftJoystick.setSensitivity(value);
@@ -332,10 +390,13 @@ public class GameFragment extends Fragment implements JoystickView.JoystickListe
                 return handleCustomizationTouch(v, event, keyName);
             }
 
-            if (event.getAction() == MotionEvent.ACTION_DOWN) {
+            // Each finger is split to the view it landed on, so a button only sees
+            // its own; masked, in case a second finger lands on the same button
+            int action = event.getActionMasked();
+            if (action == MotionEvent.ACTION_DOWN) {
                 sendButtonEvent(keyName, group, true);
                 v.setPressed(true);
-            } else if (event.getAction() == MotionEvent.ACTION_UP || event.getAction() == MotionEvent.ACTION_CANCEL) {
+            } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
                 sendButtonEvent(keyName, group, false);
                 v.setPressed(false);
             }
@@ -368,15 +429,10 @@ public class GameFragment extends Fragment implements JoystickView.JoystickListe
     }
 
     private void sendButtonEvent(String key, String group, boolean isPressed) {
-        try {
-            JSONObject json = new JSONObject();
-            json.put("type", "button");
-            json.put("group", group); // dpad, action, shoulder, system
-            json.put("key", key);
-            json.put("action", isPressed ? "PRESS" : "RELEASE");
-            networkManager.sendJson(json.toString());
-        } catch (JSONException e) {
-            e.printStackTrace();
+        // group: dpad, action, shoulder, system, keyboard
+        controllerState.setButton(key, group, isPressed);
+        if (!networkManager.isStateSnapshotActive()) {
+            networkManager.sendButton(key, group, isPressed);
         }
     }
 
@@ -396,47 +452,47 @@ public class GameFragment extends Fragment implements JoystickView.JoystickListe
         // NOTE: View.OnTouchListener on JoystickView will override onTouchEvent if it
         // returns true.
         // So we can set a listener on JoystickView too!
-        String source = (id == R.id.joystick_left) ? "left_stick" : "right_stick";
+        networkManager.beginInputFrame();
         try {
-            JSONObject json = new JSONObject();
-            json.put("type", "analog");
-            json.put("source", source);
-            json.put("x", x);
-            json.put("y", y);
-            networkManager.sendJson(json.toString());
-
-            // Dual Mapping for Left Joystick (WASD + Arrows)
-            if (id == R.id.joystick_left) {
-                // Thresholds for triggering keys
-                boolean currentUp = y < -0.5f; // Up is negative Y
-                boolean currentDown = y > 0.5f;
-                boolean currentLeft = x < -0.5f;
-                boolean currentRight = x > 0.5f;
-
-                if (currentUp != isLeftStickUp) {
-                    isLeftStickUp = currentUp;
-                    sendButtonEvent("W", "keyboard", isLeftStickUp);
-                    sendButtonEvent("UP", "keyboard", isLeftStickUp);
-                }
-                if (currentDown != isLeftStickDown) {
-                    isLeftStickDown = currentDown;
-                    sendButtonEvent("S", "keyboard", isLeftStickDown);
-                    sendButtonEvent("DOWN", "keyboard", isLeftStickDown);
-                }
-                if (currentLeft != isLeftStickLeft) {
-                    isLeftStickLeft = currentLeft;
-                    sendButtonEvent("A", "keyboard", isLeftStickLeft);
-                    sendButtonEvent("LEFT", "keyboard", isLeftStickLeft);
-                }
-                if (currentRight != isLeftStickRight) {
-                    isLeftStickRight = currentRight;
-                    sendButtonEvent("D", "keyboard", isLeftStickRight);
-                    sendButtonEvent("RIGHT", "keyboard", isLeftStickRight);
-                }
-            }
+            sendJoystickState(x, y, id);
+        } finally {
+            networkManager.endInputFrame();
+        }
+    }
 
-        } catch (JSONException e) {
-            e.printStackTrace();
+    // Analog position plus the WASD/arrow mapping, sent as one input frame
+    private void sendJoystickState(float x, float y, int id) {
+        String source = (id == R.id.joystick_left) ? "left_stick" : "right_stick";
+        sendAnalog(source, x, y);
+
+        // Dual Mapping for Left Joystick (WASD + Arrows)
+        if (id == R.id.joystick_left) {
+            // Thresholds for triggering keys
+            boolean currentUp = y < -0.5f; // Up is negative Y
+            boolean currentDown = y > 0.5f;
+            boolean currentLeft = x < -0.5f;
+            boolean currentRight = x > 0.5f;
+
+            if (currentUp != isLeftStickUp) {
+                isLeftStickUp = currentUp;
+                sendButtonEvent("W", "keyboard", isLeftStickUp);
+                sendButtonEvent("UP", "keyboard", isLeftStickUp);
+            }
+            if (currentDown != isLeftStickDown) {
+                isLeftStickDown = currentDown;
+                sendButtonEvent("S", "keyboard", isLeftStickDown);
+                sendButtonEvent("DOWN", "keyboard", isLeftStickDown);
+            }
+            if (currentLeft != isLeftStickLeft) {
+                isLeftStickLeft = currentLeft;
+                sendButtonEvent("A", "keyboard", isLeftStickLeft);
+                sendButtonEvent("LEFT", "keyboard", isLeftStickLeft);
+            }
+            if (currentRight != isLeftStickRight) {
+                isLeftStickRight = currentRight;
+                sendButtonEvent("D", "keyboard", isLeftStickRight);
+                sendButtonEvent("RIGHT", "keyboard", isLeftStickRight);
+            }
         }
     }
 
@@ -463,15 +519,13 @@ public class GameFragment extends Fragment implements JoystickView.JoystickListe
         // roll is steering (Left/Right)
         // pitch is drive (Forward/Back)
 
-        try {
-            JSONObject json = new JSONObject();
-            json.put("type", "analog");
-            json.put("source", "tilt");
-            json.put("x", roll * tiltSensitivity);
-            json.put("y", pitch * tiltSensitivity); // Invert if needed by receiver
-            networkManager.sendJson(json.toString());
-        } catch (JSONException e) {
-            e.printStackTrace();
+        sendAnalog("tilt", roll * tiltSensitivity, pitch * tiltSensitivity); // Invert y if needed by receiver
+    }
+
+    private void sendAnalog(String source, float x, float y) {
+        controllerState.setAnalog(source, x, y);
+        if (!networkManager.isStateSnapshotActive()) {
+            networkManager.sendAnalog(source, x, y);
         }
     }
 }
@@ -0,0 +1,41 @@
+package com.example.myapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.hardware.Sensor;
+
+/**
+ * Persists the gyro bias found by {@link GyroCalibrator}, keyed by the
+ * gyroscope's vendor and name so a restored backup from another phone is not
+ * applied to different hardware.
+ */
+class GyroCalibrationStore {
+    private static final String PREFS = "GyroCalibration";
+
+    private final SharedPreferences prefs;
+    private final String key;
+
+    GyroCalibrationStore(Context context, Sensor gyroscope) {
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        key = gyroscope.getVendor() + "/" + gyroscope.getName();
+    }
+
+    /** @return true if a profile was found for this gyroscope */
+    boolean load(GyroCalibrator calibrator) {
+        if (!prefs.contains(key + ".x"))
+            return false;
+        calibrator.setBias(prefs.getFloat(key + ".x", 0f), prefs.getFloat(key + ".y", 0f),
+                prefs.getFloat(key + ".z", 0f));
+        return true;
+    }
+
+    void save(GyroCalibrator calibrator) {
+        if (!calibrator.isCalibrated())
+            return;
+        prefs.edit()
+                .putFloat(key + ".x", calibrator.getBiasX())
+                .putFloat(key + ".y", calibrator.getBiasY())
+                .putFloat(key + ".z", calibrator.getBiasZ())
+                .apply();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.myapp;
+
+/**
+ * Estimates the gyroscope's zero-rate bias. Samples are grouped into short
+ * windows and each window's per-axis mean and variance are kept with
+ * Welford's running update. A window is "still" when every axis varies less
+ * than sensor noise and the mean is close enough to zero (or, once calibrated,
+ * to the current bias) that it cannot be a slow deliberate turn.
+ *
+ * Calibration averages {@link #CALIBRATION_WINDOWS} consecutive still
+ * windows; any movement restarts it. After that every still window nudges the
+ * bias toward its mean, so warm-up drift is followed while the phone rests.
+ *
+ * Sensor thread only, no allocation per sample.
+ */
+class GyroCalibrator {
+
+    static final long WINDOW_NANOS = 500_000_000L;
+    static final int CALIBRATION_WINDOWS = 3;
+    static final int MIN_WINDOW_SAMPLES = 10;
+
+    // rad/s. Phone gyros are noisy to ~0.005 rad/s and biased by up to a few hundredths.
+    static final float STILL_STDDEV = 0.015f;
+    static final float MAX_BIAS = 0.1f;
+    static final float MAX_TRACKING_STEP = 0.01f;
+    static final float TRACKING_GAIN = 0.2f;
+
+    private float biasX = 0f, biasY = 0f, biasZ = 0f;
+    private boolean calibrated = false;
+    private boolean calibrating = false;
+
+    // Current window, Welford state per axis
+    private long windowStart = 0;
+    private int n = 0;
+    private double meanX, meanY, meanZ;
+    private double m2X, m2Y, m2Z;
+
+    // Calibration phase: sum of the still windows so far
+    private int stillWindows = 0;
+    private double sumX, sumY, sumZ;
+    private long sumN;
+
+    private long trackingUpdates = 0;
+
+    /** Starts a fresh calibration; the bias found so far stays in use until it completes. */
+    void startCalibration() {
+        calibrating = true;
+        stillWindows = 0;
+        sumX = sumY = sumZ = 0;
+        sumN = 0;
+        resetWindow(0);
+    }
+
+    /** Restores a stored bias, e.g. from {@link GyroCalibrationStore}. */
+    void setBias(float x, float y, float z) {
+        biasX = x;
+        biasY = y;
+        biasZ = z;
+        calibrated = true;
+    }
+
+    boolean isCalibrated() {
+        return calibrated;
+    }
+
+    boolean isCalibrating() {
+        return calibrating;
+    }
+
+    float getBiasX() {
+        return biasX;
+    }
+
+    float getBiasY() {
+        return biasY;
+    }
+
+    float getBiasZ() {
+        return biasZ;
+    }
+
+    /** Still windows applied to the bias since calibration. */
+    long getTrackingUpdates() {
+        return trackingUpdates;
+    }
+
+    /**
+     * Feeds one raw gyro sample (rad/s) with its event timestamp.
+     * @return true if the bias changed
+     */
+    boolean addSample(float x, float y, float z, long timestampNanos) {
+        if (n == 0) {
+            windowStart = timestampNanos;
+        } else if (timestampNanos - windowStart >= WINDOW_NANOS) {
+            boolean changed = n >= MIN_WINDOW_SAMPLES && closeWindow();
+            resetWindow(timestampNanos);
+            accumulate(x, y, z);
+            return changed;
+        }
+        accumulate(x, y, z);
+        return false;
+    }
+
+    private void accumulate(float x, float y, float z) {
+        n++;
+        double d = x - meanX;
+        meanX += d / n;
+        m2X += d * (x - meanX);
+        d = y - meanY;
+        meanY += d / n;
+        m2Y += d * (y - meanY);
+        d = z - meanZ;
+        meanZ += d / n;
+        m2Z += d * (z - meanZ);
+    }
+
+    private boolean closeWindow() {
+        double maxVariance = (double) STILL_STDDEV * STILL_STDDEV;
+        boolean quiet = m2X / (n - 1) < maxVariance && m2Y / (n - 1) < maxVariance
+                && m2Z / (n - 1) < maxVariance;
+        if (calibrating) {
+            if (!quiet || Math.abs(meanX) > MAX_BIAS || Math.abs(meanY) > MAX_BIAS || Math.abs(meanZ) > MAX_BIAS) {
+                stillWindows = 0;
+                sumX = sumY = sumZ = 0;
+                sumN = 0;
+                return false;
+            }
+            sumX += meanX * n;
+            sumY += meanY * n;
+            sumZ += meanZ * n;
+            sumN += n;
+            if (++stillWindows < CALIBRATION_WINDOWS)
+                return false;
+            biasX = (float) (sumX / sumN);
+            biasY = (float) (sumY / sumN);
+            biasZ = (float) (sumZ / sumN);
+            calibrating = false;
+            calibrated = true;
+            return true;
+        }
+        if (!calibrated || !quiet)
+            return false;
+        // A slow steady turn is quiet too; only follow small offsets from the current bias
+        if (Math.abs(meanX - biasX) > MAX_TRACKING_STEP || Math.abs(meanY - biasY) > MAX_TRACKING_STEP
+                || Math.abs(meanZ - biasZ) > MAX_TRACKING_STEP)
+            return false;
+        biasX += (float) (TRACKING_GAIN * (meanX - biasX));
+        biasY += (float) (TRACKING_GAIN * (meanY - biasY));
+        biasZ += (float) (TRACKING_GAIN * (meanZ - biasZ));
+        trackingUpdates++;
+        return true;
+    }
+
+    private void resetWindow(long timestampNanos) {
+        windowStart = timestampNanos;
+        n = 0;
+        meanX = meanY = meanZ = 0;
+        m2X = m2Y = m2Z = 0;
+    }
+}
@@ -6,22 +6,33 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import java.io.File;
+import java.io.IOException;
 
 public class HomeFragment extends Fragment {
 
+    // Transmit pacing choices, 0 sends every sample as it arrives
+    private static final int[] TRANSMIT_RATES = { 0, TransmitScheduler.RATE_60_HZ, TransmitScheduler.RATE_120_HZ,
+            TransmitScheduler.RATE_250_HZ, TransmitScheduler.RATE_500_HZ };
+
     private EditText etIp;
     private EditText etPort;
     private TextView tvStatus;
     private View statusDot;
     private Button btnConnect;
     private NetworkManager networkManager;
+    private LatencyOverlay latencyOverlay;
 
     @Nullable
     @Override
@@ -40,6 +51,7 @@ public class HomeFragment extends Fragment {
         statusDot = view.findViewById(R.id.view_status_dot);
         btnConnect = view.findViewById(R.id.btn_connect);
         networkManager = NetworkManager.getInstance();
+        latencyOverlay = new LatencyOverlay(view.findViewById(R.id.tv_latency), networkManager);
 
         // Load saved IP/Port
         SharedPreferences prefs = requireActivity().getSharedPreferences("GyroPrefs", Context.MODE_PRIVATE);
@@ -47,6 +59,34 @@ public class HomeFragment extends Fragment {
         etPort.setText(prefs.getString("port", "5005"));
 
         btnConnect.setOnClickListener(v -> toggleConnection());
+
+        // Input trace recording, kept across the mouse and game screens
+        CheckBox cbRecordTrace = view.findViewById(R.id.cb_record_trace);
+        cbRecordTrace.setChecked(InputTrace.recorder() != null);
+        cbRecordTrace.setOnCheckedChangeListener((buttonView, isChecked) -> setTraceRecording(isChecked));
+
+        // Settings read by the mouse and game screens when they open
+        bindCheckBox(view.findViewById(R.id.cb_sensor_batching), prefs, "sensor_batch_latency_us",
+                SensorHelper.BATCH_LATENCY_US);
+        bindCheckBox(view.findViewById(R.id.cb_sensor_direct), prefs, "sensor_direct_channel");
+        bindCheckBox(view.findViewById(R.id.cb_drag_lock), prefs, "drag_lock");
+        bindCheckBox(view.findViewById(R.id.cb_touch_prediction), prefs, "touch_prediction_ms",
+                TouchpadTracker.PREDICTION_MS);
+        CheckBox cbEnhanced = view.findViewById(R.id.cb_enhanced_pointer);
+        cbEnhanced.setChecked(PointerBallistics.forName(prefs.getString("pointer_curve", "linear"))
+                == PointerBallistics.ENHANCED);
+        cbEnhanced.setOnCheckedChangeListener((buttonView, isChecked) -> prefs.edit()
+                .putString("pointer_curve", isChecked ? "enhanced" : "linear").apply());
+
+        // Transport for the next connection
+        CheckBox cbNio = view.findViewById(R.id.cb_nio_transport);
+        cbNio.setChecked(prefs.getBoolean("nio_transport", false));
+        networkManager.setNioTransport(cbNio.isChecked());
+        cbNio.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            prefs.edit().putBoolean("nio_transport", isChecked).apply();
+            networkManager.setNioTransport(isChecked);
+        });
+        setupTransmitRate(view.findViewById(R.id.sp_transmit_rate), prefs);
         view.findViewById(R.id.btn_mode_mouse).setOnClickListener(v -> {
             startActivity(new android.content.Intent(requireActivity(), MouseActivity.class));
         });
@@ -57,6 +97,79 @@ public class HomeFragment extends Fragment {
         updateStatus();
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        latencyOverlay.start();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        latencyOverlay.stop();
+    }
+
+    private void setupTransmitRate(Spinner spinner, SharedPreferences prefs) {
+        String[] labels = new String[TRANSMIT_RATES.length];
+        int selected = 0;
+        int rate = prefs.getInt("transmit_rate_hz", 0);
+        for (int i = 0; i < TRANSMIT_RATES.length; i++) {
+            labels[i] = TRANSMIT_RATES[i] == 0 ? "Send Every Sample" : "Send at " + TRANSMIT_RATES[i] + " Hz";
+            if (TRANSMIT_RATES[i] == rate)
+                selected = i;
+        }
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(requireContext(), android.R.layout.simple_spinner_item,
+                labels);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner.setAdapter(adapter);
+        spinner.setSelection(selected);
+        applyTransmitRate(TRANSMIT_RATES[selected]);
+        spinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                prefs.edit().putInt("transmit_rate_hz", TRANSMIT_RATES[position]).apply();
+                applyTransmitRate(TRANSMIT_RATES[position]);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+    }
+
+    // Restarting the scheduler resets its jitter figures, so only when the rate changes
+    private void applyTransmitRate(int hz) {
+        if (networkManager.getTransmitRate() != hz)
+            networkManager.setTransmitRate(hz);
+    }
+
+    private static void bindCheckBox(CheckBox box, SharedPreferences prefs, String key) {
+        box.setChecked(prefs.getBoolean(key, false));
+        box.setOnCheckedChangeListener((buttonView, isChecked) -> prefs.edit().putBoolean(key, isChecked).apply());
+    }
+
+    // For an int preference that is 0 when off: checking the box stores onValue
+    private static void bindCheckBox(CheckBox box, SharedPreferences prefs, String key, int onValue) {
+        box.setChecked(prefs.getInt(key, 0) > 0);
+        box.setOnCheckedChangeListener(
+                (buttonView, isChecked) -> prefs.edit().putInt(key, isChecked ? onValue : 0).apply());
+    }
+
+    private void setTraceRecording(boolean enabled) {
+        if (!enabled) {
+            InputTrace.stopRecording();
+            return;
+        }
+        File file = new File(requireContext().getExternalFilesDir(null),
+                "trace-" + System.currentTimeMillis() + ".gmt");
+        try {
+            InputTrace.startRecording(file);
+            Toast.makeText(getContext(), "Recording to " + file.getPath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Toast.makeText(getContext(), "Cannot record: " + e.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+
     private void toggleConnection() {
         if (networkManager.isConnected()) {
             // Disconnect
@@ -0,0 +1,212 @@
+package com.example.myapp;
+
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compact binary recording of raw input: sensor samples as SensorHelper
+ * receives them, touchpad touches and joystick positions. A trace can be
+ * replayed through the same code paths to reproduce a session offline.
+ *
+ * Format, big-endian: magic "GMTR", version u8, then records of
+ * kind u8, timestamp i64 (nanoseconds, sensor or event time), payload:
+ *
+ * <pre>
+ * SENSOR            sensor type u8, x f32, y f32, z f32
+ * TOUCHPAD          action u8, x f32, y f32
+ * JOYSTICK          view id i32, x f32, y f32
+ * JOYSTICK_RELEASE  view id i32
+ * </pre>
+ */
+class InputTrace {
+    private static final String TAG = "InputTrace";
+
+    static final int MAGIC = 0x474D5452; // "GMTR"
+    static final int VERSION = 1;
+
+    static final int KIND_SENSOR = 1;
+    static final int KIND_TOUCHPAD = 2;
+    static final int KIND_JOYSTICK = 3;
+    static final int KIND_JOYSTICK_RELEASE = 4;
+
+    static final int TOUCH_DOWN = 0;
+    static final int TOUCH_MOVE = 1;
+    static final int TOUCH_UP = 2;
+
+    /** Receives the records of a trace in order. */
+    interface Listener {
+        void onSensor(int type, float x, float y, float z, long timestampNanos);
+
+        void onTouchpad(int action, float x, float y, long timeNanos);
+
+        void onJoystick(int id, float x, float y, long timeNanos);
+
+        void onJoystickReleased(int id, long timeNanos);
+    }
+
+    // The process-wide recorder, null when not recording
+    private static volatile Recorder active;
+
+    /** The current recorder, or null. Input sources call this on every event. */
+    static Recorder recorder() {
+        return active;
+    }
+
+    /** Starts recording into {@code file}, ending any recording in progress. */
+    static void startRecording(File file) throws IOException {
+        stopRecording();
+        active = new Recorder(new FileOutputStream(file));
+    }
+
+    static void stopRecording() {
+        Recorder r = active;
+        active = null;
+        if (r != null) {
+            try {
+                r.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing trace", e);
+            }
+        }
+    }
+
+    /**
+     * Appends records to a stream through a 64 KB buffer. Thread-safe: sensor
+     * and UI threads record into the same trace. Write errors stop the
+     * recording rather than reaching the input path.
+     */
+    static final class Recorder implements Closeable {
+        private final DataOutputStream out;
+        private long records = 0;
+        private boolean failed = false;
+
+        Recorder(OutputStream stream) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        synchronized void sensor(int type, float x, float y, float z, long timestampNanos) {
+            if (!begin(KIND_SENSOR, timestampNanos))
+                return;
+            try {
+                out.writeByte(type);
+                out.writeFloat(x);
+                out.writeFloat(y);
+                out.writeFloat(z);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        synchronized void touchpad(int action, float x, float y, long timeNanos) {
+            if (!begin(KIND_TOUCHPAD, timeNanos))
+                return;
+            try {
+                out.writeByte(action);
+                out.writeFloat(x);
+                out.writeFloat(y);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        synchronized void joystick(int id, float x, float y, long timeNanos) {
+            if (!begin(KIND_JOYSTICK, timeNanos))
+                return;
+            try {
+                out.writeInt(id);
+                out.writeFloat(x);
+                out.writeFloat(y);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        synchronized void joystickReleased(int id, long timeNanos) {
+            if (!begin(KIND_JOYSTICK_RELEASE, timeNanos))
+                return;
+            try {
+                out.writeInt(id);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        synchronized long getRecordCount() {
+            return records;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+
+        private boolean begin(int kind, long timeNanos) {
+            if (failed)
+                return false;
+            try {
+                out.writeByte(kind);
+                out.writeLong(timeNanos);
+                records++;
+                return true;
+            } catch (IOException e) {
+                fail(e);
+                return false;
+            }
+        }
+
+        private void fail(IOException e) {
+            failed = true;
+            Log.e(TAG, "Trace write failed, recording stopped", e);
+        }
+    }
+
+    /**
+     * Reads a whole trace into {@code listener}.
+     * @return the number of records
+     * @throws IOException if the stream is not a trace or a record is cut short
+     */
+    static long replay(InputStream stream, Listener listener) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not an input trace");
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported trace version " + version);
+
+        long records = 0;
+        while (true) {
+            int kind = in.read();
+            if (kind < 0)
+                return records;
+            long time = in.readLong();
+            switch (kind) {
+                case KIND_SENSOR:
+                    listener.onSensor(in.readUnsignedByte(), in.readFloat(), in.readFloat(), in.readFloat(), time);
+                    break;
+                case KIND_TOUCHPAD:
+                    listener.onTouchpad(in.readUnsignedByte(), in.readFloat(), in.readFloat(), time);
+                    break;
+                case KIND_JOYSTICK:
+                    listener.onJoystick(in.readInt(), in.readFloat(), in.readFloat(), time);
+                    break;
+                case KIND_JOYSTICK_RELEASE:
+                    listener.onJoystickReleased(in.readInt(), time);
+                    break;
+                default:
+                    throw new IOException("Unknown trace record " + kind);
+            }
+            records++;
+        }
+    }
+}
@@ -19,9 +19,24 @@ public class JoystickView extends View {
     private float joystickX;
     private float joystickY;
     private boolean isPressed = false;
+    // The finger driving the stick. Others touching the view are ignored, so a
+    // thumb sliding over from the other stick or a button does not take it over.
+    private int activePointerId = MotionEvent.INVALID_POINTER_ID;
     private JoystickListener listener;
+    private long eventTimeNanos; // Of the touch being handled, for InputTrace
     private float sensitivity = 1.0f;
 
+    // Low-latency mode: touches are delivered as they arrive instead of once per frame
+    private boolean unbufferedDispatch = false;
+    private TouchDispatchLatency dispatchLatency;
+
+    // One Euro smoothing of the output, per axis, in -1..1 units. The knob itself
+    // follows the finger unfiltered.
+    static final float DEFAULT_MIN_CUTOFF = 1.5f;
+    static final float DEFAULT_BETA = 1.0f;
+    private final OneEuroFilter filterX = new OneEuroFilter(DEFAULT_MIN_CUTOFF, DEFAULT_BETA);
+    private final OneEuroFilter filterY = new OneEuroFilter(DEFAULT_MIN_CUTOFF, DEFAULT_BETA);
+
     public interface JoystickListener {
         void onJoystickMoved(float xPercent, float yPercent, int id);
 
@@ -78,24 +93,68 @@ public class JoystickView extends View {
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        switch (event.getAction()) {
+        eventTimeNanos = TouchDispatchLatency.eventTimeNanos(event);
+        switch (event.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
-            case MotionEvent.ACTION_MOVE:
-                isPressed = true;
-                updateJoystickPosition(event.getX(), event.getY());
+            case MotionEvent.ACTION_POINTER_DOWN:
+                if (activePointerId == MotionEvent.INVALID_POINTER_ID) {
+                    // A new touch starts from where the finger lands
+                    int index = event.getActionIndex();
+                    activePointerId = event.getPointerId(index);
+                    if (unbufferedDispatch)
+                        requestUnbufferedDispatch(event); // Until this gesture ends
+                    isPressed = true;
+                    filterX.reset();
+                    filterY.reset();
+                    updateJoystickPosition(event.getX(index), event.getY(index));
+                    recordDispatch(event);
+                }
+                return true;
+            case MotionEvent.ACTION_MOVE: {
+                int index = event.findPointerIndex(activePointerId);
+                if (index < 0)
+                    return true;
+                // Positions batched since the last frame first, so none are skipped
+                for (int h = 0; h < event.getHistorySize(); h++) {
+                    eventTimeNanos = TouchDispatchLatency.historicalEventTimeNanos(event, h);
+                    updateJoystickPosition(event.getHistoricalX(index, h), event.getHistoricalY(index, h));
+                }
+                eventTimeNanos = TouchDispatchLatency.eventTimeNanos(event);
+                updateJoystickPosition(event.getX(index), event.getY(index));
+                recordDispatch(event);
+                return true;
+            }
+            case MotionEvent.ACTION_POINTER_UP:
+                if (event.getPointerId(event.getActionIndex()) == activePointerId)
+                    release();
                 return true;
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
-                isPressed = false;
-                resetJoystick();
-                if (listener != null) {
-                    listener.onJoystickReleased(getId());
-                }
+                if (activePointerId != MotionEvent.INVALID_POINTER_ID)
+                    release();
                 return true;
         }
         return super.onTouchEvent(event);
     }
 
+    // The listener has sent the sample by now
+    private void recordDispatch(MotionEvent event) {
+        if (dispatchLatency != null && listener != null)
+            dispatchLatency.recordSent(TouchDispatchLatency.eventTimeNanos(event));
+    }
+
+    private void release() {
+        activePointerId = MotionEvent.INVALID_POINTER_ID;
+        isPressed = false;
+        resetJoystick();
+        InputTrace.Recorder recorder = InputTrace.recorder();
+        if (recorder != null)
+            recorder.joystickReleased(getId(), eventTimeNanos);
+        if (listener != null) {
+            listener.onJoystickReleased(getId());
+        }
+    }
+
     private void updateJoystickPosition(float x, float y) {
         // Calculate displacement from center
         float dx = x - centerX;
@@ -134,6 +193,12 @@ public class JoystickView extends View {
             if (normY < -1.0f)
                 normY = -1.0f;
 
+            normX = filterX.filter(normX, eventTimeNanos);
+            normY = filterY.filter(normY, eventTimeNanos);
+
+            InputTrace.Recorder recorder = InputTrace.recorder();
+            if (recorder != null)
+                recorder.joystick(getId(), normX, normY, eventTimeNanos);
             listener.onJoystickMoved(normX, normY, getId());
         }
 
@@ -150,10 +215,29 @@ public class JoystickView extends View {
         this.listener = listener;
     }
 
+    /**
+     * Asks for each touch as soon as it arrives rather than batched to the next
+     * frame, for the duration of every gesture on this stick. Costs more wakeups.
+     */
+    public void setUnbufferedDispatch(boolean enabled) {
+        this.unbufferedDispatch = enabled;
+    }
+
+    /** Where to record how long touches took to reach the listener, or null. */
+    void setDispatchLatency(TouchDispatchLatency dispatchLatency) {
+        this.dispatchLatency = dispatchLatency;
+    }
+
     public void setSensitivity(float s) {
         this.sensitivity = s;
     }
 
+    /** One Euro cutoff at rest in Hz, and its increase per unit/s of stick speed. */
+    public void setSmoothing(float minCutoff, float beta) {
+        filterX.setParameters(minCutoff, beta, 1f);
+        filterY.setParameters(minCutoff, beta, 1f);
+    }
+
     public void setColors(int outer, int inner) {
         outerPaint.setColor(outer);
         innerPaint.setColor(inner);
@@ -0,0 +1,100 @@
+package com.example.myapp;
+
+/**
+ * Fixed-size log-linear histogram of microsecond values, in the style of
+ * HdrHistogram: every power-of-two range is split into 32 linear sub-buckets,
+ * so any recorded value is reported within ~3% while the whole range from
+ * 1 us to over a minute fits in under 1000 counters. Recording never
+ * allocates. Not thread safe.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // Values below this are exact
+    private static final int HALF = SUB_BUCKETS / 2;
+    static final long MAX_VALUE = (1L << 26) - 1; // ~67 s, larger values are clamped
+
+    private final long[] counts;
+    private long totalCount = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+    private double sum = 0;
+
+    LatencyHistogram() {
+        counts = new long[indexOf(MAX_VALUE) + 1];
+    }
+
+    void record(long value) {
+        if (value < 0)
+            value = 0;
+        if (value > MAX_VALUE)
+            value = MAX_VALUE;
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        if (value < min)
+            min = value;
+        if (value > max)
+            max = value;
+    }
+
+    long getCount() {
+        return totalCount;
+    }
+
+    long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * @param percentile 0..100, e.g. 99.9
+     * @return the highest value equivalent to the given percentile, or 0 if empty
+     */
+    long getValueAtPercentile(double percentile) {
+        if (totalCount == 0)
+            return 0;
+        long rank = (long) Math.ceil(percentile / 100.0 * totalCount);
+        if (rank < 1)
+            rank = 1;
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(highestEquivalentValue(i), max);
+        }
+        return max;
+    }
+
+    void reset() {
+        java.util.Arrays.fill(counts, 0);
+        totalCount = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+        sum = 0;
+    }
+
+    // Values below SUB_BUCKETS map to themselves. Above that, each power of two
+    // [2^k, 2^(k+1)) gets HALF buckets of width 2^(k - SUB_BUCKET_BITS + 1).
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) ((value >> shift) - HALF);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long sub = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.myapp;
+
+import android.view.View;
+import android.widget.TextView;
+import java.util.Locale;
+
+/**
+ * Shows {@link NetworkManager#getLatencyStats()} in a TextView, refreshed
+ * twice a second between {@link #start()} and {@link #stop()}, plus lines
+ * for transmit tick lateness while pacing is on and touch dispatch latency
+ * when one is set. Hidden while there is nothing to measure.
+ */
+class LatencyOverlay implements Runnable {
+    private static final long REFRESH_MS = 500;
+
+    private final TextView view;
+    private final NetworkManager networkManager;
+    private TouchDispatchLatency touchLatency;
+
+    LatencyOverlay(TextView view, NetworkManager networkManager) {
+        this.view = view;
+        this.networkManager = networkManager;
+    }
+
+    void setTouchLatency(TouchDispatchLatency touchLatency) {
+        this.touchLatency = touchLatency;
+    }
+
+    void start() {
+        view.removeCallbacks(this);
+        view.post(this);
+    }
+
+    void stop() {
+        view.removeCallbacks(this);
+    }
+
+    @Override
+    public void run() {
+        LatencyStats stats = networkManager.getLatencyStats();
+        if (stats == null) {
+            view.setVisibility(View.GONE);
+        } else {
+            view.setVisibility(View.VISIBLE);
+            String text = stats.toOverlayText();
+            long tickMean = networkManager.getTickJitterMeanMicros();
+            if (tickMean >= 0) {
+                text += String.format(Locale.US, "\ntick %d Hz  late %d / %d us", networkManager.getTransmitRate(),
+                        tickMean, networkManager.getTickJitterMaxMicros());
+            }
+            TouchDispatchLatency touch = touchLatency;
+            view.setText(touch == null ? text : text + "\n" + touch);
+        }
+        view.postDelayed(this, REFRESH_MS);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.myapp;
+
+import android.util.Log;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a timestamped {@link WireProtocol#TYPE_PING} at a fixed interval and
+ * matches the receiver's pongs against it. Round trips go into a
+ * {@link LatencyHistogram}; probes that are not answered within
+ * {@link #TIMEOUT_NANOS} count as lost.
+ */
+class LatencyProbe {
+    private static final String TAG = "LatencyProbe";
+
+    static final int DEFAULT_INTERVAL_MS = 200;
+    static final long TIMEOUT_NANOS = 1_000_000_000L;
+
+    // Outstanding probes, indexed by id. Must cover TIMEOUT_NANOS at the shortest interval.
+    private static final int SLOTS = 64;
+
+    private final EventSender.FrameSink sink;
+    private final byte[] pingBuffer = new byte[WireProtocol.MAX_FRAME_SIZE]; // Probe thread only
+    private ScheduledExecutorService timer;
+
+    // Guarded by this
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final long[] sendTimes = new long[SLOTS];
+    private final boolean[] outstanding = new boolean[SLOTS];
+    private int nextId = 0;
+    private long sent = 0;
+    private long lost = 0;
+    private long lastRttNanos = -1;
+    private double jitterNanos = 0;
+
+    LatencyProbe(EventSender.FrameSink sink) {
+        this.sink = sink;
+    }
+
+    void start(int intervalMs) {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LatencyProbe");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::ping, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /** Called from the transport receive thread with the payload of a pong. */
+    void onPong(int probeId, long sendNanos) {
+        onPong(probeId, sendNanos, System.nanoTime());
+    }
+
+    synchronized void onPong(int probeId, long sendNanos, long nowNanos) {
+        int slot = probeId & (SLOTS - 1);
+        // Ignore duplicates, pongs for probes that already timed out and foreign timestamps
+        if (!outstanding[slot] || sendTimes[slot] != sendNanos)
+            return;
+        outstanding[slot] = false;
+
+        long rtt = nowNanos - sendNanos;
+        histogram.record(rtt / 1000);
+        if (lastRttNanos >= 0) {
+            // RFC 3550 interarrival jitter: J += (|D| - J) / 16
+            jitterNanos += (Math.abs(rtt - lastRttNanos) - jitterNanos) / 16;
+        }
+        lastRttNanos = rtt;
+    }
+
+    synchronized LatencyStats getStats() {
+        return new LatencyStats(histogram.getCount(), histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMax(),
+                (long) jitterNanos / 1000, sent, lost);
+    }
+
+    synchronized void reset() {
+        histogram.reset();
+        sent = 0;
+        lost = 0;
+        lastRttNanos = -1;
+        jitterNanos = 0;
+        java.util.Arrays.fill(outstanding, false);
+    }
+
+    private void ping() {
+        long now = System.nanoTime();
+        int id = register(now);
+        int length = WireProtocol.encodePing(pingBuffer, 0, id, 0, id, now);
+        try {
+            sink.sendFrame(pingBuffer, length);
+        } catch (IOException e) {
+            Log.e(TAG, "Error sending ping", e);
+        }
+    }
+
+    // Expires overdue probes and reserves a slot for a new one sent at nowNanos. @return its id
+    synchronized int register(long nowNanos) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (outstanding[i] && nowNanos - sendTimes[i] > TIMEOUT_NANOS) {
+                outstanding[i] = false;
+                lost++;
+            }
+        }
+        int id = nextId++;
+        int slot = id & (SLOTS - 1);
+        if (outstanding[slot]) {
+            lost++; // Still unanswered after a full lap
+        }
+        sendTimes[slot] = nowNanos;
+        outstanding[slot] = true;
+        sent++;
+        return id;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.myapp;
+
+import java.util.Locale;
+
+/** Snapshot of the round-trip latency measured by the ping/pong probe. */
+public final class LatencyStats {
+    private final long samples;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+    private final long jitterMicros;
+    private final long sent;
+    private final long lost;
+
+    LatencyStats(long samples, long p50Micros, long p99Micros, long p999Micros, long maxMicros, long jitterMicros,
+            long sent, long lost) {
+        this.samples = samples;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+        this.jitterMicros = jitterMicros;
+        this.sent = sent;
+        this.lost = lost;
+    }
+
+    /** Number of answered probes. */
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getP999Micros() {
+        return p999Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    /** Smoothed variation between consecutive round trips (RFC 3550 style). */
+    public long getJitterMicros() {
+        return jitterMicros;
+    }
+
+    /** Fraction of probes that were not answered within the timeout, 0..1. */
+    public double getLossRate() {
+        long settled = samples + lost;
+        return settled == 0 ? 0 : (double) lost / settled;
+    }
+
+    public long getProbesSent() {
+        return sent;
+    }
+
+    /** One line for an on-screen overlay, e.g. "RTT 4.1 / 9.8 / 15.2 ms  jitter 0.6 ms  loss 0.0%". */
+    public String toOverlayText() {
+        if (samples == 0)
+            return sent == 0 ? "RTT --" : String.format(Locale.US, "RTT --  loss %.1f%%", getLossRate() * 100);
+        return String.format(Locale.US, "RTT %.1f / %.1f / %.1f ms  jitter %.1f ms  loss %.1f%%",
+                p50Micros / 1000.0, p99Micros / 1000.0, p999Micros / 1000.0, jitterMicros / 1000.0,
+                getLossRate() * 100);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.myapp;
+
+/**
+ * Merges runs of queued lossy records before they are sent: mouse motion
+ * deltas are summed and analog samples keep only the latest value per source.
+ * A run ends at the first record that is not absorbed (click, button, ...),
+ * so the merged output is always sent ahead of it and ordering is preserved.
+ */
+class MotionCoalescer {
+
+    private static final int MAX_SOURCES = WireProtocol.SOURCES.length + 1;
+
+    private boolean hasMotion = false;
+    private float motionX;
+    private float motionY;
+    private long motionTime;
+
+    private final boolean[] hasAnalog = new boolean[MAX_SOURCES];
+    private final float[] analogX = new float[MAX_SOURCES];
+    private final float[] analogY = new float[MAX_SOURCES];
+    private final long[] analogTime = new long[MAX_SOURCES];
+    private int pendingAnalog = 0;
+
+    /** @return true if the record was merged and must not be sent on its own */
+    boolean add(EventRing.Record r) {
+        if (r.type == WireProtocol.TYPE_MOTION) {
+            motionX += r.x;
+            motionY += r.y;
+            motionTime = r.timeNanos;
+            hasMotion = true;
+            return true;
+        }
+        if (r.type == WireProtocol.TYPE_ANALOG && r.code > 0 && r.code < MAX_SOURCES) {
+            if (!hasAnalog[r.code]) {
+                hasAnalog[r.code] = true;
+                pendingAnalog++;
+            }
+            analogX[r.code] = r.x;
+            analogY[r.code] = r.y;
+            analogTime[r.code] = r.timeNanos;
+            return true;
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        return !hasMotion && pendingAnalog == 0;
+    }
+
+    /**
+     * Moves the next merged record into {@code out}: the summed motion first,
+     * then one analog sample per source.
+     *
+     * @return false once nothing is pending
+     */
+    boolean next(EventRing.Record out) {
+        if (hasMotion) {
+            out.type = WireProtocol.TYPE_MOTION;
+            out.code = 0;
+            out.group = 0;
+            out.value = 0;
+            out.x = motionX;
+            out.y = motionY;
+            out.timeNanos = motionTime;
+            hasMotion = false;
+            motionX = 0;
+            motionY = 0;
+            return true;
+        }
+        if (pendingAnalog == 0)
+            return false;
+        for (int source = 1; source < MAX_SOURCES; source++) {
+            if (hasAnalog[source]) {
+                out.type = WireProtocol.TYPE_ANALOG;
+                out.code = source;
+                out.group = 0;
+                out.value = 0;
+                out.x = analogX[source];
+                out.y = analogY[source];
+                out.timeNanos = analogTime[source];
+                hasAnalog[source] = false;
+                pendingAnalog--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        hasMotion = false;
+        motionX = 0;
+        motionY = 0;
+        for (int i = 0; i < MAX_SOURCES; i++) {
+            hasAnalog[i] = false;
+        }
+        pendingAnalog = 0;
+    }
+}
@@ -1,17 +1,23 @@
 package com.example.myapp;
 
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.hardware.SensorManager;
 import android.os.Bundle;
-import android.view.GestureDetector;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.AppCompatButton;
 import androidx.fragment.app.Fragment;
 
 public class MouseFragment extends Fragment implements SensorHelper.SensorCallback {
+    private static final String TAG = "MouseFragment";
 
     private SensorHelper sensorHelper;
     private NetworkManager networkManager;
@@ -19,15 +25,18 @@ public class MouseFragment extends Fragment implements SensorHelper.SensorCallba
     private View touchpadArea;
     private View scrollStrip;
     private AppCompatButton toggleButton;
+    private View btnLeft;
+    private View btnRight;
 
-    private boolean isTouchpadMode = false;
-    private GestureDetector gestureDetector;
+    private volatile boolean isTouchpadMode = false; // Also read on the sensor thread
+    private TouchpadGestures touchpadGestures;
 
     // Touchpad tracking
-    private float lastTouchX = 0;
-    private float lastTouchY = 0;
-    private long lastTapTime = 0;
-    private static final long DOUBLE_TAP_TIMEOUT = 300;
+    private TouchpadTracker touchpadTracker;
+    private boolean unbufferedTouch = false; // Touches as they arrive instead of once per frame
+    private final TouchDispatchLatency touchLatency = new TouchDispatchLatency();
+    private ScrollEngine scrollEngine;
+    private View scrollView; // Whichever view is scrolling, for the frame callbacks
 
     @Nullable
     @Override
@@ -47,8 +56,24 @@ public class MouseFragment extends Fragment implements SensorHelper.SensorCallba
 
         sensorHelper = new SensorHelper(requireContext());
         sensorHelper.setCallback(this);
+        // Motion is integrated over sensor time, so a faster rate only makes it smoother
+        sensorHelper.setSamplingPeriodUs(SensorManager.SENSOR_DELAY_FASTEST);
         networkManager = NetworkManager.getInstance();
 
+        SharedPreferences prefs = requireContext().getSharedPreferences("GyroPrefs", Context.MODE_PRIVATE);
+        // Opt-in: FIFO batching trades a little latency for fewer wakeups; the direct channel reads faster still
+        sensorHelper.setMaxReportLatencyUs(prefs.getInt("sensor_batch_latency_us", 0));
+        sensorHelper.setUseDirectChannel(prefs.getBoolean("sensor_direct_channel", false));
+
+        // Pointer acceleration preset, shared by gyro and touchpad
+        PointerBallistics.Curve curve = PointerBallistics.forName(prefs.getString("pointer_curve", "linear"));
+        sensorHelper.setPointerCurve(curve);
+        touchpadTracker = new TouchpadTracker(networkManager::sendMotion, curve);
+        // Opt-in: lead the touchpad cursor by this much to hide network latency
+        touchpadTracker.setPredictionNanos(prefs.getInt("touch_prediction_ms", 0) * 1_000_000L);
+        unbufferedTouch = prefs.getBoolean("unbuffered_touch", false);
+        scrollEngine = new ScrollEngine(networkManager::sendSmoothScroll);
+
         // Initialize views
         touchPad = view.findViewById(R.id.touch_pad);
         touchpadArea = view.findViewById(R.id.touchpad_area);
@@ -57,27 +82,70 @@ public class MouseFragment extends Fragment implements SensorHelper.SensorCallba
 
         view.findViewById(R.id.btn_back).setOnClickListener(v -> requireActivity().onBackPressed());
 
-        // Left/Right Click buttons
-        view.findViewById(R.id.btn_left).setOnClickListener(v -> networkManager.sendClick("L"));
-        view.findViewById(R.id.btn_right).setOnClickListener(v -> networkManager.sendClick("R"));
+        // Left/Right buttons are held for as long as they are touched, for dragging and holding fire
+        btnLeft = view.findViewById(R.id.btn_left);
+        btnRight = view.findViewById(R.id.btn_right);
+        setupMouseButton(btnLeft, "L");
+        setupMouseButton(btnRight, "R");
 
         // Touchpad toggle button
         toggleButton.setOnClickListener(v -> toggleTouchpadMode());
 
-        // Setup gesture detector for tap detection
-        gestureDetector = new GestureDetector(requireContext(), new GestureDetector.SimpleOnGestureListener() {
+        // Long press re-measures the gyro bias
+        toggleButton.setOnLongClickListener(v -> {
+            sensorHelper.calibrate();
+            Toast.makeText(getContext(), "Calibrating, keep the phone still", Toast.LENGTH_SHORT).show();
+            return true;
+        });
+
+        // Touchpad gestures: cursor, taps, tap-and-drag, two-finger scroll and pinch, three-finger swipe
+        touchpadGestures = new TouchpadGestures(new TouchpadGestures.Listener() {
             @Override
-            public boolean onSingleTapConfirmed(MotionEvent e) {
-                handleTap(e);
-                return true;
+            public void onCursorDown(float x, float y, long timeNanos) {
+                touchpadTracker.onDown(x, y, timeNanos);
             }
 
             @Override
-            public boolean onDoubleTap(MotionEvent e) {
-                networkManager.sendClick("D"); // Double click
-                return true;
+            public void onCursorMove(float x, float y, long timeNanos) {
+                touchpadTracker.onMove(x, y, timeNanos);
+            }
+
+            @Override
+            public void onCursorUp(float x, float y, long timeNanos) {
+                touchpadTracker.onUp(x, y, timeNanos);
+            }
+
+            @Override
+            public void onClick(String action) {
+                networkManager.sendClick(action);
+            }
+
+            @Override
+            public void onDragButton(boolean pressed) {
+                networkManager.sendMouseButton("L", pressed);
+            }
+
+            @Override
+            public void onScroll(int verticalUnits, int horizontalUnits) {
+                if (verticalUnits != 0)
+                    networkManager.sendSmoothScroll(verticalUnits);
+                if (horizontalUnits != 0)
+                    networkManager.sendHorizontalScroll(horizontalUnits);
+            }
+
+            @Override
+            public void onZoom(int units) {
+                networkManager.sendZoom(units);
+            }
+
+            @Override
+            public void onSwipe(String direction) {
+                networkManager.sendSwipe(direction);
             }
         });
+        touchpadGestures.setTouchSlop(ViewConfiguration.get(requireContext()).getScaledTouchSlop());
+        // Lifting the finger mid-drag keeps the button down; a tap lets go
+        touchpadGestures.setDragLock(prefs.getBoolean("drag_lock", false));
 
         // Setup touchpad area touch listener
         setupTouchpadArea();
@@ -104,7 +172,8 @@ public class MouseFragment extends Fragment implements SensorHelper.SensorCallba
                 sensorHelper.stop();
             }
         } else {
-            // Switch to Gyro Mode
+            // Switch to Gyro Mode, letting go of a locked drag
+            touchpadGestures.cancel(System.nanoTime());
             touchPad.setVisibility(View.VISIBLE);
             touchpadArea.setVisibility(View.GONE);
             scrollStrip.setVisibility(View.GONE);
@@ -117,106 +186,104 @@ public class MouseFragment extends Fragment implements SensorHelper.SensorCallba
         }
     }
 
-    private void setupTouchpadArea() {
-        touchpadArea.setOnTouchListener(new View.OnTouchListener() {
-            @Override
-            public boolean onTouch(View v, MotionEvent event) {
-                // Pass to gesture detector for tap detection
-                gestureDetector.onTouchEvent(event);
-
-                switch (event.getAction() & MotionEvent.ACTION_MASK) {
-                    case MotionEvent.ACTION_DOWN:
-                        lastTouchX = event.getX();
-                        lastTouchY = event.getY();
-                        return true;
-
-                    case MotionEvent.ACTION_MOVE:
-                        if (event.getPointerCount() == 1) {
-                            // Single finger movement - move cursor
-                            float dx = event.getX() - lastTouchX;
-                            float dy = event.getY() - lastTouchY;
-
-                            // Apply sensitivity multiplier
-                            float sensitivity = 1.5f;
-                            dx *= sensitivity;
-                            dy *= sensitivity;
-
-                            networkManager.sendMotion(dx, dy);
-
-                            lastTouchX = event.getX();
-                            lastTouchY = event.getY();
-                        }
-                        return true;
-
-                    case MotionEvent.ACTION_POINTER_DOWN:
-                        // Two finger tap detected
-                        if (event.getPointerCount() == 2) {
-                            networkManager.sendClick("R"); // Right click
-                            return true;
-                        }
-                        break;
-                }
-                return false;
+    private void setupMouseButton(View button, String name) {
+        button.setOnTouchListener((v, event) -> {
+            int action = event.getActionMasked();
+            if (action == MotionEvent.ACTION_DOWN) {
+                networkManager.sendMouseButton(name, true);
+                v.setPressed(true);
+            } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                networkManager.sendMouseButton(name, false);
+                v.setPressed(false);
             }
+            return true;
         });
     }
 
-    private void handleTap(MotionEvent event) {
-        long currentTime = System.currentTimeMillis();
-
-        if (event.getPointerCount() == 1) {
-            // Single finger tap = left click
-            networkManager.sendClick("L");
+    // Nothing may stay held on the PC once this screen is gone
+    private void releaseMouseButtons() {
+        touchpadGestures.cancel(System.nanoTime());
+        touchpadArea.removeCallbacks(tapTimeout);
+        if (btnLeft.isPressed()) {
+            btnLeft.setPressed(false);
+            networkManager.sendMouseButton("L", false);
+        }
+        if (btnRight.isPressed()) {
+            btnRight.setPressed(false);
+            networkManager.sendMouseButton("R", false);
         }
     }
 
-    private void setupScrollStrip() {
-        scrollStrip.setOnTouchListener(new View.OnTouchListener() {
-            float lastScrollY;
+    private void setupTouchpadArea() {
+        touchpadArea.setOnTouchListener((v, event) -> {
+            int action = event.getActionMasked();
+            if (action == MotionEvent.ACTION_DOWN && unbufferedTouch)
+                v.requestUnbufferedDispatch(event);
+            touchpadGestures.onTouchEvent(event);
+            if (action == MotionEvent.ACTION_MOVE && event.getPointerCount() == 1)
+                touchLatency.recordSent(TouchDispatchLatency.eventTimeNanos(event));
+
+            // A tap becomes a click once no second tap can follow
+            v.removeCallbacks(tapTimeout);
+            if (touchpadGestures.hasPendingTap())
+                v.postDelayed(tapTimeout, TouchpadGestures.DOUBLE_TAP_NANOS / 1_000_000L);
+            return true;
+        });
+    }
 
-            @Override
-            public boolean onTouch(View v, MotionEvent event) {
-                switch (event.getAction()) {
-                    case MotionEvent.ACTION_DOWN:
-                        lastScrollY = event.getY();
-                        return true;
-
-                    case MotionEvent.ACTION_MOVE:
-                        float dy = event.getY() - lastScrollY;
-                        if (Math.abs(dy) > 10) {
-                            int scrollAmount = (int) (dy / 5);
-                            networkManager.sendScroll(scrollAmount);
-                            lastScrollY = event.getY();
-                        }
-                        return true;
-                }
-                return false;
-            }
+    private final Runnable tapTimeout = () -> touchpadGestures.onTimeout(System.nanoTime());
+
+    private void setupScrollStrip() {
+        scrollStrip.setOnTouchListener((v, event) -> {
+            if (event.getActionMasked() == MotionEvent.ACTION_DOWN && unbufferedTouch)
+                v.requestUnbufferedDispatch(event);
+            return onScrollTouch(v, event);
         });
     }
 
     private void setupOriginalTouchPad() {
-        touchPad.setOnTouchListener(new View.OnTouchListener() {
-            float lastY;
+        touchPad.setOnTouchListener(this::onScrollTouch);
+    }
 
-            @Override
-            public boolean onTouch(View v, MotionEvent event) {
-                switch (event.getAction()) {
-                    case MotionEvent.ACTION_DOWN:
-                        lastY = event.getY();
-                        return true;
-                    case MotionEvent.ACTION_MOVE:
-                        float dy = event.getY() - lastY;
-                        if (Math.abs(dy) > 10) {
-                            int scrollAmount = (int) (dy / 5);
-                            networkManager.sendScroll(scrollAmount);
-                            lastY = event.getY();
-                        }
-                        return true;
+    // Drags feed the scroll engine; it sends once per frame and keeps flinging after the lift
+    private boolean onScrollTouch(View v, MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                scrollEngine.onDown(event.getY(), TouchDispatchLatency.eventTimeNanos(event));
+                startScrollFrames(v);
+                return true;
+
+            case MotionEvent.ACTION_MOVE:
+                for (int h = 0; h < event.getHistorySize(); h++) {
+                    scrollEngine.onMove(event.getHistoricalY(h), TouchDispatchLatency.historicalEventTimeNanos(event, h));
                 }
-                return false;
-            }
-        });
+                scrollEngine.onMove(event.getY(), TouchDispatchLatency.eventTimeNanos(event));
+                return true;
+
+            case MotionEvent.ACTION_UP:
+                scrollEngine.onUp(event.getY(), TouchDispatchLatency.eventTimeNanos(event));
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                scrollEngine.stop();
+                return true;
+        }
+        return false;
+    }
+
+    private final Runnable scrollFrame = new Runnable() {
+        @Override
+        public void run() {
+            if (scrollEngine.tick(System.nanoTime()) && scrollView != null)
+                scrollView.postOnAnimation(this);
+        }
+    };
+
+    private void startScrollFrames(View v) {
+        if (scrollView != null)
+            scrollView.removeCallbacks(scrollFrame);
+        scrollView = v;
+        v.postOnAnimation(scrollFrame);
     }
 
     @Override
@@ -234,6 +301,11 @@ public class MouseFragment extends Fragment implements SensorHelper.SensorCallba
         if (sensorHelper != null) {
             sensorHelper.stop();
         }
+        scrollEngine.stop();
+        releaseMouseButtons();
+        if (scrollView != null)
+            scrollView.removeCallbacks(scrollFrame);
+        Log.d(TAG, "Touchpad: " + touchLatency);
     }
 
     @Override
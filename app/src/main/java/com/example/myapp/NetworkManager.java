@@ -1,27 +1,74 @@
 package com.example.myapp;
 
 import android.util.Log;
-import java.io.PrintWriter;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.io.IOException;
 import java.net.InetAddress;
-import java.net.Socket;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import org.json.JSONException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 import org.json.JSONObject;
 
 public class NetworkManager {
     private static final String TAG = "NetworkManager";
+    private static final int RING_CAPACITY = 256;
+    private static final int SENDER_SPINS = 2000; // Busy polls before the sender parks
+    private static final int HANDSHAKE_TIMEOUT_MS = 2000;
     private static NetworkManager instance;
     private String serverIp;
     private int serverPort;
-    private DatagramSocket udpSocket;
+    private InetAddress serverAddress; // Resolved once per connect()
+    private volatile Transport transport;
+    private volatile boolean useNioTransport = false; // Applied at the next connect()
+    private volatile Supplier<Transport> transportFactory; // Replaces both when set, e.g. a test double
     private ExecutorService executorService;
     private volatile boolean isConnected = false;
 
+    // Set when the receiver accepted the binary protocol in the handshake
+    private volatile boolean useBinaryProtocol = false;
+    // Set when it also listed smooth scrolling; otherwise scroll goes out in whole notches
+    private volatile boolean receiverSmoothScroll = false;
+    private int scrollUnitRemainder = 0; // Guarded by this
+    // Set when it listed touchpad gestures; without it they are dropped
+    private volatile boolean receiverGestures = false;
+    private volatile long sessionStartNanos;
+
+    // Binary events are queued as primitive records and encoded by a dedicated sender thread.
+    // Input arrives from the UI thread and from sensor callbacks, and the ring only supports a
+    // single producer, so offers are serialized on eventRing.
+    private final EventRing eventRing = new EventRing(RING_CAPACITY);
+    private volatile Thread senderThread;
+
+    private final EventSender eventSender = new EventSender(eventRing, this::sendFrame);
+
+    // Optional fixed-rate pacing of motion and analog input, 0 Hz = send as it arrives
+    private int transmitRateHz = 0;
+    private volatile TransmitScheduler transmitScheduler;
+
+    // Round-trip latency, measured with ping/pong while the binary protocol is active
+    private final LatencyProbe latencyProbe = new LatencyProbe(this::sendFrame);
+    private final WireProtocol.Frame receivedFrame = new WireProtocol.Frame(); // Receive thread only
+
+    // Optional controller state snapshots, replacing per-event button/analog frames
+    private volatile StateSnapshotSender stateSnapshotSender;
+
+    // Analog samples the receiver already has are not sent again
+    private final AnalogChangeFilter analogFilter = new AnalogChangeFilter();
+
+    // Input-frame batching
+    private volatile boolean batching = false;
+    private int heldFrames = 0; // Guarded by eventRing
+
     private NetworkManager() {
         executorService = Executors.newSingleThreadExecutor();
+        // Motion, analog samples, scroll and zoom are continuous and can give way; edges wait for room
+        eventRing.setOverflowPolicy(WireProtocol.TYPE_MOTION, EventRing.OverflowPolicy.DROP_OLDEST);
+        eventRing.setOverflowPolicy(WireProtocol.TYPE_ANALOG, EventRing.OverflowPolicy.DROP_OLDEST);
+        eventRing.setOverflowPolicy(WireProtocol.TYPE_TICK, EventRing.OverflowPolicy.DROP_OLDEST);
+        eventRing.setOverflowPolicy(WireProtocol.TYPE_SCROLL, EventRing.OverflowPolicy.DROP_OLDEST);
+        eventRing.setOverflowPolicy(WireProtocol.TYPE_SMOOTH_SCROLL, EventRing.OverflowPolicy.DROP_OLDEST);
+        eventRing.setOverflowPolicy(WireProtocol.TYPE_HSCROLL, EventRing.OverflowPolicy.DROP_OLDEST);
+        eventRing.setOverflowPolicy(WireProtocol.TYPE_ZOOM, EventRing.OverflowPolicy.DROP_OLDEST);
     }
 
     public static synchronized NetworkManager getInstance() {
@@ -37,47 +84,53 @@ public class NetworkManager {
 
         executorService.execute(() -> {
             try {
-                // Initialize UDP Socket
-                if (udpSocket != null && !udpSocket.isClosed()) {
-                    udpSocket.close();
-                }
-                udpSocket = new DatagramSocket();
-                udpSocket.setSoTimeout(2000); // 2 second timeout for handshake
+                stopSender();
 
-                // Send Handshake
+                // Initialize the transport
+                closeTransport();
+                serverAddress = InetAddress.getByName(serverIp);
+                Supplier<Transport> factory = transportFactory;
+                Transport newTransport = factory != null ? factory.get()
+                        : useNioTransport ? new NioTransport() : new DatagramSocketTransport();
+                transport = newTransport;
+                newTransport.open(serverAddress, serverPort);
+
+                // Send Handshake, offering the binary protocol. Old receivers ignore "proto"
+                // and answer a plain "ACK", in which case we stay on JSON.
                 JSONObject json = new JSONObject();
                 json.put("type", "handshake");
+                json.put("proto", WireProtocol.VERSION);
                 byte[] data = json.toString().getBytes();
-
-                DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getByName(serverIp),
-                        serverPort);
-                udpSocket.send(packet);
+                newTransport.send(data, 0, data.length);
 
                 // Wait for response
-                byte[] buffer = new byte[1024];
-                DatagramPacket responsePacket = new DatagramPacket(buffer, buffer.length);
-                udpSocket.receive(responsePacket);
+                byte[] buffer = new byte[Transport.MAX_DATAGRAM_SIZE];
+                int length = newTransport.receive(buffer, HANDSHAKE_TIMEOUT_MS);
 
                 // If we get here, we received a response
-                String response = new String(responsePacket.getData(), 0, responsePacket.getLength());
+                String response = new String(buffer, 0, length);
                 Log.d(TAG, "Handshake response: " + response);
+                newTransport.startReceiving(this::onDatagram);
 
+                useBinaryProtocol = response.startsWith("ACK") && response.contains("proto=" + WireProtocol.VERSION);
+                receiverSmoothScroll = useBinaryProtocol
+                        && response.contains(WireProtocol.CAPABILITY_SMOOTH_SCROLL);
+                receiverGestures = useBinaryProtocol && response.contains(WireProtocol.CAPABILITY_GESTURES);
+                sessionStartNanos = System.nanoTime();
+                analogFilter.reset();
+                if (useBinaryProtocol) {
+                    startSender();
+                }
                 isConnected = true;
                 if (callback != null) {
                     callback.onSuccess();
                 }
-                Log.d(TAG, "Connected to " + ip + ":" + port);
-
-                // Reset timeout for normal operation (optional, or keep generic if needed)
-                udpSocket.setSoTimeout(0);
+                Log.d(TAG, "Connected to " + ip + ":" + port + (useBinaryProtocol ? " (binary)" : " (json)"));
 
             } catch (Exception e) {
                 isConnected = false;
                 Log.e(TAG, "Connection failed", e);
-                if (udpSocket != null) {
-                    udpSocket.close();
-                    udpSocket = null;
-                }
+                closeTransport();
                 if (callback != null) {
                     callback.onFailure(e.getMessage());
                 }
@@ -87,17 +140,95 @@ public class NetworkManager {
 
     public void disconnect() {
         isConnected = false;
-        if (udpSocket != null && !udpSocket.isClosed()) {
-            udpSocket.close();
-            udpSocket = null;
+        useBinaryProtocol = false;
+        receiverSmoothScroll = false;
+        receiverGestures = false;
+        latencyProbe.stop();
+        stopStateSnapshots();
+        stopScheduler();
+        eventRing.close();
+        closeTransport();
+        for (String source : WireProtocol.SOURCES) {
+            Log.d(TAG, source + ": " + getAnalogSentCount(source) + " analog samples sent, "
+                    + getAnalogSuppressedCount(source) + " suppressed");
         }
         Log.d(TAG, "Disconnected");
     }
 
+    /**
+     * Uses the non-blocking NIO transport instead of the blocking DatagramSocket
+     * from the next connect() on.
+     */
+    public void setNioTransport(boolean enabled) {
+        useNioTransport = enabled;
+    }
+
+    /** Uses transports from {@code factory} from the next connect() on; null restores the default. */
+    void setTransportFactory(Supplier<Transport> factory) {
+        transportFactory = factory;
+    }
+
+    private void closeTransport() {
+        Transport t = transport;
+        if (t != null) {
+            transport = null;
+            t.close();
+        }
+    }
+
+    // Transport receive thread: datagrams from the receiver after the handshake
+    private void onDatagram(byte[] data, int length) {
+        if (length > 0 && data[0] != WireProtocol.MAGIC) {
+            Log.d(TAG, "Server message: " + new String(data, 0, length));
+            return;
+        }
+        WireProtocol.Frame frame = receivedFrame;
+        if (!WireProtocol.decode(data, 0, length, frame))
+            return;
+        if (frame.type == WireProtocol.TYPE_ACK) {
+            Thread sender = senderThread;
+            if (eventSender.onAck(frame.code) && sender != null) {
+                LockSupport.unpark(sender); // Records were waiting for this ack
+            }
+        } else if (frame.type == WireProtocol.TYPE_PONG) {
+            latencyProbe.onPong(frame.code, frame.probeNanos);
+        } else if (frame.type == WireProtocol.TYPE_STATE_ACK) {
+            StateSnapshotSender snapshots = stateSnapshotSender;
+            if (snapshots != null) {
+                snapshots.onAck(frame.code);
+            }
+        }
+    }
+
+    /**
+     * Round-trip latency to the receiver since the connection was made (or the
+     * last {@link #resetLatencyStats()}), or null when the receiver does not
+     * speak the binary protocol and cannot answer pings.
+     */
+    public LatencyStats getLatencyStats() {
+        if (!isConnected || !useBinaryProtocol)
+            return null;
+        return latencyProbe.getStats();
+    }
+
+    public void resetLatencyStats() {
+        latencyProbe.reset();
+    }
+
     public void sendMotion(float dx, float dy) {
-        if (!isConnected || udpSocket == null)
+        if (!isConnected || transport == null)
             return;
 
+        if (useBinaryProtocol) {
+            TransmitScheduler scheduler = transmitScheduler;
+            if (scheduler != null) {
+                scheduler.addMotion(dx, dy);
+            } else {
+                enqueue(WireProtocol.TYPE_MOTION, 0, 0, 0, dx, dy);
+            }
+            return;
+        }
+
         executorService.execute(() -> {
             try {
                 // Protocol: JSON {"type": "mouse_motion", "dx": dx, "dy": dy}
@@ -107,9 +238,7 @@ public class NetworkManager {
                 json.put("dy", dy);
 
                 byte[] data = json.toString().getBytes();
-                DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getByName(serverIp),
-                        serverPort);
-                udpSocket.send(packet);
+                transport.send(data, 0, data.length);
             } catch (Exception e) {
                 Log.e(TAG, "Error sending motion", e);
             }
@@ -120,6 +249,12 @@ public class NetworkManager {
         if (!isConnected)
             return;
 
+        int action = WireProtocol.clickCode(type);
+        if (useBinaryProtocol && action != 0) {
+            enqueueEdge(WireProtocol.TYPE_CLICK, action, 0, 0, 0f, 0f);
+            return;
+        }
+
         executorService.execute(() -> {
             try {
                 // Protocol: JSON {"type": "mouse_click", "action": "L" or "R"}
@@ -128,9 +263,7 @@ public class NetworkManager {
                 json.put("action", type);
 
                 byte[] data = json.toString().getBytes();
-                DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getByName(serverIp),
-                        serverPort);
-                udpSocket.send(packet);
+                transport.send(data, 0, data.length);
             } catch (Exception e) {
                 Log.e(TAG, "Error sending click", e);
             }
@@ -141,6 +274,11 @@ public class NetworkManager {
         if (!isConnected)
             return;
 
+        if (useBinaryProtocol) {
+            enqueueEdge(WireProtocol.TYPE_SCROLL, 0, 0, amount, 0f, 0f);
+            return;
+        }
+
         executorService.execute(() -> {
             try {
                 // Protocol: JSON {"type": "mouse_scroll", "amount": amount}
@@ -149,19 +287,86 @@ public class NetworkManager {
                 json.put("amount", amount);
 
                 byte[] data = json.toString().getBytes();
-                DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getByName(serverIp),
-                        serverPort);
-                udpSocket.send(packet);
+                transport.send(data, 0, data.length);
             } catch (Exception e) {
                 Log.e(TAG, "Error sending scroll", e);
             }
         });
     }
 
+    /**
+     * Scrolls by {@code units} of {@link WireProtocol#SCROLL_UNITS_PER_NOTCH}
+     * per wheel notch. Receivers without smooth scrolling get whole notches,
+     * with the rest carried over to the next call.
+     */
+    public void sendSmoothScroll(int units) {
+        if (!isConnected)
+            return;
+
+        if (receiverSmoothScroll) {
+            enqueueEdge(WireProtocol.TYPE_SMOOTH_SCROLL, 0, 0, units, 0f, 0f);
+            return;
+        }
+        int notches;
+        synchronized (this) {
+            scrollUnitRemainder += units;
+            notches = scrollUnitRemainder / WireProtocol.SCROLL_UNITS_PER_NOTCH; // Toward zero
+            scrollUnitRemainder -= notches * WireProtocol.SCROLL_UNITS_PER_NOTCH;
+        }
+        if (notches != 0) {
+            sendScroll(notches);
+        }
+    }
+
+    /**
+     * Scrolls sideways by {@code units} of {@link WireProtocol#SCROLL_UNITS_PER_NOTCH},
+     * positive to the right. This and the other gesture messages below are
+     * dropped unless the receiver listed gestures in the handshake.
+     */
+    public void sendHorizontalScroll(int units) {
+        if (isConnected && receiverGestures)
+            enqueueEdge(WireProtocol.TYPE_HSCROLL, 0, 0, units, 0f, 0f);
+    }
+
+    /** Zooms by {@code units}, a notch being one Ctrl+wheel step; positive zooms in. */
+    public void sendZoom(int units) {
+        if (isConnected && receiverGestures)
+            enqueueEdge(WireProtocol.TYPE_ZOOM, 0, 0, units, 0f, 0f);
+    }
+
+    /** Desktop switch: "LEFT" or "RIGHT", or "UP"/"DOWN" for the task overview. */
+    public void sendSwipe(String direction) {
+        int code = WireProtocol.swipeCode(direction);
+        if (isConnected && receiverGestures && code != 0)
+            enqueueEdge(WireProtocol.TYPE_SWIPE, code, 0, 0, 0f, 0f);
+    }
+
+    /**
+     * Holds ({@code pressed}) or releases mouse button "L" or "R". Motion sent
+     * after either reaches the receiver after it. Receivers that only know
+     * clicks get one click on release instead.
+     */
+    public void sendMouseButton(String button, boolean pressed) {
+        int code = WireProtocol.clickCode(button);
+        if (!isConnected || code == 0)
+            return;
+        if (receiverGestures) {
+            enqueueEdge(WireProtocol.TYPE_MOUSE_BUTTON, code, 0, pressed ? 1 : 0, 0f, 0f);
+        } else if (!pressed) {
+            sendClick(button);
+        }
+    }
+
     public void sendKey(String key) {
         if (!isConnected)
             return;
 
+        int code = WireProtocol.keyCode(key);
+        if (useBinaryProtocol && code != 0) {
+            enqueueEdge(WireProtocol.TYPE_KEY, code, 0, 0, 0f, 0f);
+            return;
+        }
+
         executorService.execute(() -> {
             try {
                 // Protocol: JSON {"type": "keyboard", "key": key}
@@ -170,19 +375,112 @@ public class NetworkManager {
                 json.put("key", key);
 
                 byte[] data = json.toString().getBytes();
-                DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getByName(serverIp),
-                        serverPort);
-                udpSocket.send(packet);
+                transport.send(data, 0, data.length);
             } catch (Exception e) {
                 Log.e(TAG, "Error sending key", e);
             }
         });
     }
 
+    public void sendButton(String key, String group, boolean isPressed) {
+        if (!isConnected)
+            return;
+
+        int keyCode = WireProtocol.keyCode(key);
+        int groupCode = WireProtocol.groupCode(group);
+        if (useBinaryProtocol && keyCode != 0 && groupCode != 0) {
+            enqueueEdge(WireProtocol.TYPE_BUTTON, keyCode, groupCode, isPressed ? 1 : 0, 0f, 0f);
+            return;
+        }
+
+        executorService.execute(() -> {
+            try {
+                // Protocol: JSON {"type": "button", "group": group, "key": key, "action": "PRESS" or "RELEASE"}
+                JSONObject json = new JSONObject();
+                json.put("type", "button");
+                json.put("group", group);
+                json.put("key", key);
+                json.put("action", isPressed ? "PRESS" : "RELEASE");
+
+                byte[] data = json.toString().getBytes();
+                transport.send(data, 0, data.length);
+            } catch (Exception e) {
+                Log.e(TAG, "Error sending button", e);
+            }
+        });
+    }
+
+    public void sendAnalog(String source, float x, float y) {
+        if (!isConnected)
+            return;
+
+        int sourceCode = WireProtocol.sourceCode(source);
+        if (sourceCode != 0 && !analogFilter.shouldSend(sourceCode, x, y, System.nanoTime()))
+            return;
+        if (useBinaryProtocol && sourceCode != 0) {
+            TransmitScheduler scheduler = transmitScheduler;
+            if (scheduler != null) {
+                scheduler.setAnalog(sourceCode, x, y);
+            } else {
+                enqueue(WireProtocol.TYPE_ANALOG, sourceCode, 0, 0, x, y);
+            }
+            return;
+        }
+
+        executorService.execute(() -> {
+            try {
+                // Protocol: JSON {"type": "analog", "source": source, "x": x, "y": y}
+                JSONObject json = new JSONObject();
+                json.put("type", "analog");
+                json.put("source", source);
+                json.put("x", x);
+                json.put("y", y);
+
+                byte[] data = json.toString().getBytes();
+                transport.send(data, 0, data.length);
+            } catch (Exception e) {
+                Log.e(TAG, "Error sending analog", e);
+            }
+        });
+    }
+
+    /**
+     * Analog samples of {@code source} that moved less than {@code epsilon} on
+     * both axes since the last one sent are dropped. Defaults to 0.005 of full
+     * scale; 0 only drops exact repeats.
+     */
+    public void setAnalogDeadband(String source, float epsilon) {
+        int sourceCode = WireProtocol.sourceCode(source);
+        if (sourceCode == 0)
+            throw new IllegalArgumentException("Unknown analog source " + source);
+        analogFilter.setDeadband(sourceCode, epsilon);
+    }
+
+    /** An unchanged analog value is still resent this often while samples arrive. Default 250 ms. */
+    public void setAnalogHeartbeatMs(int ms) {
+        analogFilter.setHeartbeatNanos(ms * 1_000_000L);
+    }
+
+    /** Analog samples of {@code source} that were sent, since the app started. */
+    public long getAnalogSentCount(String source) {
+        int sourceCode = WireProtocol.sourceCode(source);
+        return sourceCode == 0 ? 0 : analogFilter.getSentCount(sourceCode);
+    }
+
+    /** Analog samples of {@code source} dropped as unchanged, since the app started. */
+    public long getAnalogSuppressedCount(String source) {
+        int sourceCode = WireProtocol.sourceCode(source);
+        return sourceCode == 0 ? 0 : analogFilter.getSuppressedCount(sourceCode);
+    }
+
     public boolean isConnected() {
         return isConnected;
     }
 
+    public boolean isBinaryProtocol() {
+        return useBinaryProtocol;
+    }
+
     public interface ConnectionCallback {
         void onSuccess();
 
@@ -197,12 +495,219 @@ public class NetworkManager {
         executorService.execute(() -> {
             try {
                 byte[] data = jsonString.getBytes();
-                DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getByName(serverIp),
-                        serverPort);
-                udpSocket.send(packet);
+                transport.send(data, 0, data.length);
             } catch (Exception e) {
                 Log.e(TAG, "Error sending JSON", e);
             }
         });
     }
+
+    // Queues a binary event for the sender thread. Never allocates.
+    private void enqueue(int type, int code, int group, int value, float x, float y) {
+        long now = System.nanoTime();
+        synchronized (eventRing) {
+            eventRing.offer(type, code, group, value, x, y, now);
+        }
+    }
+
+    // Clicks, buttons, keys and scroll. Motion still waiting in the transmit scheduler
+    // is flushed first so the edge cannot overtake it.
+    private void enqueueEdge(int type, int code, int group, int value, float x, float y) {
+        TransmitScheduler scheduler = transmitScheduler;
+        if (scheduler != null) {
+            scheduler.flush();
+        }
+        enqueue(type, code, group, value, x, y);
+    }
+
+    // TransmitScheduler.TickSink: one combined frame per tick
+    private void enqueueTick(int mask, float dx, float dy, float[] analog, long timeNanos) {
+        synchronized (eventRing) {
+            eventRing.offer(WireProtocol.TYPE_TICK, 0, 0, mask, dx, dy, analog, timeNanos);
+        }
+    }
+
+    /**
+     * Paces motion and analog input at a fixed rate instead of sending every sample
+     * as it arrives. Use one of the TransmitScheduler.RATE_* values (60, 120, 250 or
+     * 500 Hz), or 0 to send immediately. Only applies to the binary protocol.
+     */
+    public synchronized void setTransmitRate(int hz) {
+        transmitRateHz = hz;
+        stopScheduler();
+        if (isConnected && useBinaryProtocol) {
+            startScheduler();
+        }
+    }
+
+    public int getTransmitRate() {
+        return transmitRateHz;
+    }
+
+    /** Mean lateness of transmit ticks in microseconds, or -1 when pacing is off. */
+    public long getTickJitterMeanMicros() {
+        TransmitScheduler scheduler = transmitScheduler;
+        return scheduler == null ? -1 : scheduler.getMeanJitterMicros();
+    }
+
+    /** Worst lateness of a transmit tick in microseconds, or -1 when pacing is off. */
+    public long getTickJitterMaxMicros() {
+        TransmitScheduler scheduler = transmitScheduler;
+        return scheduler == null ? -1 : scheduler.getMaxJitterMicros();
+    }
+
+    private synchronized void startScheduler() {
+        if (transmitRateHz <= 0 || transmitScheduler != null)
+            return;
+        TransmitScheduler scheduler = new TransmitScheduler(transmitRateHz, this::enqueueTick);
+        scheduler.start();
+        transmitScheduler = scheduler;
+    }
+
+    private synchronized void stopScheduler() {
+        TransmitScheduler scheduler = transmitScheduler;
+        if (scheduler != null) {
+            transmitScheduler = null;
+            scheduler.stop();
+        }
+    }
+
+    /**
+     * Packs all events produced between {@link #beginInputFrame()} and
+     * {@link #endInputFrame()} into a single datagram instead of one each.
+     * Only applies to the binary protocol. Off by default.
+     */
+    public void setBatching(boolean enabled) {
+        batching = enabled;
+        eventSender.setBatching(enabled);
+    }
+
+    /** Marks the start of one input frame (e.g. one touch or sensor callback). */
+    public void beginInputFrame() {
+        if (!batching || !useBinaryProtocol)
+            return;
+        synchronized (eventRing) {
+            eventRing.beginBatch();
+            heldFrames++;
+        }
+    }
+
+    /** Hands the events since {@link #beginInputFrame()} to the sender as one batch. */
+    public void endInputFrame() {
+        synchronized (eventRing) {
+            if (heldFrames == 0)
+                return;
+            heldFrames--;
+            eventRing.endBatch();
+        }
+    }
+
+    /**
+     * Sends {@code state} as delta-encoded snapshots at a fixed rate until
+     * {@link #stopStateSnapshots()}. Callers keep updating the state and stop
+     * sending individual button and analog events while
+     * {@link #isStateSnapshotActive()}. Needs the binary protocol; does nothing
+     * otherwise.
+     */
+    public synchronized void startStateSnapshots(ControllerState state) {
+        stopStateSnapshots();
+        if (!isConnected || !useBinaryProtocol)
+            return;
+        StateSnapshotSender snapshots = new StateSnapshotSender(state, this::sendFrame);
+        snapshots.start(StateSnapshotSender.DEFAULT_RATE_HZ);
+        stateSnapshotSender = snapshots;
+    }
+
+    public synchronized void stopStateSnapshots() {
+        StateSnapshotSender snapshots = stateSnapshotSender;
+        if (snapshots != null) {
+            stateSnapshotSender = null;
+            snapshots.stop();
+        }
+    }
+
+    public boolean isStateSnapshotActive() {
+        return stateSnapshotSender != null;
+    }
+
+    public long getDroppedEventCount() {
+        return eventRing.getDroppedCount();
+    }
+
+    /** Button, click and key datagrams resent because their ack was late. */
+    public long getRetransmitCount() {
+        return eventSender.getReliableLane().getRetransmitCount();
+    }
+
+    /** Reliable datagrams given up on after repeated resends without an ack. */
+    public long getReliableFailureCount() {
+        return eventSender.getReliableLane().getFailedCount();
+    }
+
+    /**
+     * Merges queued motion deltas and analog samples when the sender falls behind,
+     * instead of replaying every one of them. Enabled by default.
+     */
+    public void setMotionCoalescing(boolean enabled) {
+        eventSender.setCoalescing(enabled);
+    }
+
+    // Called on the executor thread once the handshake succeeded
+    private void startSender() {
+        synchronized (eventRing) {
+            eventRing.reset();
+            heldFrames = 0;
+        }
+        eventSender.reset(sessionStartNanos);
+        senderThread = new Thread(this::runSender, "NetworkSender");
+        senderThread.setPriority(Thread.MAX_PRIORITY);
+        senderThread.start();
+        startScheduler();
+        latencyProbe.reset();
+        latencyProbe.start(LatencyProbe.DEFAULT_INTERVAL_MS);
+    }
+
+    // Called on the executor thread before a new connection is set up
+    private void stopSender() throws InterruptedException {
+        latencyProbe.stop();
+        stopStateSnapshots();
+        stopScheduler();
+        eventRing.close();
+        if (senderThread != null) {
+            senderThread.interrupt();
+            senderThread.join();
+            senderThread = null;
+        }
+    }
+
+    private void runSender() {
+        while (!eventRing.isClosed()) {
+            try {
+                eventSender.drain();
+                eventSender.retransmitDue();
+            } catch (IOException e) {
+                if (isConnected) {
+                    Log.e(TAG, "Error sending frame", e);
+                }
+            }
+            // Wake up in time for the next resend while reliable frames wait for their ack
+            long now = System.nanoTime();
+            long retransmit = eventSender.getReliableLane().nanosUntilNextRetransmit(now);
+            long barrier = eventSender.nanosUntilBarrierLifts(now);
+            if (barrier >= 0) {
+                // Queued records are held back, so do not wait for them: the ack unparks us
+                LockSupport.parkNanos(this, retransmit >= 0 ? Math.min(barrier, retransmit) : barrier);
+            } else {
+                eventRing.awaitRecord(SENDER_SPINS, retransmit);
+            }
+        }
+    }
+
+    // Sender, latency probe and snapshot threads, the transport serializes them
+    private void sendFrame(byte[] frame, int length) throws IOException {
+        Transport t = transport;
+        if (t == null)
+            return;
+        t.send(frame, 0, length);
+    }
 }
@@ -0,0 +1,135 @@
+package com.example.myapp;
+
+import android.util.Log;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * Non-blocking {@link DatagramChannel} transport. The channel is connected to
+ * the receiver, so every write skips the per-packet address lookup and
+ * security checks, and datagrams are written from a reusable direct buffer
+ * instead of being copied into a temporary native buffer. Incoming datagrams
+ * are read by a {@link Selector} loop on a background thread.
+ */
+class NioTransport implements Transport {
+    private static final String TAG = "NioTransport";
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(WireProtocol.MAX_BATCH_SIZE); // Guarded by itself
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+    private final byte[] receiveArray = new byte[MAX_DATAGRAM_SIZE];
+    private volatile long droppedCount = 0;
+    private Thread receiveThread;
+
+    @Override
+    public void open(InetAddress address, int port) throws IOException {
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(new InetSocketAddress(address, port));
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+    }
+
+    @Override
+    public void send(byte[] data, int offset, int length) throws IOException {
+        synchronized (sendBuffer) {
+            ByteBuffer buffer = length <= sendBuffer.capacity() ? sendBuffer : ByteBuffer.allocate(length);
+            buffer.clear();
+            buffer.put(data, offset, length);
+            buffer.flip();
+            try {
+                if (channel.write(buffer) == 0) {
+                    droppedCount++; // Socket buffer full; UDP would have dropped it anyway
+                }
+            } catch (PortUnreachableException e) {
+                // ICMP from an earlier datagram, the receiver is not listening (yet)
+                droppedCount++;
+            }
+        }
+    }
+
+    @Override
+    public int receive(byte[] buffer, int timeoutMs) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            int length = read(buffer);
+            if (length >= 0)
+                return length;
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                throw new SocketTimeoutException("No reply within " + timeoutMs + " ms");
+            selector.select(remaining);
+            selector.selectedKeys().clear();
+        }
+    }
+
+    @Override
+    public void startReceiving(Receiver receiver) {
+        receiveThread = new Thread(() -> runReceiver(receiver), "NioReceiver");
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (selector != null) {
+                selector.close(); // Wakes the receive thread
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Close failed", e);
+        }
+    }
+
+    /** Datagrams the kernel would not take (send buffer full or port unreachable). */
+    long getDroppedCount() {
+        return droppedCount;
+    }
+
+    private void runReceiver(Receiver receiver) {
+        try {
+            while (channel.isOpen()) {
+                selector.select();
+                selector.selectedKeys().clear();
+                int length;
+                while ((length = read(receiveArray)) >= 0) {
+                    receiver.onDatagram(receiveArray, length);
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // Closed
+        } catch (IOException e) {
+            if (channel.isOpen()) {
+                Log.e(TAG, "Receive failed", e);
+            }
+        }
+    }
+
+    // Reads one pending datagram into buffer. @return its length, or -1 if none is pending
+    private int read(byte[] buffer) throws IOException {
+        ByteBuffer in = receiveBuffer;
+        in.clear();
+        try {
+            if (channel.read(in) <= 0 && in.position() == 0)
+                return -1;
+        } catch (PortUnreachableException e) {
+            return -1;
+        }
+        in.flip();
+        int length = Math.min(in.remaining(), buffer.length);
+        in.get(buffer, 0, length);
+        return length;
+    }
+}
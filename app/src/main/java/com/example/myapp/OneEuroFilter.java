@@ -0,0 +1,86 @@
+package com.example.myapp;
+
+/**
+ * One Euro filter (Casiez, Roussel, Vogel 2012) for one axis of a noisy
+ * signal: a low-pass whose cutoff rises with the signal's speed. At rest the
+ * cutoff sits at {@code minCutoff} and jitter is smoothed away; when the
+ * signal moves fast the cutoff grows by {@code beta} per unit/s of speed, so
+ * it follows with little lag. Time steps come from the sample timestamps.
+ *
+ * Primitive fields only, nothing is allocated per sample. Not thread-safe:
+ * each signal owns its filters and calls them from one thread.
+ */
+class OneEuroFilter {
+
+    private float minCutoff;
+    private float beta;
+    private float derivativeCutoff;
+
+    private boolean initialized = false;
+    private long lastTimestamp;
+    private float lastRaw;
+    private float lastValue;
+    private float lastDerivative;
+
+    /**
+     * @param minCutoff cutoff at rest, Hz. Lower means less jitter, more lag when slow
+     * @param beta cutoff increase per unit/s of speed. Higher means less lag when fast
+     * @param derivativeCutoff cutoff for the speed estimate itself, Hz
+     */
+    OneEuroFilter(float minCutoff, float beta, float derivativeCutoff) {
+        setParameters(minCutoff, beta, derivativeCutoff);
+    }
+
+    OneEuroFilter(float minCutoff, float beta) {
+        this(minCutoff, beta, 1f);
+    }
+
+    /** Takes effect from the next sample; the filter state is kept. */
+    void setParameters(float minCutoff, float beta, float derivativeCutoff) {
+        if (minCutoff <= 0f || derivativeCutoff <= 0f || beta < 0f)
+            throw new IllegalArgumentException("Cutoffs must be positive and beta not negative");
+        this.minCutoff = minCutoff;
+        this.beta = beta;
+        this.derivativeCutoff = derivativeCutoff;
+    }
+
+    /** Forgets the signal; the next sample is passed through unchanged. */
+    void reset() {
+        initialized = false;
+    }
+
+    /**
+     * Filters one sample taken at {@code timestampNanos}. A sample at or before
+     * the previous timestamp returns the previous output.
+     */
+    float filter(float value, long timestampNanos) {
+        if (!initialized) {
+            initialized = true;
+            lastTimestamp = timestampNanos;
+            lastRaw = value;
+            lastValue = value;
+            lastDerivative = 0f;
+            return value;
+        }
+        long interval = timestampNanos - lastTimestamp;
+        if (interval <= 0)
+            return lastValue;
+        float dt = interval * 1e-9f;
+        lastTimestamp = timestampNanos;
+
+        // Speed of the raw signal, itself smoothed
+        float derivative = (value - lastRaw) / dt;
+        lastRaw = value;
+        lastDerivative += alpha(derivativeCutoff, dt) * (derivative - lastDerivative);
+
+        float cutoff = minCutoff + beta * Math.abs(lastDerivative);
+        lastValue += alpha(cutoff, dt) * (value - lastValue);
+        return lastValue;
+    }
+
+    // Smoothing factor of a first-order low-pass at `cutoff` Hz over `dt` seconds
+    private static float alpha(float cutoff, float dt) {
+        float tau = 1f / (2f * (float) Math.PI * cutoff);
+        return 1f / (1f + tau / dt);
+    }
+}
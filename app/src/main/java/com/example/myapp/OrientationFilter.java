@@ -0,0 +1,281 @@
+package com.example.myapp;
+
+/**
+ * Madgwick orientation filter. Fuses gyroscope rates with the accelerometer
+ * (and optionally the magnetometer) into a unit quaternion by gradient
+ * descent: the gyro is integrated for smooth, fast response and the gravity
+ * (and field) direction slowly pulls the estimate back, so hand vibration in
+ * the accelerometer is filtered out and the gyro cannot drift in pitch/roll.
+ *
+ * Also estimates the gyro bias from the same correction step (Madgwick's
+ * "zeta" term), so {@link #getRateX()} etc. can drive the cursor without the
+ * slow creep of a raw gyro.
+ *
+ * Uses Android sensor axes and units (rad/s, m/s^2, uT; any scale works for
+ * accelerometer and magnetometer since they are normalized). The quaternion
+ * describes the earth frame relative to the device. All state is in
+ * primitive fields; updates never allocate.
+ */
+class OrientationFilter {
+
+    static final float DEFAULT_BETA = 0.08f; // ~sqrt(3/4) * 5 deg/s gyro error
+    static final float DEFAULT_ZETA = 0.015f; // Gyro bias drift rate
+
+    private float beta = DEFAULT_BETA;
+    private float zeta = DEFAULT_ZETA;
+
+    private float q0 = 1f, q1 = 0f, q2 = 0f, q3 = 0f;
+    private float biasX = 0f, biasY = 0f, biasZ = 0f;
+    private float rateX = 0f, rateY = 0f, rateZ = 0f; // Last bias-corrected gyro sample
+    private boolean initialized = false;
+
+    void setBeta(float beta) {
+        this.beta = beta;
+    }
+
+    void setZeta(float zeta) {
+        this.zeta = zeta;
+    }
+
+    boolean isInitialized() {
+        return initialized;
+    }
+
+    void reset() {
+        q0 = 1f;
+        q1 = q2 = q3 = 0f;
+        biasX = biasY = biasZ = 0f;
+        rateX = rateY = rateZ = 0f;
+        initialized = false;
+    }
+
+    /** Starts from the attitude given by one accelerometer sample instead of converging to it. */
+    void initFromAccel(float ax, float ay, float az) {
+        float norm = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+        if (norm == 0f)
+            return;
+        ax /= norm;
+        ay /= norm;
+        az /= norm;
+        // Shortest rotation taking the earth's up axis to the measured one
+        if (az < -0.9999f) {
+            q0 = 0f;
+            q1 = 1f;
+            q2 = 0f;
+            q3 = 0f;
+        } else {
+            float w = 1f + az;
+            float n = invSqrt(w * w + ay * ay + ax * ax);
+            q0 = w * n;
+            q1 = ay * n;
+            q2 = -ax * n;
+            q3 = 0f;
+        }
+        initialized = true;
+    }
+
+    /** Gyroscope + accelerometer update. {@code dt} in seconds. */
+    void update(float gx, float gy, float gz, float ax, float ay, float az, float dt) {
+        if (!initialized) {
+            initFromAccel(ax, ay, az);
+        }
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+
+        if (!(ax == 0f && ay == 0f && az == 0f)) {
+            float recipNorm = invSqrt(ax * ax + ay * ay + az * az);
+            ax *= recipNorm;
+            ay *= recipNorm;
+            az *= recipNorm;
+
+            float _2q0 = 2f * q0;
+            float _2q1 = 2f * q1;
+            float _2q2 = 2f * q2;
+            float _2q3 = 2f * q3;
+            float _4q0 = 4f * q0;
+            float _4q1 = 4f * q1;
+            float _4q2 = 4f * q2;
+            float _8q1 = 8f * q1;
+            float _8q2 = 8f * q2;
+            float q0q0 = q0 * q0;
+            float q1q1 = q1 * q1;
+            float q2q2 = q2 * q2;
+            float q3q3 = q3 * q3;
+
+            // Gradient of the gravity error
+            s0 = _4q0 * q2q2 + _2q2 * ax + _4q0 * q1q1 - _2q1 * ay;
+            s1 = _4q1 * q3q3 - _2q3 * ax + 4f * q0q0 * q1 - _2q0 * ay - _4q1 + _8q1 * q1q1 + _8q1 * q2q2
+                    + _4q1 * az;
+            s2 = 4f * q0q0 * q2 + _2q0 * ax + _4q2 * q3q3 - _2q3 * ay - _4q2 + _8q2 * q1q1 + _8q2 * q2q2
+                    + _4q2 * az;
+            s3 = 4f * q1q1 * q3 - _2q1 * ax + 4f * q2q2 * q3 - _2q2 * ay;
+        }
+        integrate(gx, gy, gz, s0, s1, s2, s3, dt);
+    }
+
+    /** Gyroscope + accelerometer + magnetometer update, also corrects heading. */
+    void update(float gx, float gy, float gz, float ax, float ay, float az, float mx, float my, float mz,
+            float dt) {
+        if ((mx == 0f && my == 0f && mz == 0f) || (ax == 0f && ay == 0f && az == 0f)) {
+            update(gx, gy, gz, ax, ay, az, dt);
+            return;
+        }
+        if (!initialized) {
+            initFromAccel(ax, ay, az);
+        }
+
+        float recipNorm = invSqrt(ax * ax + ay * ay + az * az);
+        ax *= recipNorm;
+        ay *= recipNorm;
+        az *= recipNorm;
+        recipNorm = invSqrt(mx * mx + my * my + mz * mz);
+        mx *= recipNorm;
+        my *= recipNorm;
+        mz *= recipNorm;
+
+        float _2q0mx = 2f * q0 * mx;
+        float _2q0my = 2f * q0 * my;
+        float _2q0mz = 2f * q0 * mz;
+        float _2q1mx = 2f * q1 * mx;
+        float _2q0 = 2f * q0;
+        float _2q1 = 2f * q1;
+        float _2q2 = 2f * q2;
+        float _2q3 = 2f * q3;
+        float _2q0q2 = 2f * q0 * q2;
+        float _2q2q3 = 2f * q2 * q3;
+        float q0q0 = q0 * q0;
+        float q0q1 = q0 * q1;
+        float q0q2 = q0 * q2;
+        float q0q3 = q0 * q3;
+        float q1q1 = q1 * q1;
+        float q1q2 = q1 * q2;
+        float q1q3 = q1 * q3;
+        float q2q2 = q2 * q2;
+        float q2q3 = q2 * q3;
+        float q3q3 = q3 * q3;
+
+        // Direction of the earth's field, with inclination but without declination
+        float hx = mx * q0q0 - _2q0my * q3 + _2q0mz * q2 + mx * q1q1 + _2q1 * my * q2 + _2q1 * mz * q3
+                - mx * q2q2 - mx * q3q3;
+        float hy = _2q0mx * q3 + my * q0q0 - _2q0mz * q1 + _2q1mx * q2 - my * q1q1 + my * q2q2 + _2q2 * mz * q3
+                - my * q3q3;
+        float _2bx = (float) Math.sqrt(hx * hx + hy * hy);
+        float _2bz = -_2q0mx * q2 + _2q0my * q1 + mz * q0q0 + _2q1mx * q3 - mz * q1q1 + _2q2 * my * q3
+                - mz * q2q2 + mz * q3q3;
+        float _4bx = 2f * _2bx;
+        float _4bz = 2f * _2bz;
+
+        // Gradient of the combined gravity and field error
+        float s0 = -_2q2 * (2f * q1q3 - _2q0q2 - ax) + _2q1 * (2f * q0q1 + _2q2q3 - ay)
+                - _2bz * q2 * (_2bx * (0.5f - q2q2 - q3q3) + _2bz * (q1q3 - q0q2) - mx)
+                + (-_2bx * q3 + _2bz * q1) * (_2bx * (q1q2 - q0q3) + _2bz * (q0q1 + q2q3) - my)
+                + _2bx * q2 * (_2bx * (q0q2 + q1q3) + _2bz * (0.5f - q1q1 - q2q2) - mz);
+        float s1 = _2q3 * (2f * q1q3 - _2q0q2 - ax) + _2q0 * (2f * q0q1 + _2q2q3 - ay)
+                - 4f * q1 * (1 - 2f * q1q1 - 2f * q2q2 - az)
+                + _2bz * q3 * (_2bx * (0.5f - q2q2 - q3q3) + _2bz * (q1q3 - q0q2) - mx)
+                + (_2bx * q2 + _2bz * q0) * (_2bx * (q1q2 - q0q3) + _2bz * (q0q1 + q2q3) - my)
+                + (_2bx * q3 - _4bz * q1) * (_2bx * (q0q2 + q1q3) + _2bz * (0.5f - q1q1 - q2q2) - mz);
+        float s2 = -_2q0 * (2f * q1q3 - _2q0q2 - ax) + _2q3 * (2f * q0q1 + _2q2q3 - ay)
+                - 4f * q2 * (1 - 2f * q1q1 - 2f * q2q2 - az)
+                + (-_4bx * q2 - _2bz * q0) * (_2bx * (0.5f - q2q2 - q3q3) + _2bz * (q1q3 - q0q2) - mx)
+                + (_2bx * q1 + _2bz * q3) * (_2bx * (q1q2 - q0q3) + _2bz * (q0q1 + q2q3) - my)
+                + (_2bx * q0 - _4bz * q2) * (_2bx * (q0q2 + q1q3) + _2bz * (0.5f - q1q1 - q2q2) - mz);
+        float s3 = _2q1 * (2f * q1q3 - _2q0q2 - ax) + _2q2 * (2f * q0q1 + _2q2q3 - ay)
+                + (-_4bx * q3 + _2bz * q1) * (_2bx * (0.5f - q2q2 - q3q3) + _2bz * (q1q3 - q0q2) - mx)
+                + (-_2bx * q0 + _2bz * q2) * (_2bx * (q1q2 - q0q3) + _2bz * (q0q1 + q2q3) - my)
+                + _2bx * q1 * (_2bx * (q0q2 + q1q3) + _2bz * (0.5f - q1q1 - q2q2) - mz);
+        integrate(gx, gy, gz, s0, s1, s2, s3, dt);
+    }
+
+    // Applies the normalized gradient step s to the bias estimate and the quaternion
+    private void integrate(float gx, float gy, float gz, float s0, float s1, float s2, float s3, float dt) {
+        float sNorm = s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3;
+        if (sNorm > 0f) {
+            float recipNorm = invSqrt(sNorm);
+            s0 *= recipNorm;
+            s1 *= recipNorm;
+            s2 *= recipNorm;
+            s3 *= recipNorm;
+
+            // Gyro error implied by the correction: 2 q* (x) s
+            float ex = 2f * (q0 * s1 - q1 * s0 - q2 * s3 + q3 * s2);
+            float ey = 2f * (q0 * s2 + q1 * s3 - q2 * s0 - q3 * s1);
+            float ez = 2f * (q0 * s3 - q1 * s2 + q2 * s1 - q3 * s0);
+            biasX += ex * dt * zeta;
+            biasY += ey * dt * zeta;
+            biasZ += ez * dt * zeta;
+        }
+        gx -= biasX;
+        gy -= biasY;
+        gz -= biasZ;
+        rateX = gx;
+        rateY = gy;
+        rateZ = gz;
+
+        float qDot0 = 0.5f * (-q1 * gx - q2 * gy - q3 * gz) - beta * s0;
+        float qDot1 = 0.5f * (q0 * gx + q2 * gz - q3 * gy) - beta * s1;
+        float qDot2 = 0.5f * (q0 * gy - q1 * gz + q3 * gx) - beta * s2;
+        float qDot3 = 0.5f * (q0 * gz + q1 * gy - q2 * gx) - beta * s3;
+
+        q0 += qDot0 * dt;
+        q1 += qDot1 * dt;
+        q2 += qDot2 * dt;
+        q3 += qDot3 * dt;
+        float recipNorm = invSqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+        q0 *= recipNorm;
+        q1 *= recipNorm;
+        q2 *= recipNorm;
+        q3 *= recipNorm;
+    }
+
+    // Unit gravity direction in device axes, the filtered counterpart of accelerometer / 9.8
+
+    float getGravityX() {
+        return 2f * (q1 * q3 - q0 * q2);
+    }
+
+    float getGravityY() {
+        return 2f * (q0 * q1 + q2 * q3);
+    }
+
+    float getGravityZ() {
+        return q0 * q0 - q1 * q1 - q2 * q2 + q3 * q3;
+    }
+
+    // Last gyro sample minus the estimated bias, rad/s
+
+    float getRateX() {
+        return rateX;
+    }
+
+    float getRateY() {
+        return rateY;
+    }
+
+    float getRateZ() {
+        return rateZ;
+    }
+
+    float getBiasX() {
+        return biasX;
+    }
+
+    float getBiasY() {
+        return biasY;
+    }
+
+    float getBiasZ() {
+        return biasZ;
+    }
+
+    /** Copies w, x, y, z into {@code out}. */
+    void getQuaternion(float[] out) {
+        out[0] = q0;
+        out[1] = q1;
+        out[2] = q2;
+        out[3] = q3;
+    }
+
+    private static float invSqrt(float x) {
+        return (float) (1.0 / Math.sqrt(x));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.myapp;
+
+/**
+ * Turns raw pointer deltas (gyro or touchpad) into the whole-pixel deltas
+ * sent to the host. Two stages:
+ *
+ * 1. Gain: a {@link Curve} maps the pointer speed to a multiplier, so slow
+ *    movements can be made finer and fast ones cover more screen.
+ * 2. Sub-pixel accumulation: the fractional part of every scaled delta is
+ *    carried over to the next one instead of being truncated by the host, so
+ *    the whole-pixel deltas always add up to the scaled motion.
+ *
+ * Curves are pure functions of speed and shared freely; a PointerBallistics
+ * instance holds only the remainder and belongs to one input thread.
+ */
+class PointerBallistics {
+
+    /** Gain as a function of pointer speed in input units per second. */
+    interface Curve {
+        float gain(float speed);
+    }
+
+    /** Constant gain of 1. */
+    static final Curve LINEAR = speed -> 1f;
+
+    /**
+     * Shaped like Windows' "Enhance pointer precision": under 1 for slow,
+     * careful motion, rising to about 2 for fast flicks.
+     */
+    static final Curve ENHANCED = piecewise(
+            new float[] { 0f, 100f, 400f, 1200f, 3000f },
+            new float[] { 0.4f, 0.7f, 1.0f, 1.6f, 2.2f });
+
+    /**
+     * Gain interpolated linearly between control points and held flat
+     * outside them. {@code speeds} must be increasing.
+     */
+    static Curve piecewise(float[] speeds, float[] gains) {
+        if (speeds.length == 0 || speeds.length != gains.length)
+            throw new IllegalArgumentException("Need matching, non-empty speeds and gains");
+        for (int i = 1; i < speeds.length; i++) {
+            if (speeds[i] <= speeds[i - 1])
+                throw new IllegalArgumentException("Speeds must be increasing");
+        }
+        final float[] s = speeds.clone();
+        final float[] g = gains.clone();
+        return speed -> {
+            if (speed <= s[0])
+                return g[0];
+            int last = s.length - 1;
+            if (speed >= s[last])
+                return g[last];
+            int i = 1;
+            while (speed > s[i]) {
+                i++;
+            }
+            float t = (speed - s[i - 1]) / (s[i] - s[i - 1]);
+            return g[i - 1] + t * (g[i] - g[i - 1]);
+        };
+    }
+
+    /** Preset by its stored name; unknown names fall back to {@link #LINEAR}. */
+    static Curve forName(String name) {
+        if ("enhanced".equals(name))
+            return ENHANCED;
+        return LINEAR;
+    }
+
+    private volatile Curve curve; // May be swapped from another thread
+    private final float scale;
+    private float remainderX = 0f;
+    private float remainderY = 0f;
+    private int outX = 0;
+    private int outY = 0;
+
+    /** @param scale constant factor applied on top of the curve, e.g. a sensitivity setting */
+    PointerBallistics(Curve curve, float scale) {
+        this.curve = curve;
+        this.scale = scale;
+    }
+
+    void setCurve(Curve curve) {
+        this.curve = curve;
+    }
+
+    /**
+     * Processes one delta that covered {@code dtSeconds}; a non-positive dt
+     * (first sample) is treated as slow motion. Read the result with
+     * {@link #getX()}, {@link #getY()}.
+     *
+     * @return true if at least one whole pixel came out
+     */
+    boolean apply(float dx, float dy, float dtSeconds) {
+        float speed = dtSeconds > 0f ? (float) Math.sqrt(dx * dx + dy * dy) / dtSeconds : 0f;
+        float gain = curve.gain(speed) * scale;
+        remainderX += dx * gain;
+        remainderY += dy * gain;
+        outX = (int) remainderX; // Toward zero, so the remainder keeps the sign of the motion
+        outY = (int) remainderY;
+        remainderX -= outX;
+        remainderY -= outY;
+        return outX != 0 || outY != 0;
+    }
+
+    int getX() {
+        return outX;
+    }
+
+    int getY() {
+        return outY;
+    }
+
+    /** Drops the carried fraction, e.g. when a touch ends. */
+    void reset() {
+        remainderX = 0f;
+        remainderY = 0f;
+        outX = 0;
+        outY = 0;
+    }
+}
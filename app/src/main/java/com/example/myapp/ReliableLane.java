@@ -0,0 +1,175 @@
+package com.example.myapp;
+
+import java.io.IOException;
+
+/**
+ * Keeps a copy of every datagram that carries a reliable record (button,
+ * click, key) until the receiver acknowledges its sequence number, and
+ * resends it unchanged when the ack does not arrive in time. The receiver
+ * drops duplicates by sequence number, so a resend whose original did arrive
+ * has no effect.
+ *
+ * The retransmission timeout follows RFC 6298: smoothed RTT plus four times
+ * its variation, sampled only from datagrams that were not resent (Karn's
+ * rule), doubled on every resend.
+ *
+ * Datagrams are tracked and resent on the sender thread, acks arrive on the
+ * transport receive thread.
+ */
+class ReliableLane {
+
+    static final long MIN_RTO_NANOS = 15_000_000L;
+    static final long MAX_RTO_NANOS = 1_000_000_000L;
+    static final long INITIAL_RTO_NANOS = 50_000_000L;
+    static final int MAX_RETRIES = 8; // ~4 s with backoff before a datagram is given up
+
+    private final int[] seqs;
+    private final byte[][] frames;
+    private final int[] lengths;
+    private final long[] firstSent;
+    private final long[] deadlines;
+    private final int[] retries;
+    private final boolean[] used;
+    private int pending = 0;
+
+    // RFC 6298 state, in nanoseconds. srtt < 0 until the first sample.
+    private long srtt = -1;
+    private long rttvar = 0;
+    private long rto = INITIAL_RTO_NANOS;
+
+    private long retransmitCount = 0;
+    private long failedCount = 0;
+
+    ReliableLane(int slots) {
+        seqs = new int[slots];
+        frames = new byte[slots][WireProtocol.MAX_BATCH_SIZE];
+        lengths = new int[slots];
+        firstSent = new long[slots];
+        deadlines = new long[slots];
+        retries = new int[slots];
+        used = new boolean[slots];
+    }
+
+    /**
+     * Starts tracking a datagram that was just sent. If every slot is taken the
+     * oldest datagram is given up to make room; the new one always gets tracked.
+     */
+    synchronized void track(int seq, byte[] frame, int length, long nowNanos) {
+        int slot = freeSlot();
+        if (slot < 0) {
+            slot = oldestSlot();
+            failedCount++;
+            pending--;
+        }
+        seqs[slot] = seq;
+        System.arraycopy(frame, 0, frames[slot], 0, length);
+        lengths[slot] = length;
+        firstSent[slot] = nowNanos;
+        deadlines[slot] = nowNanos + rto;
+        retries[slot] = 0;
+        used[slot] = true;
+        pending++;
+    }
+
+    synchronized void onAck(int seq, long nowNanos) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i] && seqs[i] == seq) {
+                if (retries[i] == 0) {
+                    sampleRtt(nowNanos - firstSent[i]);
+                }
+                used[i] = false;
+                pending--;
+                return;
+            }
+        }
+        // Ack for a datagram we already gave up on, or a duplicate ack
+    }
+
+    /** Resends every datagram whose ack is overdue. */
+    synchronized void retransmitDue(long nowNanos, EventSender.FrameSink sink) throws IOException {
+        if (pending == 0)
+            return;
+        for (int i = 0; i < used.length; i++) {
+            if (!used[i] || nowNanos - deadlines[i] < 0)
+                continue;
+            if (retries[i] >= MAX_RETRIES) {
+                used[i] = false;
+                pending--;
+                failedCount++;
+                continue;
+            }
+            retries[i]++;
+            deadlines[i] = nowNanos + Math.min(rto << retries[i], MAX_RTO_NANOS);
+            retransmitCount++;
+            sink.sendFrame(frames[i], lengths[i]);
+        }
+    }
+
+    /** Time until the next resend is due, or -1 if nothing is waiting for an ack. */
+    synchronized long nanosUntilNextRetransmit(long nowNanos) {
+        if (pending == 0)
+            return -1;
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                next = Math.min(next, deadlines[i] - nowNanos);
+            }
+        }
+        return Math.max(0, next);
+    }
+
+    synchronized int getPendingCount() {
+        return pending;
+    }
+
+    synchronized long getRetransmitCount() {
+        return retransmitCount;
+    }
+
+    /** Datagrams given up after {@link #MAX_RETRIES} resends or evicted because every slot was taken. */
+    synchronized long getFailedCount() {
+        return failedCount;
+    }
+
+    synchronized long getRtoNanos() {
+        return rto;
+    }
+
+    synchronized void clear() {
+        java.util.Arrays.fill(used, false);
+        pending = 0;
+        srtt = -1;
+        rttvar = 0;
+        rto = INITIAL_RTO_NANOS;
+        retransmitCount = 0;
+        failedCount = 0;
+    }
+
+    private void sampleRtt(long rtt) {
+        if (srtt < 0) {
+            srtt = rtt;
+            rttvar = rtt / 2;
+        } else {
+            rttvar += (Math.abs(srtt - rtt) - rttvar) / 4;
+            srtt += (rtt - srtt) / 8;
+        }
+        rto = Math.max(MIN_RTO_NANOS, Math.min(MAX_RTO_NANOS, srtt + 4 * rttvar));
+    }
+
+    private int freeSlot() {
+        for (int i = 0; i < used.length; i++) {
+            if (!used[i])
+                return i;
+        }
+        return -1;
+    }
+
+    private int oldestSlot() {
+        int oldest = 0;
+        for (int i = 1; i < used.length; i++) {
+            if (firstSent[i] - firstSent[oldest] < 0)
+                oldest = i;
+        }
+        return oldest;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.myapp;
+
+/**
+ * Finger drags in, high-resolution scroll deltas out, with momentum. Drag
+ * distance becomes {@link WireProtocol#SCROLL_UNITS_PER_NOTCH} units per
+ * notch, and the fraction of a unit is carried instead of discarded. Units
+ * are sent once per {@link #tick}, so the stream runs at the timer's rate
+ * however often the finger reports.
+ *
+ * A finger that lifts while still moving flings: scrolling continues from
+ * the lift velocity and decays exponentially, v(t) = v0 e^(-kt), integrated
+ * exactly per tick so the distance does not depend on the tick rate. A new
+ * touch stops it. UI thread only.
+ */
+class ScrollEngine {
+
+    interface ScrollSink {
+        void sendSmoothScroll(int units);
+    }
+
+    // Drag distance of one notch; the same as the old 1 notch per 5 px, now without the 10 px steps
+    static final float PIXELS_PER_NOTCH = 5f;
+    static final float UNITS_PER_PIXEL = WireProtocol.SCROLL_UNITS_PER_NOTCH / PIXELS_PER_NOTCH;
+
+    static final float FRICTION = 4f; // 1/s: a fling travels v0 / 4 and is at 2% after 1 s
+    static final float MIN_FLING_VELOCITY = 100f; // px/s at lift
+    static final float MAX_FLING_VELOCITY = 4000f;
+    static final float STOP_VELOCITY = 10f; // px/s, two notches a second
+    static final long VELOCITY_WINDOW_NANOS = 100_000_000L;
+    static final long MAX_HOLD_NANOS = 50_000_000L; // A pause this long before lifting means no fling
+
+    private static final int HISTORY = 16;
+
+    private final ScrollSink sink;
+    private final long[] times = new long[HISTORY];
+    private final float[] positions = new float[HISTORY];
+    private int count = 0;
+    private int head = 0;
+
+    private boolean touching = false;
+    private float lastY;
+    private long lastMoveNanos;
+    private float pendingUnits = 0f;
+
+    private boolean flinging = false;
+    private float velocity = 0f; // px/s
+    private long lastTickNanos = -1;
+
+    ScrollEngine(ScrollSink sink) {
+        this.sink = sink;
+    }
+
+    void onDown(float y, long timeNanos) {
+        touching = true;
+        flinging = false;
+        lastY = y;
+        lastMoveNanos = timeNanos;
+        count = 0;
+        head = 0;
+        addSample(y, timeNanos);
+    }
+
+    void onMove(float y, long timeNanos) {
+        if (!touching)
+            return;
+        if (y != lastY)
+            lastMoveNanos = timeNanos;
+        pendingUnits += (y - lastY) * UNITS_PER_PIXEL;
+        lastY = y;
+        addSample(y, timeNanos);
+    }
+
+    void onUp(float y, long timeNanos) {
+        if (!touching)
+            return;
+        onMove(y, timeNanos);
+        touching = false;
+        float v = liftVelocity(timeNanos);
+        if (Math.abs(v) >= MIN_FLING_VELOCITY) {
+            velocity = Math.max(-MAX_FLING_VELOCITY, Math.min(MAX_FLING_VELOCITY, v));
+            flinging = true;
+            lastTickNanos = -1;
+        }
+    }
+
+    /** Stops any fling and drops the unsent fraction, e.g. when the view goes away. */
+    void stop() {
+        touching = false;
+        flinging = false;
+        pendingUnits = 0f;
+    }
+
+    boolean isFlinging() {
+        return flinging;
+    }
+
+    /**
+     * Advances the fling to {@code nowNanos} and sends the whole units
+     * accumulated since the last tick.
+     *
+     * @return true while there is more to do: a finger down or a fling running
+     */
+    boolean tick(long nowNanos) {
+        if (flinging) {
+            if (lastTickNanos >= 0 && nowNanos > lastTickNanos) {
+                float dt = (nowNanos - lastTickNanos) * 1e-9f;
+                float decay = (float) Math.exp(-FRICTION * dt);
+                // Distance under exponential decay over dt: v (1 - e^(-k dt)) / k
+                pendingUnits += velocity * (1f - decay) / FRICTION * UNITS_PER_PIXEL;
+                velocity *= decay;
+                if (Math.abs(velocity) < STOP_VELOCITY)
+                    flinging = false;
+            }
+            lastTickNanos = nowNanos;
+        }
+
+        int units = (int) pendingUnits; // Toward zero, the fraction keeps its sign
+        if (units != 0) {
+            pendingUnits -= units;
+            sink.sendSmoothScroll(units);
+        }
+        return touching || flinging;
+    }
+
+    private void addSample(float y, long timeNanos) {
+        times[head] = timeNanos;
+        positions[head] = y;
+        head = (head + 1) % HISTORY;
+        if (count < HISTORY)
+            count++;
+    }
+
+    // Average velocity over the last VELOCITY_WINDOW_NANOS of the drag, 0 if the finger had stopped
+    private float liftVelocity(long upNanos) {
+        int last = (head + HISTORY - 1) % HISTORY;
+        int oldest = last;
+        for (int k = 1; k < count; k++) {
+            int i = (last + HISTORY - k) % HISTORY;
+            if (times[last] - times[i] > VELOCITY_WINDOW_NANOS)
+                break;
+            oldest = i;
+        }
+        if (oldest == last || upNanos - lastMoveNanos > MAX_HOLD_NANOS)
+            return 0f;
+        return (positions[last] - positions[oldest]) / ((times[last] - times[oldest]) * 1e-9f);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.myapp;
+
+import android.hardware.Sensor;
+import android.hardware.SensorDirectChannel;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.MemoryFile;
+import android.util.Log;
+import java.io.IOException;
+
+/**
+ * Reads sensors through a {@link SensorDirectChannel}: the sensor hub writes
+ * samples straight into shared memory and we poll it on the caller's sensor
+ * thread, with no SensorEvent object or binder callback per sample. Supports rates well above
+ * what {@code registerListener} delivers on most phones.
+ *
+ * The memory is a ring of fixed-size reports, each stamped with an atomic
+ * counter that grows by one per report; a report is new when its counter is
+ * the next one expected.
+ */
+class SensorDirectReader {
+    private static final String TAG = "SensorDirectReader";
+
+    interface Sink {
+        void onSample(int type, float x, float y, float z, long timestampNanos);
+    }
+
+    // Direct report layout, native (little-endian) order
+    static final int REPORT_SIZE = 104;
+    static final int OFFSET_TYPE = 8;
+    static final int OFFSET_COUNTER = 12;
+    static final int OFFSET_TIMESTAMP = 16;
+    static final int OFFSET_VALUES = 24;
+
+    static final int CAPACITY = 128; // Reports, > 100 ms at the fastest rate
+    private static final long POLL_MS = 1;
+
+    private final SensorManager sensorManager;
+    private final byte[] buffer = new byte[REPORT_SIZE * CAPACITY];
+    private MemoryFile memory;
+    private SensorDirectChannel channel;
+    private Handler handler;
+    private Sink sink;
+    private volatile boolean running = false;
+
+    // Handler thread only
+    private long nextCounter = 1;
+    private volatile long lostCount = 0;
+
+    SensorDirectReader(SensorManager sensorManager) {
+        this.sensorManager = sensorManager;
+    }
+
+    static boolean isSupported(Sensor sensor) {
+        return sensor != null && sensor.isDirectChannelTypeSupported(SensorDirectChannel.TYPE_MEMORY_FILE)
+                && sensor.getHighestDirectReportRateLevel() != SensorDirectChannel.RATE_STOP;
+    }
+
+    /**
+     * Starts reporting every sensor at up to {@code rateLevel}
+     * ({@link SensorDirectChannel#RATE_FAST} etc.), polled on {@code handler}'s
+     * thread so samples arrive where listener callbacks would.
+     * @return false if the channel could not be set up; nothing is left running then
+     */
+    boolean start(Sink sink, Handler handler, int rateLevel, Sensor... sensors) {
+        try {
+            memory = new MemoryFile("SensorDirect", buffer.length);
+            channel = sensorManager.createDirectChannel(memory);
+            for (Sensor sensor : sensors) {
+                int rate = Math.min(rateLevel, sensor.getHighestDirectReportRateLevel());
+                if (channel.configure(sensor, rate) <= 0)
+                    throw new IOException("Direct report refused for " + sensor.getName());
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Direct channel unavailable", e);
+            close();
+            return false;
+        }
+
+        nextCounter = 1;
+        lostCount = 0;
+        this.sink = sink;
+        this.handler = handler;
+        running = true;
+        handler.post(poll);
+        return true;
+    }
+
+    /** Stops polling; the channel is closed on the handler thread, after any poll in progress. */
+    void stop() {
+        running = false;
+        if (handler != null) {
+            handler.removeCallbacks(poll);
+            handler.post(this::close);
+            handler = null;
+        }
+    }
+
+    /** Reports overwritten before the reader got to them. */
+    long getLostCount() {
+        return lostCount;
+    }
+
+    private final Runnable poll = new Runnable() {
+        @Override
+        public void run() {
+            if (!running)
+                return;
+            try {
+                memory.readBytes(buffer, 0, 0, buffer.length);
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading direct channel", e);
+                return;
+            }
+            drain(buffer, CAPACITY, sink);
+            Handler h = handler;
+            if (running && h != null)
+                h.postDelayed(this, POLL_MS);
+        }
+    };
+
+    /**
+     * Delivers the reports in {@code buf} that follow the last one delivered,
+     * in order. @return the number delivered
+     */
+    int drain(byte[] buf, int capacity, Sink sink) {
+        int delivered = 0;
+        int skipped = 0;
+        while (skipped < capacity) {
+            int off = (int) ((nextCounter - 1) % capacity) * REPORT_SIZE;
+            long counter = readInt(buf, off + OFFSET_COUNTER) & 0xFFFFFFFFL;
+            if (counter == nextCounter) {
+                sink.onSample(readInt(buf, off + OFFSET_TYPE),
+                        Float.intBitsToFloat(readInt(buf, off + OFFSET_VALUES)),
+                        Float.intBitsToFloat(readInt(buf, off + OFFSET_VALUES + 4)),
+                        Float.intBitsToFloat(readInt(buf, off + OFFSET_VALUES + 8)),
+                        readLong(buf, off + OFFSET_TIMESTAMP));
+                nextCounter++;
+                delivered++;
+            } else if (counter > nextCounter) {
+                // The writer lapped us and this report is gone
+                nextCounter++;
+                lostCount++;
+                skipped++;
+            } else {
+                break; // Not written yet
+            }
+        }
+        return delivered;
+    }
+
+    private void close() {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        if (memory != null) {
+            memory.close();
+            memory = null;
+        }
+    }
+
+    static int readInt(byte[] buf, int off) {
+        return (buf[off] & 0xFF) | (buf[off + 1] & 0xFF) << 8 | (buf[off + 2] & 0xFF) << 16
+                | (buf[off + 3] & 0xFF) << 24;
+    }
+
+    static long readLong(byte[] buf, int off) {
+        return (readInt(buf, off) & 0xFFFFFFFFL) | (long) readInt(buf, off + 4) << 32;
+    }
+}
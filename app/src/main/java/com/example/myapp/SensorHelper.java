@@ -2,23 +2,87 @@ package com.example.myapp;
 
 import android.content.Context;
 import android.hardware.Sensor;
+import android.hardware.SensorDirectChannel;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
 
 public class SensorHelper implements SensorEventListener {
+    private static final String TAG = "SensorHelper";
+
     private SensorManager sensorManager;
     private Sensor gyroscope;
+    private final boolean hasGyroscope; // Without one the accelerometer alone drives the filter
     private Sensor accelerometer;
-    private SensorCallback callback;
+    private Sensor magnetometer;
+    private volatile SensorCallback callback;
 
-    private boolean isTracking = false;
-    private float sensitivity = 1.0f;
+    // Sensor callbacks and all processing run here, off the UI thread, so gyro
+    // latency does not depend on frame rendering or touch handling
+    private HandlerThread sensorThread;
+    private Handler sensorHandler;
 
-    // Calibration offsets
-    private float gyroOffsetX = 0;
-    private float gyroOffsetY = 0;
-    private float gyroOffsetZ = 0;
+    private boolean isTracking = false;
+    private volatile float sensitivity = 1.0f;
+    private boolean useMagnetometer = false;
+
+    // Acquisition: a SENSOR_DELAY_* constant or a period in microseconds, and how
+    // long the sensor hub may hold samples in its FIFO (0 = deliver each at once)
+    private int samplingPeriodUs = SensorManager.SENSOR_DELAY_GAME;
+    private int maxReportLatencyUs = 0;
+    private boolean useDirectChannel = false;
+    private SensorDirectReader directReader;
+    private final SensorRateStats gyroStats = new SensorRateStats();
+    private final SensorRateStats accelStats = new SensorRateStats();
+
+    // Sensor thread only
+    private final OrientationFilter filter = new OrientationFilter();
+    private long lastGyroTimestamp = 0;
+    private long lastAccelTimestamp = 0;
+    private boolean haveAccel = false;
+    private boolean haveMagnetic = false;
+
+    // Gyro bias, applied before fusion. Sensor thread only once tracking.
+    private final GyroCalibrator calibrator = new GyroCalibrator();
+    private GyroCalibrationStore calibrationStore;
+    private volatile boolean calibrationRequested = false;
+
+    // Cursor travel per radian of rotation at sensitivity 1. Matches the old fixed
+    // 20 px per callback at SENSOR_DELAY_GAME's 50 Hz.
+    static final float PIXELS_PER_RADIAN = 1000f;
+
+    // Cursor speed below this is dropped. Small because bias is removed before
+    // it gets here; it only hides residual sensor noise.
+    static final float DEADZONE_PX_PER_SECOND = 1f;
+
+    // A longer silence means the sensor stalled or was paused; the rate before and
+    // after says nothing about the motion in between, so it is not integrated.
+    static final long MAX_SAMPLE_GAP_NANOS = 100_000_000L;
+    private long gapCount = 0;
+
+    // FIFO batching window offered in the settings: a few samples' worth, well under a frame of lag
+    static final int BATCH_LATENCY_US = 20_000;
+
+    private final PointerBallistics ballistics = new PointerBallistics(PointerBallistics.LINEAR, 1f);
+
+    // One Euro smoothing per axis, each signal with its own tuning. The pointer
+    // filters bias-corrected rates in rad/s, tilt the normalized -1..1 output.
+    static final float POINTER_MIN_CUTOFF = 3f;
+    static final float POINTER_BETA = 0.5f;
+    static final float TILT_MIN_CUTOFF = 0.5f;
+    static final float TILT_BETA = 2f;
+    private float pointerMinCutoff = POINTER_MIN_CUTOFF;
+    private float pointerBeta = POINTER_BETA;
+    private float tiltMinCutoff = TILT_MIN_CUTOFF;
+    private float tiltBeta = TILT_BETA;
+    private final OneEuroFilter pointerFilterX = new OneEuroFilter(POINTER_MIN_CUTOFF, POINTER_BETA);
+    private final OneEuroFilter pointerFilterY = new OneEuroFilter(POINTER_MIN_CUTOFF, POINTER_BETA);
+    private final OneEuroFilter tiltFilterX = new OneEuroFilter(TILT_MIN_CUTOFF, TILT_BETA);
+    private final OneEuroFilter tiltFilterY = new OneEuroFilter(TILT_MIN_CUTOFF, TILT_BETA);
 
     public interface SensorCallback {
         void onMotionDetected(float dx, float dy);
@@ -26,11 +90,25 @@ public class SensorHelper implements SensorEventListener {
         void onTiltDetected(float pitch, float roll);
     }
 
+    /**
+     * No sensors: samples only arrive through {@link #onSample}. For tests;
+     * {@code hasGyroscope} picks the fusion path a phone with or without one takes.
+     */
+    SensorHelper(boolean hasGyroscope) {
+        this.hasGyroscope = hasGyroscope;
+    }
+
     public SensorHelper(Context context) {
         sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
         if (sensorManager != null) {
             gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
             accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            magnetometer = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+        }
+        hasGyroscope = gyroscope != null;
+        if (gyroscope != null) {
+            calibrationStore = new GyroCalibrationStore(context, gyroscope);
+            calibrationStore.load(calibrator);
         }
     }
 
@@ -42,14 +120,105 @@ public class SensorHelper implements SensorEventListener {
         this.sensitivity = sensitivity;
     }
 
+    /** Pointer acceleration applied to gyro motion, {@link PointerBallistics#LINEAR} by default. */
+    void setPointerCurve(PointerBallistics.Curve curve) {
+        ballistics.setCurve(curve);
+    }
+
+    /**
+     * One Euro smoothing of gyro pointer motion: cutoff at rest in Hz, and
+     * its increase per rad/s^2 of angular acceleration. Takes effect on the
+     * next {@link #start()}.
+     */
+    void setPointerSmoothing(float minCutoff, float beta) {
+        pointerMinCutoff = minCutoff;
+        pointerBeta = beta;
+    }
+
+    /**
+     * One Euro smoothing of tilt: cutoff at rest in Hz, and its increase per
+     * unit/s of change in the -1..1 output. Takes effect on the next {@link #start()}.
+     */
+    void setTiltSmoothing(float minCutoff, float beta) {
+        tiltMinCutoff = minCutoff;
+        tiltBeta = beta;
+    }
+
+    /**
+     * Also fuses the magnetometer so heading does not drift. Off by default:
+     * pointer and tilt only need pitch and roll, and nearby metal or speakers
+     * pull the heading around. Takes effect on the next {@link #start()}.
+     */
+    public void setUseMagnetometer(boolean useMagnetometer) {
+        this.useMagnetometer = useMagnetometer;
+    }
+
+    /**
+     * Sample period for gyro and accelerometer: a SensorManager.SENSOR_DELAY_*
+     * constant or microseconds. Rates above 200 Hz need the
+     * HIGH_SAMPLING_RATE_SENSORS permission. Takes effect on the next {@link #start()}.
+     */
+    public void setSamplingPeriodUs(int samplingPeriodUs) {
+        this.samplingPeriodUs = samplingPeriodUs;
+    }
+
+    /**
+     * Lets the sensor hub batch samples in its hardware FIFO for up to this
+     * long before waking us, fewer wakeups for slightly later delivery. Only
+     * used where the sensor has a FIFO. Takes effect on the next {@link #start()}.
+     */
+    public void setMaxReportLatencyUs(int maxReportLatencyUs) {
+        this.maxReportLatencyUs = maxReportLatencyUs;
+    }
+
+    /**
+     * Reads gyro and accelerometer through a shared-memory direct channel at
+     * the fastest rate the hardware offers, instead of per-event callbacks.
+     * Falls back to listeners where unsupported. Takes effect on the next {@link #start()}.
+     */
+    public void setUseDirectChannel(boolean useDirectChannel) {
+        this.useDirectChannel = useDirectChannel;
+    }
+
+    /** Achieved gyro rate and timing jitter since the last {@link #start()}. */
+    SensorRateStats getGyroStats() {
+        return gyroStats;
+    }
+
+    SensorRateStats getAccelStats() {
+        return accelStats;
+    }
+
+    /**
+     * Starts the sensors. SensorCallback methods are called on a background
+     * sensor thread from then on, not the UI thread.
+     */
     public void start() {
         if (isTracking)
             return;
         if (sensorManager != null) {
-            if (gyroscope != null)
-                sensorManager.registerListener(this, gyroscope, SensorManager.SENSOR_DELAY_GAME);
-            if (accelerometer != null)
-                sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_GAME);
+            // Reset before any sample can arrive; the sensor thread takes over from here
+            gyroStats.reset();
+            accelStats.reset();
+            filter.reset();
+            lastGyroTimestamp = 0;
+            lastAccelTimestamp = 0;
+            haveAccel = false;
+            haveMagnetic = false;
+            ballistics.reset();
+            resetSmoothing();
+            if (!calibrator.isCalibrated())
+                calibrationRequested = true; // First run on this phone
+
+            sensorThread = new HandlerThread("SensorHelper", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+            sensorThread.start();
+            sensorHandler = new Handler(sensorThread.getLooper());
+            if (!startDirectChannel()) {
+                register(gyroscope);
+                register(accelerometer);
+            }
+            if (useMagnetometer && magnetometer != null)
+                sensorManager.registerListener(this, magnetometer, SensorManager.SENSOR_DELAY_GAME, sensorHandler);
             isTracking = true;
         }
     }
@@ -59,42 +228,173 @@ public class SensorHelper implements SensorEventListener {
             return;
         if (sensorManager != null) {
             sensorManager.unregisterListener(this);
+            if (directReader != null) {
+                directReader.stop();
+                directReader = null;
+            }
             isTracking = false;
+            Log.d(TAG, "Gyro " + gyroStats + ", accelerometer " + accelStats);
+        }
+        if (sensorThread != null) {
+            // Save on the sensor thread, after any sample already queued
+            if (calibrationStore != null)
+                sensorHandler.post(() -> calibrationStore.save(calibrator)); // Keep what online tracking learned
+            sensorThread.quitSafely();
+            sensorThread = null;
+            sensorHandler = null;
         }
     }
 
+    private void resetSmoothing() {
+        pointerFilterX.setParameters(pointerMinCutoff, pointerBeta, 1f);
+        pointerFilterY.setParameters(pointerMinCutoff, pointerBeta, 1f);
+        tiltFilterX.setParameters(tiltMinCutoff, tiltBeta, 1f);
+        tiltFilterY.setParameters(tiltMinCutoff, tiltBeta, 1f);
+        pointerFilterX.reset();
+        pointerFilterY.reset();
+        tiltFilterX.reset();
+        tiltFilterY.reset();
+    }
+
+    private void register(Sensor sensor) {
+        if (sensor == null)
+            return;
+        if (maxReportLatencyUs > 0 && sensor.getFifoMaxEventCount() > 0) {
+            sensorManager.registerListener(this, sensor, samplingPeriodUs, maxReportLatencyUs, sensorHandler);
+        } else {
+            sensorManager.registerListener(this, sensor, samplingPeriodUs, sensorHandler);
+        }
+    }
+
+    private boolean startDirectChannel() {
+        if (!useDirectChannel || !SensorDirectReader.isSupported(gyroscope)
+                || !SensorDirectReader.isSupported(accelerometer))
+            return false;
+        SensorDirectReader reader = new SensorDirectReader(sensorManager);
+        if (!reader.start(this::onSample, sensorHandler, SensorDirectChannel.RATE_VERY_FAST, gyroscope, accelerometer))
+            return false;
+        directReader = reader;
+        return true;
+    }
+
+    /**
+     * Measures the gyro bias again. Completes once the phone has lain still
+     * for a moment; the previous bias stays in use until then.
+     */
     public void calibrate() {
-        // No-op for now
+        calibrationRequested = true;
     }
 
-    private float[] gravity = new float[3];
-    private float[] geomagnetic = new float[3]; // Not using magnetometer yet, but gravity is enough for pitch/roll
+    public boolean isCalibrating() {
+        return calibrationRequested || calibrator.isCalibrating();
+    }
+
+    private float[] gravity = new float[3]; // Latest raw accelerometer sample
+    private float[] geomagnetic = new float[3];
 
     @Override
     public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
-            float rX = event.values[0];
-            float rZ = event.values[2];
+        onSample(event.sensor.getType(), event.values[0], event.values[1], event.values[2], event.timestamp);
+    }
 
-            // Apply sensitivity
-            float dx = -rZ * sensitivity * 20;
-            float dy = -rX * sensitivity * 20;
+    /** Sample periods longer than {@link #MAX_SAMPLE_GAP_NANOS} that were skipped. */
+    long getGapCount() {
+        return gapCount;
+    }
 
-            if (Math.abs(dx) < 0.1)
-                dx = 0;
-            if (Math.abs(dy) < 0.1)
-                dy = 0;
+    // One sample from either a listener or the direct channel. Timestamps are when
+    // the sample was taken, so batched deliveries integrate the same as live ones.
+    void onSample(int type, float v0, float v1, float v2, long timestamp) {
+        InputTrace.Recorder recorder = InputTrace.recorder();
+        if (recorder != null)
+            recorder.sensor(type, v0, v1, v2, timestamp);
+        if (type == Sensor.TYPE_GYROSCOPE) {
+            if (lastGyroTimestamp != 0 && timestamp <= lastGyroTimestamp)
+                return; // Duplicate or out of order
+            gyroStats.record(timestamp);
+            long interval = lastGyroTimestamp == 0 ? 0 : timestamp - lastGyroTimestamp;
+            lastGyroTimestamp = timestamp;
+            if (interval > MAX_SAMPLE_GAP_NANOS) {
+                gapCount++;
+                interval = 0;
+                ballistics.reset();
+                pointerFilterX.reset();
+                pointerFilterY.reset();
+            }
+            float dt = interval * 1e-9f;
 
-            if (callback != null && (dx != 0 || dy != 0)) {
-                callback.onMotionDetected(dx, dy);
+            if (calibrationRequested) {
+                calibrationRequested = false;
+                calibrator.startCalibration();
+            }
+            boolean wasCalibrating = calibrator.isCalibrating();
+            calibrator.addSample(v0, v1, v2, timestamp);
+            if (wasCalibrating && !calibrator.isCalibrating() && calibrationStore != null) {
+                calibrationStore.save(calibrator);
             }
-        } else if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            System.arraycopy(event.values, 0, gravity, 0, 3);
-            calculateOrientation();
+
+            if (!haveAccel || dt <= 0f)
+                return; // Need an attitude to start from and a time step
+
+            updateFilter(v0 - calibrator.getBiasX(), v1 - calibrator.getBiasY(), v2 - calibrator.getBiasZ(), dt);
+
+            // Bias-corrected rates from the filter, smoothed
+            float rX = pointerFilterY.filter(filter.getRateX(), timestamp);
+            float rZ = pointerFilterX.filter(filter.getRateZ(), timestamp);
+
+            // Cursor speed in px/s with sensitivity applied
+            float vx = -rZ * sensitivity * PIXELS_PER_RADIAN;
+            float vy = -rX * sensitivity * PIXELS_PER_RADIAN;
+
+            if (Math.abs(vx) < DEADZONE_PX_PER_SECOND)
+                vx = 0;
+            if (Math.abs(vy) < DEADZONE_PX_PER_SECOND)
+                vy = 0;
+
+            // Angle turned over this sample's actual period
+            float dx = vx * dt;
+            float dy = vy * dt;
+
+            // Whole pixels only; the fraction is carried to the next sample
+            if (callback != null && (dx != 0 || dy != 0) && ballistics.apply(dx, dy, dt)) {
+                callback.onMotionDetected(ballistics.getX(), ballistics.getY());
+            }
+            calculateOrientation(timestamp);
+        } else if (type == Sensor.TYPE_ACCELEROMETER) {
+            accelStats.record(timestamp);
+            gravity[0] = v0;
+            gravity[1] = v1;
+            gravity[2] = v2;
+            long interval = lastAccelTimestamp == 0 ? 0 : timestamp - lastAccelTimestamp;
+            lastAccelTimestamp = timestamp;
+            float dt = interval > 0 && interval <= MAX_SAMPLE_GAP_NANOS ? interval * 1e-9f : 0f;
+            if (!haveAccel) {
+                filter.initFromAccel(gravity[0], gravity[1], gravity[2]);
+                haveAccel = true;
+            }
+            if (!hasGyroscope && dt > 0f) {
+                // No gyro: the filter still smooths the accelerometer
+                updateFilter(0f, 0f, 0f, dt);
+                calculateOrientation(timestamp);
+            }
+        } else if (type == Sensor.TYPE_MAGNETIC_FIELD) {
+            geomagnetic[0] = v0;
+            geomagnetic[1] = v1;
+            geomagnetic[2] = v2;
+            haveMagnetic = true;
+        }
+    }
+
+    private void updateFilter(float gx, float gy, float gz, float dt) {
+        if (useMagnetometer && haveMagnetic) {
+            filter.update(gx, gy, gz, gravity[0], gravity[1], gravity[2], geomagnetic[0], geomagnetic[1],
+                    geomagnetic[2], dt);
+        } else {
+            filter.update(gx, gy, gz, gravity[0], gravity[1], gravity[2], dt);
         }
     }
 
-    private void calculateOrientation() {
+    private void calculateOrientation(long timestamp) {
         if (callback == null)
             return;
 
@@ -112,9 +412,11 @@ public class SensorHelper implements SensorEventListener {
         // Y: Vertical (Up +)
         // Z: Perpendicular to screen (Front +)
 
-        float x = gravity[0];
-        float y = gravity[1];
-        float z = gravity[2];
+        // Fused gravity direction (unit length) rather than the raw accelerometer,
+        // so hand shake and taps don't reach the steering
+        float x = filter.getGravityX() * SensorManager.GRAVITY_EARTH;
+        float y = filter.getGravityY() * SensorManager.GRAVITY_EARTH;
+        float z = filter.getGravityZ() * SensorManager.GRAVITY_EARTH;
 
         // Formulate pitch and roll in radians
         double pitch = Math.atan2(y, Math.sqrt(x * x + z * z));
@@ -130,12 +432,6 @@ public class SensorHelper implements SensorEventListener {
         // of the phone (Portrait Y).
         // Which corresponds to X-axis of Accelerometer? No.
 
-        // Let's use Rotation Matrix for proper orientation
-        // Ideally we need Magnetometer for full Rotation Matrix, but for tilt
-        // (pitch/roll) gravity is enough.
-        // But getRotationMatrix needs both.
-        // Let's stick to raw gravity vector analysis which is faster and lag-free.
-
         // Normalized values
         // Steering:
         // When held in landscape, X axis of sensor points UP (or down).
@@ -179,9 +475,9 @@ public class SensorHelper implements SensorEventListener {
 
         // Apply sensitivity here or in fragment?
         // Let's apply in fragment to distinct from sensitivity of joystick
-        // Passing raw normalized values
+        // Passing raw normalized values, smoothed
 
-        callback.onTiltDetected(normDrive, normSteer);
+        callback.onTiltDetected(tiltFilterY.filter(normDrive, timestamp), tiltFilterX.filter(normSteer, timestamp));
     }
 
     @Override
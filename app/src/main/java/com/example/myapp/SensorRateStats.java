@@ -0,0 +1,68 @@
+package com.example.myapp;
+
+import java.util.Locale;
+
+/**
+ * Achieved sample rate and timing jitter of one sensor, from the event
+ * timestamps (when the sample was taken, not when it was delivered). Jitter is
+ * the standard deviation of the interval between consecutive samples, kept
+ * with Welford's running update. Written on the sensor thread, read from any.
+ */
+class SensorRateStats {
+
+    private long count = 0;
+    private long firstTimestamp = 0;
+    private long lastTimestamp = 0;
+    private long maxIntervalNanos = 0;
+    private double meanInterval = 0;
+    private double m2Interval = 0;
+
+    synchronized void record(long timestampNanos) {
+        count++;
+        if (count == 1) {
+            firstTimestamp = timestampNanos;
+        } else {
+            long interval = timestampNanos - lastTimestamp;
+            long n = count - 1;
+            double d = interval - meanInterval;
+            meanInterval += d / n;
+            m2Interval += d * (interval - meanInterval);
+            maxIntervalNanos = Math.max(maxIntervalNanos, interval);
+        }
+        lastTimestamp = timestampNanos;
+    }
+
+    synchronized void reset() {
+        count = 0;
+        firstTimestamp = lastTimestamp = 0;
+        maxIntervalNanos = 0;
+        meanInterval = m2Interval = 0;
+    }
+
+    synchronized long getCount() {
+        return count;
+    }
+
+    /** Samples per second of sensor time, 0 until there are two samples. */
+    synchronized double getRateHz() {
+        if (count < 2 || lastTimestamp == firstTimestamp)
+            return 0;
+        return (count - 1) * 1e9 / (lastTimestamp - firstTimestamp);
+    }
+
+    synchronized long getJitterMicros() {
+        if (count < 3)
+            return 0;
+        return Math.round(Math.sqrt(m2Interval / (count - 2)) / 1000);
+    }
+
+    synchronized long getMaxIntervalMicros() {
+        return maxIntervalNanos / 1000;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%.1f Hz, jitter %d us, max gap %d us, %d samples", getRateHz(),
+                getJitterMicros(), getMaxIntervalMicros(), count);
+    }
+}
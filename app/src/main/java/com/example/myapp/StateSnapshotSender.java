@@ -0,0 +1,124 @@
+package com.example.myapp;
+
+import android.util.Log;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the whole {@link ControllerState} at a fixed rate instead of
+ * individual button and analog events. Each snapshot is delta encoded
+ * against the newest snapshot the receiver has acknowledged, so a lost
+ * datagram is simply superseded by the next one. A full keyframe goes out
+ * every {@link #KEYFRAME_INTERVAL} snapshots, and whenever there is no usable
+ * acknowledged base.
+ */
+class StateSnapshotSender {
+    private static final String TAG = "StateSnapshotSender";
+
+    static final int DEFAULT_RATE_HZ = 60;
+    static final int KEYFRAME_INTERVAL = 30;
+
+    // Sent snapshots we can still delta against. The receiver keeps at least as many.
+    static final int HISTORY = 64;
+
+    private final EventSender.FrameSink sink;
+    private final ControllerState state;
+    private ScheduledExecutorService timer;
+
+    // Snapshot thread only
+    private final int[] historyIds = new int[HISTORY];
+    private final int[] historyButtons = new int[HISTORY];
+    private final int[][] historyAxes = new int[HISTORY][WireProtocol.STATE_AXES];
+    private final byte[] buffer = new byte[WireProtocol.MAX_FRAME_SIZE];
+    private int nextId = 1;
+    private int sinceKeyframe = KEYFRAME_INTERVAL; // First snapshot is a keyframe
+    private long startNanos;
+    private long bytesSent = 0;
+    private long keyframesSent = 0;
+
+    private volatile int ackedId = -1; // Newest acknowledged snapshot, -1 for none
+
+    StateSnapshotSender(ControllerState state, EventSender.FrameSink sink) {
+        this.state = state;
+        this.sink = sink;
+        java.util.Arrays.fill(historyIds, -1);
+    }
+
+    void start(int rateHz) {
+        startNanos = System.nanoTime();
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "StateSnapshotSender");
+            t.setPriority(Thread.MAX_PRIORITY);
+            t.setDaemon(true);
+            return t;
+        });
+        long periodMicros = 1_000_000L / rateHz;
+        timer.scheduleAtFixedRate(this::sendSafely, 0, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /** Called from the receive thread. Acks may arrive out of order; only newer ones count. */
+    void onAck(int id) {
+        int acked = ackedId;
+        if (acked < 0 || isNewer(id, acked)) {
+            ackedId = id;
+        }
+    }
+
+    long getBytesSent() {
+        return bytesSent;
+    }
+
+    long getKeyframesSent() {
+        return keyframesSent;
+    }
+
+    /** Samples the state and sends one snapshot. @return the datagram length */
+    int sendSnapshot(long timeMs) throws IOException {
+        int id = nextId;
+        nextId = (nextId + 1) & 0xFFFF;
+        int slot = id % HISTORY;
+        historyIds[slot] = id;
+        int buttons = state.sample(historyAxes[slot]);
+        historyButtons[slot] = buttons;
+
+        int base = ackedId;
+        int baseSlot = base < 0 ? -1 : base % HISTORY;
+        boolean keyframe = ++sinceKeyframe >= KEYFRAME_INTERVAL || baseSlot < 0
+                || historyIds[baseSlot] != base || ((id - base) & 0xFFFF) >= HISTORY;
+        int length;
+        if (keyframe) {
+            sinceKeyframe = 0;
+            keyframesSent++;
+            length = WireProtocol.encodeState(buffer, 0, timeMs, id, id, true, buttons, historyAxes[slot], 0,
+                    historyAxes[slot]);
+        } else {
+            length = WireProtocol.encodeState(buffer, 0, timeMs, id, base, false, buttons, historyAxes[slot],
+                    historyButtons[baseSlot], historyAxes[baseSlot]);
+        }
+        sink.sendFrame(buffer, length);
+        bytesSent += length;
+        return length;
+    }
+
+    private void sendSafely() {
+        try {
+            sendSnapshot((System.nanoTime() - startNanos) / 1_000_000L);
+        } catch (IOException e) {
+            Log.e(TAG, "Error sending snapshot", e);
+        }
+    }
+
+    private static boolean isNewer(int id, int than) {
+        int ahead = (id - than) & 0xFFFF;
+        return ahead != 0 && ahead < 0x8000;
+    }
+}
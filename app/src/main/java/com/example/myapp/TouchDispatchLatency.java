@@ -0,0 +1,72 @@
+package com.example.myapp;
+
+import android.os.Build;
+import android.view.MotionEvent;
+import java.util.Locale;
+
+/**
+ * How long touches waited between the touchscreen's event timestamp and
+ * being handed to the network pipeline, in a {@link LatencyHistogram}. With
+ * the default vsync-aligned dispatch this includes up to a frame of
+ * buffering; with {@code requestUnbufferedDispatch} it should not. Both are
+ * measured on the monotonic clock, which event times also use.
+ *
+ * Thread-safe; recording does not allocate.
+ */
+class TouchDispatchLatency {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /** The event's timestamp in {@link System#nanoTime()} terms, to the microsecond where available. */
+    static long eventTimeNanos(MotionEvent event) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE)
+            return event.getEventTimeNanos();
+        return event.getEventTime() * 1_000_000L;
+    }
+
+    /** Like {@link #eventTimeNanos}, for history sample {@code pos}, so intervals to the current sample stay exact. */
+    static long historicalEventTimeNanos(MotionEvent event, int pos) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE)
+            return event.getHistoricalEventTimeNanos(pos);
+        return event.getHistoricalEventTime(pos) * 1_000_000L;
+    }
+
+    /** Records a touch with timestamp {@code eventTimeNanos} that was just sent. */
+    void recordSent(long eventTimeNanos) {
+        record(eventTimeNanos, System.nanoTime());
+    }
+
+    synchronized void record(long eventTimeNanos, long sentNanos) {
+        histogram.record((sentNanos - eventTimeNanos) / 1000);
+    }
+
+    synchronized long getCount() {
+        return histogram.getCount();
+    }
+
+    synchronized long getP50Micros() {
+        return histogram.getValueAtPercentile(50);
+    }
+
+    synchronized long getP99Micros() {
+        return histogram.getValueAtPercentile(99);
+    }
+
+    synchronized long getMaxMicros() {
+        return histogram.getMax();
+    }
+
+    synchronized void reset() {
+        histogram.reset();
+    }
+
+    /** One line, e.g. "touch to send 1.2 / 9.8 / 16.4 ms (812)" as p50 / p99 / max (count). */
+    @Override
+    public synchronized String toString() {
+        if (histogram.getCount() == 0)
+            return "touch to send --";
+        return String.format(Locale.US, "touch to send %.1f / %.1f / %.1f ms (%d)",
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getMax() / 1000.0, histogram.getCount());
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.myapp;
+
+/**
+ * Extrapolates a touch a few milliseconds ahead from its recent path, in the
+ * spirit of Android's MotionPredictor but without a learned model. A
+ * quadratic is fitted by least squares to the samples of the last
+ * {@link #WINDOW_NANOS} per axis, giving velocity and acceleration, and
+ * evaluated at the horizon.
+ *
+ * The prediction is damped where extrapolation tends to overshoot: the
+ * acceleration term can at most double or cancel the velocity term, and an
+ * axis is never predicted to move against its latest step, so a braking
+ * finger is predicted to stop rather than turn back. Below
+ * {@link #FULL_SPEED} the prediction fades out, to zero at
+ * {@link #MIN_SPEED}, so digitizer noise on a resting finger is not
+ * extrapolated into wobble.
+ *
+ * Fixed arrays only, nothing is allocated per sample. One input thread.
+ */
+class TouchPredictor {
+
+    static final int CAPACITY = 8;
+    static final long WINDOW_NANOS = 50_000_000L;
+    static final float MIN_SPEED = 60f; // px/s
+    static final float FULL_SPEED = 180f;
+
+    private final long[] times = new long[CAPACITY];
+    private final float[] xs = new float[CAPACITY];
+    private final float[] ys = new float[CAPACITY];
+    private int count = 0;
+    private int head = 0; // Next slot to write
+
+    private float dx = 0f;
+    private float dy = 0f;
+
+    void reset() {
+        count = 0;
+        head = 0;
+        dx = dy = 0f;
+    }
+
+    /** Adds a sample; samples must come in time order. */
+    void add(float x, float y, long timeNanos) {
+        if (count > 0 && timeNanos <= times[(head + CAPACITY - 1) % CAPACITY])
+            return;
+        times[head] = timeNanos;
+        xs[head] = x;
+        ys[head] = y;
+        head = (head + 1) % CAPACITY;
+        if (count < CAPACITY)
+            count++;
+    }
+
+    /**
+     * Predicts where the touch will be {@code horizonNanos} after the latest
+     * sample, relative to it. Read the result with {@link #getDx()},
+     * {@link #getDy()}.
+     *
+     * @return false if there is not enough recent history; the offset is 0 then
+     */
+    boolean predict(long horizonNanos) {
+        dx = dy = 0f;
+        if (count < 2)
+            return false;
+        int last = (head + CAPACITY - 1) % CAPACITY;
+        long lastTime = times[last];
+
+        // Power sums of the sample times relative to the latest, in seconds
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double x0 = 0, x1 = 0, x2 = 0, y0 = 0, y1 = 0, y2 = 0;
+        int n = 0;
+        for (int k = 0; k < count; k++) {
+            int i = (last + CAPACITY - k) % CAPACITY;
+            long age = lastTime - times[i];
+            if (age > WINDOW_NANOS)
+                break;
+            double t = -age * 1e-9;
+            double t2 = t * t;
+            double px = xs[i] - xs[last];
+            double py = ys[i] - ys[last];
+            s0 += 1;
+            s1 += t;
+            s2 += t2;
+            s3 += t2 * t;
+            s4 += t2 * t2;
+            x0 += px;
+            x1 += px * t;
+            x2 += px * t2;
+            y0 += py;
+            y1 += py * t;
+            y2 += py * t2;
+            n++;
+        }
+        if (n < 2)
+            return false;
+
+        double h = horizonNanos * 1e-9;
+        double vx, vy, ax, ay; // Velocity and half the acceleration at the latest sample
+        if (n == 2) {
+            // Straight line through both
+            vx = x1 / s2;
+            vy = y1 / s2;
+            ax = ay = 0;
+        } else {
+            // Normal equations of x(t) = c0 + c1 t + c2 t^2, solved by Cramer's rule
+            double det = s0 * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2) + s2 * (s1 * s3 - s2 * s2);
+            if (Math.abs(det) < 1e-30)
+                return false;
+            vx = (s0 * (x1 * s4 - s3 * x2) - x0 * (s1 * s4 - s3 * s2) + s2 * (s1 * x2 - x1 * s2)) / det;
+            ax = (s0 * (s2 * x2 - x1 * s3) - s1 * (s1 * x2 - x1 * s2) + x0 * (s1 * s3 - s2 * s2)) / det;
+            vy = (s0 * (y1 * s4 - s3 * y2) - y0 * (s1 * s4 - s3 * s2) + s2 * (s1 * y2 - y1 * s2)) / det;
+            ay = (s0 * (s2 * y2 - y1 * s3) - s1 * (s1 * y2 - y1 * s2) + y0 * (s1 * s3 - s2 * s2)) / det;
+        }
+
+        double fade = (Math.hypot(vx, vy) - MIN_SPEED) / (FULL_SPEED - MIN_SPEED);
+        if (fade <= 0)
+            return true;
+        fade = Math.min(fade, 1);
+        int previous = (last + CAPACITY - 1) % CAPACITY;
+        dx = (float) (fade * damp(vx * h, ax * h * h, xs[last] - xs[previous]));
+        dy = (float) (fade * damp(vy * h, ay * h * h, ys[last] - ys[previous]));
+        return true;
+    }
+
+    private static double damp(double linear, double quadratic, float lastStep) {
+        if (Math.abs(quadratic) > Math.abs(linear))
+            quadratic = Math.copySign(Math.abs(linear), quadratic);
+        double prediction = linear + quadratic;
+        return prediction * lastStep < 0 ? 0 : prediction;
+    }
+
+    float getDx() {
+        return dx;
+    }
+
+    float getDy() {
+        return dy;
+    }
+}
@@ -0,0 +1,450 @@
+package com.example.myapp;
+
+import android.view.MotionEvent;
+
+/**
+ * Touchpad-mode gestures from raw multi-touch input:
+ * <ul>
+ * <li>one finger moves the cursor; a tap is a left click, two taps a double click</li>
+ * <li>tap, then touch again and move or hold: drag with the left button down. With
+ * drag lock on, lifting the finger keeps the button down so the drag can go on
+ * with the next touch, and a tap ends it.</li>
+ * <li>two fingers scroll, both axes, or pinch to zoom; a two-finger tap is a right click</li>
+ * <li>three fingers swipe left/right/up/down once per touch</li>
+ * </ul>
+ * Which two-finger gesture it is gets decided once, by whether the spread
+ * or the centroid first moves a touch slop; the slop itself is not sent.
+ *
+ * A tap is only known to be a single click once no second touch followed
+ * within {@link #DOUBLE_TAP_NANOS}; the owner calls {@link #onTimeout} after
+ * that while {@link #hasPendingTap()}.
+ *
+ * Pointers are kept in fixed arrays, so handling an event does not allocate.
+ * {@link #onTouch} takes the event as plain arrays for tests. UI thread only.
+ */
+class TouchpadGestures {
+
+    interface Listener {
+        void onCursorDown(float x, float y, long timeNanos);
+
+        void onCursorMove(float x, float y, long timeNanos);
+
+        void onCursorUp(float x, float y, long timeNanos);
+
+        /** "L", "R" or "D", as {@link NetworkManager#sendClick}. */
+        void onClick(String action);
+
+        /** Left button held for a tap-and-drag, then released. */
+        void onDragButton(boolean pressed);
+
+        /** Whole units of {@link WireProtocol#SCROLL_UNITS_PER_NOTCH}; horizontal is positive to the right. */
+        void onScroll(int verticalUnits, int horizontalUnits);
+
+        void onZoom(int units);
+
+        /** "LEFT", "RIGHT", "UP" or "DOWN", the way the fingers went. */
+        void onSwipe(String direction);
+    }
+
+    static final int MAX_POINTERS = 5; // Further fingers are ignored
+    static final long TAP_NANOS = 250_000_000L; // Longest touch that still counts as a tap
+    static final long DOUBLE_TAP_NANOS = 300_000_000L;
+    static final float DEFAULT_TOUCH_SLOP = 16f; // px
+    static final float SWIPE_SLOPS = 5f; // Three-finger travel, in touch slops, that makes a swipe
+    // Zoom notch per 25% change of the finger spread
+    static final float ZOOM_UNITS_PER_LOG = (float) (WireProtocol.SCROLL_UNITS_PER_NOTCH / Math.log(1.25));
+
+    private static final int IDLE = 0;
+    private static final int CURSOR = 1; // One finger
+    private static final int SECOND_TAP = 2; // Down again soon after a tap: double click or drag
+    private static final int DRAG = 3;
+    private static final int MULTI = 4; // Several fingers, gesture not decided yet
+    private static final int SCROLL = 5;
+    private static final int PINCH = 6;
+    private static final int DONE = 7; // Gesture over, waiting for the remaining fingers to lift
+
+    private final Listener listener;
+    private float touchSlop = DEFAULT_TOUCH_SLOP;
+
+    // Active pointers; slot 0 is the first finger down while it stays
+    private final int[] ids = new int[MAX_POINTERS];
+    private final float[] downX = new float[MAX_POINTERS];
+    private final float[] downY = new float[MAX_POINTERS];
+    private final float[] xs = new float[MAX_POINTERS];
+    private final float[] ys = new float[MAX_POINTERS];
+    private int count = 0;
+
+    // Scratch for onTouchEvent
+    private final int[] eventIds = new int[MAX_POINTERS];
+    private final float[] eventXs = new float[MAX_POINTERS];
+    private final float[] eventYs = new float[MAX_POINTERS];
+
+    private int state = IDLE;
+    private long downNanos;
+    private int maxPointers;
+    private boolean moved; // Some finger left its touch slop
+    private boolean tapPending = false;
+    private long tapUpNanos;
+    private boolean dragLock = false;
+    private boolean dragLocked = false; // Button held with no finger down
+
+    // Multi-finger geometry: where the undecided gesture started, and the last frame
+    private float startCx, startCy, startSpread;
+    private float lastCx, lastCy, lastSpread;
+    private float cx, cy, spread; // Current, from updateGeometry()
+    private float verticalRemainder, horizontalRemainder, zoomRemainder;
+
+    TouchpadGestures(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Movement in px a finger may make and still tap; the view's scaled touch slop. */
+    void setTouchSlop(float touchSlop) {
+        this.touchSlop = touchSlop;
+    }
+
+    void setDragLock(boolean dragLock) {
+        this.dragLock = dragLock;
+    }
+
+    boolean isDragLocked() {
+        return dragLocked;
+    }
+
+    boolean hasPendingTap() {
+        return tapPending;
+    }
+
+    /** Sends the pending tap as a left click if no second touch can follow it any more. */
+    void onTimeout(long nowNanos) {
+        if (tapPending && state == IDLE && nowNanos - tapUpNanos >= DOUBLE_TAP_NANOS) {
+            tapPending = false;
+            listener.onClick("L");
+        }
+    }
+
+    /** Feeds a view's touch event, batched history included. */
+    void onTouchEvent(MotionEvent event) {
+        int n = Math.min(event.getPointerCount(), MAX_POINTERS);
+        int action = event.getActionMasked();
+        for (int i = 0; i < n; i++) {
+            eventIds[i] = event.getPointerId(i);
+        }
+        if (action == MotionEvent.ACTION_MOVE) {
+            for (int h = 0; h < event.getHistorySize(); h++) {
+                for (int i = 0; i < n; i++) {
+                    eventXs[i] = event.getHistoricalX(i, h);
+                    eventYs[i] = event.getHistoricalY(i, h);
+                }
+                onTouch(action, 0, n, eventIds, eventXs, eventYs,
+                        TouchDispatchLatency.historicalEventTimeNanos(event, h));
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            eventXs[i] = event.getX(i);
+            eventYs[i] = event.getY(i);
+        }
+        onTouch(action, event.getActionIndex(), n, eventIds, eventXs, eventYs,
+                TouchDispatchLatency.eventTimeNanos(event));
+    }
+
+    /**
+     * One touch event: the masked action, the index of the pointer it is about,
+     * and the id and position of each of the {@code pointerCount} pointers.
+     */
+    void onTouch(int action, int actionIndex, int pointerCount, int[] pointerIds, float[] x, float[] y,
+            long timeNanos) {
+        if (actionIndex >= pointerCount
+                && (action == MotionEvent.ACTION_POINTER_DOWN || action == MotionEvent.ACTION_POINTER_UP))
+            action = MotionEvent.ACTION_MOVE; // About a finger beyond MAX_POINTERS
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                count = 0;
+                addPointer(pointerIds[0], x[0], y[0]);
+                onFirstDown(timeNanos);
+                break;
+
+            case MotionEvent.ACTION_POINTER_DOWN:
+                updatePointers(pointerCount, pointerIds, x, y);
+                addPointer(pointerIds[actionIndex], x[actionIndex], y[actionIndex]);
+                onPointerDown(timeNanos);
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                updatePointers(pointerCount, pointerIds, x, y);
+                onMove(timeNanos);
+                break;
+
+            case MotionEvent.ACTION_POINTER_UP:
+                updatePointers(pointerCount, pointerIds, x, y);
+                onPointerUp(slotOf(pointerIds[actionIndex]), timeNanos);
+                break;
+
+            case MotionEvent.ACTION_UP:
+                updatePointers(pointerCount, pointerIds, x, y);
+                onLastUp(timeNanos);
+                break;
+
+            case MotionEvent.ACTION_CANCEL:
+                cancel(timeNanos);
+                break;
+        }
+    }
+
+    private void onFirstDown(long timeNanos) {
+        downNanos = timeNanos;
+        maxPointers = 1;
+        moved = false;
+        if (dragLocked) {
+            dragLocked = false;
+            state = DRAG;
+            listener.onCursorDown(xs[0], ys[0], timeNanos);
+            return;
+        }
+        if (tapPending) {
+            tapPending = false;
+            if (timeNanos - tapUpNanos <= DOUBLE_TAP_NANOS) {
+                state = SECOND_TAP;
+                return;
+            }
+            listener.onClick("L"); // Its timeout has not run yet
+        }
+        state = CURSOR;
+        listener.onCursorDown(xs[0], ys[0], timeNanos);
+    }
+
+    private void onPointerDown(long timeNanos) {
+        maxPointers = Math.max(maxPointers, count);
+        switch (state) {
+            case CURSOR:
+                listener.onCursorUp(xs[0], ys[0], timeNanos);
+                startMulti();
+                break;
+            case SECOND_TAP:
+                listener.onClick("L"); // The first tap was a click after all
+                startMulti();
+                break;
+            case MULTI:
+                startMulti(); // Measure from the new finger set
+                break;
+            case SCROLL:
+            case PINCH:
+                state = DONE;
+                break;
+            // DRAG keeps following its finger
+        }
+    }
+
+    private void onMove(long timeNanos) {
+        if (!moved) {
+            for (int i = 0; i < count; i++) {
+                if (Math.hypot(xs[i] - downX[i], ys[i] - downY[i]) > touchSlop) {
+                    moved = true;
+                    break;
+                }
+            }
+        }
+        switch (state) {
+            case CURSOR:
+            case DRAG:
+                listener.onCursorMove(xs[0], ys[0], timeNanos);
+                break;
+            case SECOND_TAP:
+                if (moved || timeNanos - downNanos > TAP_NANOS) {
+                    state = DRAG;
+                    listener.onDragButton(true);
+                    listener.onCursorDown(xs[0], ys[0], timeNanos);
+                }
+                break;
+            case MULTI:
+                decide();
+                break;
+            case SCROLL:
+                updateGeometry();
+                verticalRemainder += (cy - lastCy) * ScrollEngine.UNITS_PER_PIXEL;
+                // Natural direction, as the scroll strip: the content follows the fingers
+                horizontalRemainder -= (cx - lastCx) * ScrollEngine.UNITS_PER_PIXEL;
+                lastCx = cx;
+                lastCy = cy;
+                int vertical = (int) verticalRemainder;
+                int horizontal = (int) horizontalRemainder;
+                if (vertical != 0 || horizontal != 0) {
+                    verticalRemainder -= vertical;
+                    horizontalRemainder -= horizontal;
+                    listener.onScroll(vertical, horizontal);
+                }
+                break;
+            case PINCH:
+                updateGeometry();
+                if (spread > 0f && lastSpread > 0f) {
+                    zoomRemainder += (float) Math.log(spread / lastSpread) * ZOOM_UNITS_PER_LOG;
+                    lastSpread = spread;
+                }
+                int zoom = (int) zoomRemainder;
+                if (zoom != 0) {
+                    zoomRemainder -= zoom;
+                    listener.onZoom(zoom);
+                }
+                break;
+        }
+    }
+
+    private void onPointerUp(int slot, long timeNanos) {
+        switch (state) {
+            case MULTI:
+                if (!moved && maxPointers == 2 && timeNanos - downNanos <= TAP_NANOS)
+                    listener.onClick("R");
+                state = DONE;
+                break;
+            case SCROLL:
+            case PINCH:
+                state = DONE;
+                break;
+            case DRAG:
+                if (slot == 0) {
+                    liftDrag(timeNanos);
+                    state = DONE;
+                }
+                break;
+        }
+        removePointer(slot);
+    }
+
+    private void onLastUp(long timeNanos) {
+        switch (state) {
+            case CURSOR:
+                listener.onCursorUp(xs[0], ys[0], timeNanos);
+                if (!moved && timeNanos - downNanos <= TAP_NANOS) {
+                    tapPending = true;
+                    tapUpNanos = timeNanos;
+                }
+                break;
+            case SECOND_TAP:
+                listener.onClick("D");
+                break;
+            case DRAG:
+                liftDrag(timeNanos);
+                break;
+        }
+        state = IDLE;
+        count = 0;
+    }
+
+    /** Ends whatever is going on, releasing a held or locked button; also for the view going away. */
+    void cancel(long timeNanos) {
+        if (state == CURSOR || state == DRAG) {
+            listener.onCursorUp(xs[0], ys[0], timeNanos);
+        }
+        if (state == DRAG || dragLocked) {
+            listener.onDragButton(false);
+        }
+        dragLocked = false;
+        tapPending = false;
+        state = IDLE;
+        count = 0;
+    }
+
+    // The dragging finger lifted: a tap ends a locked drag, anything else keeps it locked
+    private void liftDrag(long timeNanos) {
+        listener.onCursorUp(xs[0], ys[0], timeNanos);
+        boolean tap = !moved && timeNanos - downNanos <= TAP_NANOS;
+        if (dragLock && !tap) {
+            dragLocked = true;
+        } else {
+            listener.onDragButton(false);
+        }
+    }
+
+    private void startMulti() {
+        state = MULTI;
+        updateGeometry();
+        startCx = cx;
+        startCy = cy;
+        startSpread = spread;
+    }
+
+    // Undecided fingers: three swipe once they travel far enough; two scroll or
+    // pinch, whichever leaves the slop first
+    private void decide() {
+        updateGeometry();
+        float panX = cx - startCx;
+        float panY = cy - startCy;
+        float pan = (float) Math.hypot(panX, panY);
+        if (count >= 3) {
+            if (pan > touchSlop * SWIPE_SLOPS) {
+                if (Math.abs(panX) > Math.abs(panY)) {
+                    listener.onSwipe(panX > 0 ? "RIGHT" : "LEFT");
+                } else {
+                    listener.onSwipe(panY > 0 ? "DOWN" : "UP");
+                }
+                state = DONE;
+            }
+            return;
+        }
+        float pinch = Math.abs(spread - startSpread) * 2f; // Change of the distance between two fingers
+        if (Math.max(pan, pinch) <= touchSlop)
+            return;
+        state = pinch > pan ? PINCH : SCROLL;
+        lastCx = cx;
+        lastCy = cy;
+        lastSpread = spread;
+        verticalRemainder = horizontalRemainder = zoomRemainder = 0f;
+    }
+
+    // Centroid of the active pointers and their mean distance from it
+    private void updateGeometry() {
+        float sumX = 0f, sumY = 0f;
+        for (int i = 0; i < count; i++) {
+            sumX += xs[i];
+            sumY += ys[i];
+        }
+        cx = sumX / count;
+        cy = sumY / count;
+        float sum = 0f;
+        for (int i = 0; i < count; i++) {
+            sum += (float) Math.hypot(xs[i] - cx, ys[i] - cy);
+        }
+        spread = sum / count;
+    }
+
+    private void addPointer(int id, float x, float y) {
+        if (count == MAX_POINTERS || slotOf(id) >= 0)
+            return;
+        ids[count] = id;
+        downX[count] = xs[count] = x;
+        downY[count] = ys[count] = y;
+        count++;
+    }
+
+    // Fills the last slot into the removed one, so slot 0 only changes when its finger lifts
+    private void removePointer(int slot) {
+        if (slot < 0)
+            return;
+        count--;
+        if (slot == count)
+            return;
+        ids[slot] = ids[count];
+        downX[slot] = downX[count];
+        downY[slot] = downY[count];
+        xs[slot] = xs[count];
+        ys[slot] = ys[count];
+    }
+
+    private void updatePointers(int pointerCount, int[] pointerIds, float[] x, float[] y) {
+        for (int i = 0; i < pointerCount; i++) {
+            int slot = slotOf(pointerIds[i]);
+            if (slot >= 0) {
+                xs[slot] = x[i];
+                ys[slot] = y[i];
+            }
+        }
+    }
+
+    private int slotOf(int id) {
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id)
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.myapp;
+
+/**
+ * One-finger touchpad motion: touch positions in, whole-pixel cursor deltas
+ * out through {@link PointerBallistics}. Kept apart from the view so a
+ * recorded {@link InputTrace} can be replayed through it. UI thread only.
+ *
+ * Optionally the cursor is sent ahead of the finger by a
+ * {@link TouchPredictor} offset, to hide network and receiver latency. The
+ * offset is recomputed on every move and only its change is sent, so an
+ * overshoot is corrected on the next sample, and it is taken back when the
+ * finger lifts: the total motion sent is the same as without prediction.
+ */
+class TouchpadTracker {
+
+    interface MotionSink {
+        void sendMotion(float dx, float dy);
+    }
+
+    static final float SENSITIVITY = 1.5f;
+
+    private final MotionSink sink;
+    private final PointerBallistics.Curve curve;
+    private final PointerBallistics ballistics;
+    private float lastX = 0;
+    private float lastY = 0;
+    private long lastTimeNanos = 0;
+
+    // Prediction, off at 0; the settings offer about one 60 Hz frame
+    static final int PREDICTION_MS = 16;
+    private final TouchPredictor predictor = new TouchPredictor();
+    private long predictionNanos = 0;
+    private float offsetX = 0f; // Cursor pixels currently sent ahead of the finger
+    private float offsetY = 0f;
+    private float offsetRemainderX = 0f;
+    private float offsetRemainderY = 0f;
+
+    TouchpadTracker(MotionSink sink, PointerBallistics.Curve curve) {
+        this.sink = sink;
+        this.curve = curve;
+        this.ballistics = new PointerBallistics(curve, SENSITIVITY);
+    }
+
+    /** How far ahead to predict the finger, 0 to send it where it is. */
+    void setPredictionNanos(long predictionNanos) {
+        this.predictionNanos = predictionNanos;
+    }
+
+    void onDown(float x, float y, long timeNanos) {
+        InputTrace.Recorder recorder = InputTrace.recorder();
+        if (recorder != null)
+            recorder.touchpad(InputTrace.TOUCH_DOWN, x, y, timeNanos);
+        lastX = x;
+        lastY = y;
+        lastTimeNanos = timeNanos;
+        ballistics.reset();
+        predictor.reset();
+        predictor.add(x, y, timeNanos);
+        offsetX = offsetY = 0f;
+        offsetRemainderX = offsetRemainderY = 0f;
+    }
+
+    void onMove(float x, float y, long timeNanos) {
+        InputTrace.Recorder recorder = InputTrace.recorder();
+        if (recorder != null)
+            recorder.touchpad(InputTrace.TOUCH_MOVE, x, y, timeNanos);
+        float dt = (timeNanos - lastTimeNanos) * 1e-9f;
+
+        // Sensitivity plus the pointer curve, in whole pixels
+        ballistics.apply(x - lastX, y - lastY, dt);
+        int outX = ballistics.getX();
+        int outY = ballistics.getY();
+
+        if (predictionNanos > 0) {
+            // The predicted finger travel, scaled like real motion at this speed
+            predictor.add(x, y, timeNanos);
+            predictor.predict(predictionNanos);
+            float speed = dt > 0f ? (float) Math.hypot(x - lastX, y - lastY) / dt : 0f;
+            float gain = curve.gain(speed) * SENSITIVITY;
+            float newOffsetX = predictor.getDx() * gain;
+            float newOffsetY = predictor.getDy() * gain;
+            offsetRemainderX += newOffsetX - offsetX;
+            offsetRemainderY += newOffsetY - offsetY;
+            offsetX = newOffsetX;
+            offsetY = newOffsetY;
+            int correctionX = (int) offsetRemainderX;
+            int correctionY = (int) offsetRemainderY;
+            offsetRemainderX -= correctionX;
+            offsetRemainderY -= correctionY;
+            outX += correctionX;
+            outY += correctionY;
+        }
+
+        if (outX != 0 || outY != 0) {
+            sink.sendMotion(outX, outY);
+        }
+
+        lastX = x;
+        lastY = y;
+        lastTimeNanos = timeNanos;
+    }
+
+    void onUp(float x, float y, long timeNanos) {
+        InputTrace.Recorder recorder = InputTrace.recorder();
+        if (recorder != null)
+            recorder.touchpad(InputTrace.TOUCH_UP, x, y, timeNanos);
+        ballistics.reset();
+
+        // Take back the whole pixels sent ahead, leaving the cursor where the finger went
+        int backX = Math.round(offsetRemainderX - offsetX);
+        int backY = Math.round(offsetRemainderY - offsetY);
+        if (backX != 0 || backY != 0) {
+            sink.sendMotion(backX, backY);
+        }
+        offsetX = offsetY = 0f;
+        offsetRemainderX = offsetRemainderY = 0f;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.myapp;
+
+/**
+ * Feeds a recorded {@link InputTrace} back through the live input paths:
+ * sensor samples into {@link SensorHelper} (and on to its SensorCallback),
+ * touchpad touches into a {@link TouchpadTracker} and joystick positions into
+ * a {@link JoystickView.JoystickListener}. Records are replayed as fast as
+ * they are read, so a replay is deterministic up to the network thread.
+ */
+class TraceReplayer implements InputTrace.Listener {
+
+    private final SensorHelper sensorHelper;
+    private final TouchpadTracker touchpad;
+    private final JoystickView.JoystickListener joysticks;
+
+    /** Any of the targets may be null to skip that kind of record. */
+    TraceReplayer(SensorHelper sensorHelper, TouchpadTracker touchpad, JoystickView.JoystickListener joysticks) {
+        this.sensorHelper = sensorHelper;
+        this.touchpad = touchpad;
+        this.joysticks = joysticks;
+    }
+
+    @Override
+    public void onSensor(int type, float x, float y, float z, long timestampNanos) {
+        if (sensorHelper != null)
+            sensorHelper.onSample(type, x, y, z, timestampNanos);
+    }
+
+    @Override
+    public void onTouchpad(int action, float x, float y, long timeNanos) {
+        if (touchpad == null)
+            return;
+        switch (action) {
+            case InputTrace.TOUCH_DOWN:
+                touchpad.onDown(x, y, timeNanos);
+                break;
+            case InputTrace.TOUCH_MOVE:
+                touchpad.onMove(x, y, timeNanos);
+                break;
+            case InputTrace.TOUCH_UP:
+                touchpad.onUp(x, y, timeNanos);
+                break;
+        }
+    }
+
+    @Override
+    public void onJoystick(int id, float x, float y, long timeNanos) {
+        if (joysticks != null)
+            joysticks.onJoystickMoved(x, y, id);
+    }
+
+    @Override
+    public void onJoystickReleased(int id, long timeNanos) {
+        if (joysticks != null)
+            joysticks.onJoystickReleased(id);
+    }
+}
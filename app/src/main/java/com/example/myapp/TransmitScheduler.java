@@ -0,0 +1,158 @@
+package com.example.myapp;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decouples the input rate from the network rate. Motion and analog samples are
+ * accumulated as they arrive; a dedicated thread samples that state at a fixed
+ * tick and emits at most one combined frame per tick.
+ *
+ * Also measures how late each tick fires compared to its deadline.
+ */
+class TransmitScheduler {
+
+    interface TickSink {
+        /**
+         * @param mask   {@link WireProtocol#TICK_MOTION} plus one bit per analog source that changed
+         * @param analog x, y per source, indexed by source code - 1
+         */
+        void onTick(int mask, float dx, float dy, float[] analog, long timeNanos);
+    }
+
+    static final int RATE_60_HZ = 60;
+    static final int RATE_120_HZ = 120;
+    static final int RATE_250_HZ = 250;
+    static final int RATE_500_HZ = 500;
+
+    // Sleep until this close to the deadline, then spin. parkNanos alone overshoots by ~0.1-1 ms.
+    private static final long SPIN_THRESHOLD_NANOS = 200_000L;
+
+    private final TickSink sink;
+    private final long periodNanos;
+
+    // Accumulated input, guarded by this
+    private int pendingMask = 0;
+    private float pendingDx = 0;
+    private float pendingDy = 0;
+    private final float[] analog = new float[WireProtocol.SOURCES.length * 2];
+
+    private volatile boolean running = false;
+    private Thread tickThread;
+
+    // Jitter statistics, written by the tick thread
+    private volatile long tickCount = 0;
+    private volatile long totalJitterNanos = 0;
+    private volatile long maxJitterNanos = 0;
+
+    TransmitScheduler(int rateHz, TickSink sink) {
+        if (rateHz <= 0)
+            throw new IllegalArgumentException("rate must be positive: " + rateHz);
+        this.periodNanos = 1_000_000_000L / rateHz;
+        this.sink = sink;
+    }
+
+    long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    synchronized void addMotion(float dx, float dy) {
+        pendingDx += dx;
+        pendingDy += dy;
+        pendingMask |= WireProtocol.TICK_MOTION;
+    }
+
+    synchronized void setAnalog(int source, float x, float y) {
+        analog[(source - 1) * 2] = x;
+        analog[(source - 1) * 2 + 1] = y;
+        pendingMask |= 1 << source;
+    }
+
+    /**
+     * Emits whatever is pending right away, on the calling thread. Used before
+     * edge events (clicks, buttons) so they cannot overtake earlier motion.
+     */
+    void flush() {
+        emit(System.nanoTime());
+    }
+
+    void start() {
+        running = true;
+        tickThread = new Thread(this::runTicks, "TransmitScheduler");
+        tickThread.setPriority(Thread.MAX_PRIORITY);
+        tickThread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (tickThread != null) {
+            LockSupport.unpark(tickThread);
+            tickThread = null;
+        }
+    }
+
+    long getTickCount() {
+        return tickCount;
+    }
+
+    /** Mean lateness of a tick relative to its deadline, in microseconds. */
+    long getMeanJitterMicros() {
+        long ticks = tickCount;
+        return ticks == 0 ? 0 : totalJitterNanos / ticks / 1000;
+    }
+
+    long getMaxJitterMicros() {
+        return maxJitterNanos / 1000;
+    }
+
+    private void runTicks() {
+        long deadline = System.nanoTime() + periodNanos;
+        while (running) {
+            long now = waitUntil(deadline);
+            if (!running)
+                return;
+
+            recordJitter(now - deadline);
+            emit(now);
+
+            deadline += periodNanos;
+            if (now - deadline > periodNanos) {
+                // We fell more than a tick behind (e.g. the thread was descheduled): skip ahead
+                // instead of firing a burst of catch-up ticks
+                deadline = now + periodNanos;
+            }
+        }
+    }
+
+    private long waitUntil(long deadline) {
+        long now = System.nanoTime();
+        while (running && deadline - now > SPIN_THRESHOLD_NANOS) {
+            LockSupport.parkNanos(this, deadline - now - SPIN_THRESHOLD_NANOS);
+            now = System.nanoTime();
+        }
+        while (running && deadline - now > 0) {
+            now = System.nanoTime();
+        }
+        return now;
+    }
+
+    private void recordJitter(long lateNanos) {
+        if (lateNanos < 0)
+            lateNanos = 0;
+        totalJitterNanos += lateNanos;
+        if (lateNanos > maxJitterNanos)
+            maxJitterNanos = lateNanos;
+        tickCount++;
+    }
+
+    // Hands the pending state to the sink and clears it. Called on the tick thread, or on an
+    // input thread via flush(). The sink copies the values before returning, so the shared
+    // analog array can be passed directly.
+    private synchronized void emit(long now) {
+        if (pendingMask == 0)
+            return;
+        sink.onTick(pendingMask, pendingDx, pendingDy, analog, now);
+        pendingMask = 0;
+        pendingDx = 0;
+        pendingDy = 0;
+    }
+}
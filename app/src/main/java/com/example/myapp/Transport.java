@@ -0,0 +1,39 @@
+package com.example.myapp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Datagram transport between the app and the PC receiver. NetworkManager
+ * picks an implementation at connect().
+ */
+interface Transport {
+
+    interface Receiver {
+        /** Called on the transport's receive thread. {@code data} is reused after returning. */
+        void onDatagram(byte[] data, int length);
+    }
+
+    // Large enough for the handshake reply and any server message
+    int MAX_DATAGRAM_SIZE = 1024;
+
+    void open(InetAddress address, int port) throws IOException;
+
+    /** Sends one datagram. Safe to call from several threads. */
+    void send(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Blocks for the next datagram, e.g. the handshake reply. Only valid
+     * before {@link #startReceiving}.
+     *
+     * @return the datagram length
+     * @throws java.net.SocketTimeoutException if nothing arrived within {@code timeoutMs}
+     */
+    int receive(byte[] buffer, int timeoutMs) throws IOException;
+
+    /** Starts delivering incoming datagrams to {@code receiver} on a background thread. */
+    void startReceiving(Receiver receiver);
+
+    /** Closes the transport and stops the receive thread. */
+    void close();
+}
@@ -0,0 +1,567 @@
+package com.example.myapp;
+
+/**
+ * Compact binary frame format used instead of per-event JSON once the receiver
+ * has agreed to it during the handshake.
+ *
+ * Every frame starts with a fixed 9 byte header (big-endian):
+ * magic (1), version (1), type (1), sequence (2), timestamp in ms (4),
+ * followed by a fixed-width payload that depends on the type.
+ * Encoding writes straight into a caller supplied buffer so no strings or
+ * temporary objects are created per event.
+ *
+ * The high bit of a type ({@link #FLAG_RELIABLE}) marks frames and batch
+ * entries the receiver must acknowledge with {@link #TYPE_ACK}. A batch header
+ * carries the flag if any of its entries does.
+ */
+public final class WireProtocol {
+
+    public static final byte MAGIC = (byte) 0xA7; // Never '{', so receivers can tell JSON apart
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 9;
+    public static final int MAX_FRAME_SIZE = 64;
+    public static final int MAX_BATCH_SIZE = 512; // Stays well below the Wi-Fi MTU
+
+    // Message types
+    public static final int TYPE_MOTION = 0x01; // dx f32, dy f32
+    public static final int TYPE_CLICK = 0x02; // action u8
+    public static final int TYPE_SCROLL = 0x03; // amount i16
+    public static final int TYPE_KEY = 0x04; // key u8
+    public static final int TYPE_BUTTON = 0x05; // key u8, group u8, pressed u8
+    public static final int TYPE_ANALOG = 0x06; // source u8, x f32, y f32
+    public static final int TYPE_TICK = 0x07; // mask u8, dx f32, dy f32, (x f32, y f32) per source
+    public static final int TYPE_BATCH = 0x08; // count u8, then count x (type u8, payload of that type)
+    public static final int TYPE_PING = 0x09; // probe id u32, send time ns u64
+    public static final int TYPE_PONG = 0x0A; // Receiver's reply, same payload as the ping
+    public static final int TYPE_ACK = 0x0B; // Receiver's reply to a reliable frame: its sequence u16
+    public static final int TYPE_STATE = 0x0C; // id u16, base u16, changed u8, [buttons u32], [axis i16]...
+    public static final int TYPE_STATE_ACK = 0x0D; // Receiver's reply to a snapshot: its id u16
+    public static final int TYPE_SMOOTH_SCROLL = 0x0E; // amount i16 in SCROLL_UNITS_PER_NOTCH
+    public static final int TYPE_HSCROLL = 0x0F; // amount i16 in SCROLL_UNITS_PER_NOTCH, positive scrolls right
+    public static final int TYPE_ZOOM = 0x10; // amount i16 in SCROLL_UNITS_PER_NOTCH, positive zooms in
+    public static final int TYPE_SWIPE = 0x11; // direction u8
+    public static final int TYPE_MOUSE_BUTTON = 0x12; // button u8 (click action), pressed u8
+
+    public static final int FLAG_RELIABLE = 0x80;
+    private static final int TYPE_MASK = 0x7F;
+
+    // First batch entry, after the header and the count
+    public static final int BATCH_ENTRIES_OFFSET = HEADER_SIZE + 1;
+
+    // TYPE_SMOOTH_SCROLL resolution, as Windows' WHEEL_DELTA: 120 units make one wheel notch
+    public static final int SCROLL_UNITS_PER_NOTCH = 120;
+
+    // Handshake reply tokens: receivers that understand TYPE_SMOOTH_SCROLL, and
+    // TYPE_HSCROLL through TYPE_MOUSE_BUTTON
+    public static final String CAPABILITY_SMOOTH_SCROLL = "smooth_scroll";
+    public static final String CAPABILITY_GESTURES = "gestures";
+
+    // TYPE_TICK mask bits: motion, plus one bit per analog source code
+    public static final int TICK_MOTION = 1;
+
+    // Code tables. The wire code of a name is its index + 1, 0 means unknown.
+    static final String[] CLICK_ACTIONS = { "L", "R", "D" };
+    static final String[] KEYS = { "UP", "DOWN", "LEFT", "RIGHT", "CROSS", "CIRCLE", "TRIANGLE", "SQUARE",
+            "START", "SELECT", "L1", "R1", "W", "A", "S", "D" };
+    static final String[] GROUPS = { "dpad", "action", "shoulder", "system", "keyboard" };
+    static final String[] SOURCES = { "left_stick", "right_stick", "tilt" };
+    static final String[] SWIPES = { "LEFT", "RIGHT", "UP", "DOWN" };
+
+    // TYPE_STATE: changed bits. Axis i (x, y per source, source code - 1) is bit 1 + i.
+    public static final int STATE_BUTTONS = 1;
+    public static final int STATE_KEYFRAME = 0x80; // Every field present, base ignored
+    public static final int STATE_AXES = SOURCES.length * 2;
+    public static final int STATE_AXIS_SCALE = 1000; // Axes travel as i16 thousandths, +-32.767
+
+    private WireProtocol() {
+    }
+
+    /** Decoded frame. Reused by the caller, so decoding does not allocate either. */
+    public static final class Frame {
+        public int version;
+        public int type;
+        public int sequence;
+        public long timeMs;
+        public int code; // click action, key, analog source, swipe direction, or tick mask
+        public int group;
+        public boolean pressed;
+        public int amount;
+        public float x;
+        public float y;
+        public final float[] analog = new float[SOURCES.length * 2]; // TYPE_TICK only
+        public long probeNanos; // TYPE_PING/TYPE_PONG send time, probe id in code
+        public boolean reliable; // FLAG_RELIABLE was set; TYPE_ACK carries the acked sequence in code
+        // TYPE_STATE: snapshot id in code, base id in group. Only the fields flagged in changed are set.
+        public int changed;
+        public int buttons;
+        public final int[] axes = new int[STATE_AXES];
+    }
+
+    /**
+     * Bit of a button in a TYPE_STATE button mask: the key code - 1, offset by 16
+     * for the keyboard group so the stick's W/UP mapping does not alias the d-pad.
+     *
+     * @return -1 for unknown keys
+     */
+    public static int buttonBit(int key, int group) {
+        if (key == 0)
+            return -1;
+        return key - 1 + (group == groupCode("keyboard") ? 16 : 0);
+    }
+
+    public static int quantizeAxis(float v) {
+        return clampShort(Math.round(v * STATE_AXIS_SCALE));
+    }
+
+    public static boolean tickHasSource(int mask, int source) {
+        return (mask & (1 << source)) != 0;
+    }
+
+    public static int clickCode(String action) {
+        return indexOf(CLICK_ACTIONS, action);
+    }
+
+    public static int keyCode(String key) {
+        return indexOf(KEYS, key);
+    }
+
+    public static int groupCode(String group) {
+        return indexOf(GROUPS, group);
+    }
+
+    public static int sourceCode(String source) {
+        return indexOf(SOURCES, source);
+    }
+
+    public static int swipeCode(String direction) {
+        return indexOf(SWIPES, direction);
+    }
+
+    public static String clickName(int code) {
+        return nameOf(CLICK_ACTIONS, code);
+    }
+
+    public static String keyName(int code) {
+        return nameOf(KEYS, code);
+    }
+
+    public static String groupName(int code) {
+        return nameOf(GROUPS, code);
+    }
+
+    public static String sourceName(int code) {
+        return nameOf(SOURCES, code);
+    }
+
+    public static String swipeName(int code) {
+        return nameOf(SWIPES, code);
+    }
+
+    // Encoders. Each returns the number of bytes written at buf[off].
+
+    public static int encodeMotion(byte[] buf, int off, int seq, long timeMs, float dx, float dy) {
+        int p = writeHeader(buf, off, TYPE_MOTION, seq, timeMs);
+        p = putFloat(buf, p, dx);
+        p = putFloat(buf, p, dy);
+        return p - off;
+    }
+
+    public static int encodeClick(byte[] buf, int off, int seq, long timeMs, int action) {
+        int p = writeHeader(buf, off, TYPE_CLICK, seq, timeMs);
+        buf[p++] = (byte) action;
+        return p - off;
+    }
+
+    public static int encodeScroll(byte[] buf, int off, int seq, long timeMs, int amount) {
+        int p = writeHeader(buf, off, TYPE_SCROLL, seq, timeMs);
+        p = putShort(buf, p, clampShort(amount));
+        return p - off;
+    }
+
+    /** High-resolution scroll, in 1/{@link #SCROLL_UNITS_PER_NOTCH} of a wheel notch. */
+    public static int encodeSmoothScroll(byte[] buf, int off, int seq, long timeMs, int units) {
+        int p = writeHeader(buf, off, TYPE_SMOOTH_SCROLL, seq, timeMs);
+        p = putShort(buf, p, clampShort(units));
+        return p - off;
+    }
+
+    /** Horizontal counterpart of {@link #encodeSmoothScroll}; positive scrolls right. */
+    public static int encodeHorizontalScroll(byte[] buf, int off, int seq, long timeMs, int units) {
+        int p = writeHeader(buf, off, TYPE_HSCROLL, seq, timeMs);
+        p = putShort(buf, p, clampShort(units));
+        return p - off;
+    }
+
+    /** Zoom, in the same units as scrolling: a notch is one Ctrl+wheel step. Positive zooms in. */
+    public static int encodeZoom(byte[] buf, int off, int seq, long timeMs, int units) {
+        int p = writeHeader(buf, off, TYPE_ZOOM, seq, timeMs);
+        p = putShort(buf, p, clampShort(units));
+        return p - off;
+    }
+
+    public static int encodeSwipe(byte[] buf, int off, int seq, long timeMs, int direction) {
+        int p = writeHeader(buf, off, TYPE_SWIPE, seq, timeMs);
+        buf[p++] = (byte) direction;
+        return p - off;
+    }
+
+    /** Press or release of a mouse button, named by its click action code. */
+    public static int encodeMouseButton(byte[] buf, int off, int seq, long timeMs, int button, boolean pressed) {
+        int p = writeHeader(buf, off, TYPE_MOUSE_BUTTON, seq, timeMs);
+        buf[p++] = (byte) button;
+        buf[p++] = (byte) (pressed ? 1 : 0);
+        return p - off;
+    }
+
+    public static int encodeKey(byte[] buf, int off, int seq, long timeMs, int key) {
+        int p = writeHeader(buf, off, TYPE_KEY, seq, timeMs);
+        buf[p++] = (byte) key;
+        return p - off;
+    }
+
+    public static int encodeButton(byte[] buf, int off, int seq, long timeMs, int key, int group,
+            boolean pressed) {
+        int p = writeHeader(buf, off, TYPE_BUTTON, seq, timeMs);
+        buf[p++] = (byte) key;
+        buf[p++] = (byte) group;
+        buf[p++] = (byte) (pressed ? 1 : 0);
+        return p - off;
+    }
+
+    public static int encodeAnalog(byte[] buf, int off, int seq, long timeMs, int source, float x, float y) {
+        int p = writeHeader(buf, off, TYPE_ANALOG, seq, timeMs);
+        buf[p++] = (byte) source;
+        p = putFloat(buf, p, x);
+        p = putFloat(buf, p, y);
+        return p - off;
+    }
+
+    /**
+     * Combined frame emitted once per transmit tick: the motion accumulated since
+     * the last tick and the latest sample of every analog source. {@code analog}
+     * holds x, y pairs indexed by source code - 1. The mask says which parts are new.
+     */
+    public static int encodeTick(byte[] buf, int off, int seq, long timeMs, int mask, float dx, float dy,
+            float[] analog) {
+        int p = writeHeader(buf, off, TYPE_TICK, seq, timeMs);
+        buf[p++] = (byte) mask;
+        p = putFloat(buf, p, dx);
+        p = putFloat(buf, p, dy);
+        for (int i = 0; i < SOURCES.length * 2; i++) {
+            p = putFloat(buf, p, analog[i]);
+        }
+        return p - off;
+    }
+
+    /**
+     * Latency probe. The receiver echoes the payload back as {@link #TYPE_PONG},
+     * so {@code sendNanos} only has to make sense to the sender.
+     */
+    public static int encodePing(byte[] buf, int off, int seq, long timeMs, int probeId, long sendNanos) {
+        int p = writeHeader(buf, off, TYPE_PING, seq, timeMs);
+        p = putInt(buf, p, probeId);
+        p = putInt(buf, p, (int) (sendNanos >>> 32));
+        p = putInt(buf, p, (int) sendNanos);
+        return p - off;
+    }
+
+    /** Marks the frame at buf[off] (single frame or batch) as needing an ack. */
+    public static void setReliable(byte[] buf, int off) {
+        buf[off + 2] |= (byte) FLAG_RELIABLE;
+    }
+
+    public static boolean isReliable(byte[] buf, int off) {
+        return (buf[off + 2] & FLAG_RELIABLE) != 0;
+    }
+
+    public static int encodeAck(byte[] buf, int off, int seq, long timeMs, int ackedSeq) {
+        int p = writeHeader(buf, off, TYPE_ACK, seq, timeMs);
+        p = putShort(buf, p, ackedSeq);
+        return p - off;
+    }
+
+    /**
+     * Controller state snapshot {@code id}. Unless {@code keyframe} is set only
+     * the fields that differ from snapshot {@code baseId} (given as
+     * {@code baseButtons}/{@code baseAxes}) are written. Axes are quantized with
+     * {@link #quantizeAxis}.
+     */
+    public static int encodeState(byte[] buf, int off, long timeMs, int id, int baseId, boolean keyframe,
+            int buttons, int[] axes, int baseButtons, int[] baseAxes) {
+        int p = writeHeader(buf, off, TYPE_STATE, id, timeMs);
+        p = putShort(buf, p, id);
+        p = putShort(buf, p, keyframe ? id : baseId);
+        int changedAt = p++;
+        int changed = keyframe ? STATE_KEYFRAME : 0;
+        if (keyframe || buttons != baseButtons) {
+            changed |= STATE_BUTTONS;
+            p = putInt(buf, p, buttons);
+        }
+        for (int i = 0; i < STATE_AXES; i++) {
+            if (keyframe || axes[i] != baseAxes[i]) {
+                changed |= 2 << i;
+                p = putShort(buf, p, axes[i]);
+            }
+        }
+        buf[changedAt] = (byte) changed;
+        return p - off;
+    }
+
+    public static int encodeStateAck(byte[] buf, int off, int id) {
+        int p = writeHeader(buf, off, TYPE_STATE_ACK, 0, 0);
+        p = putShort(buf, p, id);
+        return p - off;
+    }
+
+    /**
+     * Starts a batch container at buf[off]. Entries share its sequence number
+     * and timestamp. @return the batch length so far
+     */
+    public static int beginBatch(byte[] buf, int off, int seq, long timeMs) {
+        int p = writeHeader(buf, off, TYPE_BATCH, seq, timeMs);
+        buf[p++] = 0;
+        return p - off;
+    }
+
+    /**
+     * Appends an encoded single frame to the batch at batch[off] by copying its
+     * type and payload.
+     *
+     * @return the new batch length, or -1 if the entry does not fit in
+     *         {@link #MAX_BATCH_SIZE}
+     */
+    public static int appendToBatch(byte[] batch, int off, int batchLength, byte[] frame, int frameOff,
+            int frameLength) {
+        int payload = frameLength - HEADER_SIZE;
+        int newLength = batchLength + 1 + payload;
+        if (newLength > MAX_BATCH_SIZE || (batch[off + HEADER_SIZE] & 0xFF) == 0xFF)
+            return -1;
+        batch[off + batchLength] = frame[frameOff + 2];
+        batch[off + 2] |= (byte) (frame[frameOff + 2] & FLAG_RELIABLE);
+        System.arraycopy(frame, frameOff + HEADER_SIZE, batch, off + batchLength + 1, payload);
+        batch[off + HEADER_SIZE]++;
+        return newLength;
+    }
+
+    /** Fixed payload size of a message type in bytes, or -1 if the type is unknown. */
+    public static int payloadSize(int type) {
+        switch (type) {
+            case TYPE_MOTION:
+                return 8;
+            case TYPE_CLICK:
+            case TYPE_KEY:
+            case TYPE_SWIPE:
+                return 1;
+            case TYPE_SCROLL:
+            case TYPE_SMOOTH_SCROLL:
+            case TYPE_HSCROLL:
+            case TYPE_ZOOM:
+            case TYPE_MOUSE_BUTTON:
+                return 2;
+            case TYPE_BUTTON:
+                return 3;
+            case TYPE_ANALOG:
+                return 9;
+            case TYPE_TICK:
+                return 9 + SOURCES.length * 8;
+            case TYPE_BATCH:
+                return 1;
+            case TYPE_PING:
+            case TYPE_PONG:
+                return 12;
+            case TYPE_ACK:
+            case TYPE_STATE_ACK:
+                return 2;
+            case TYPE_STATE:
+                return 5; // Without the optional fields
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Decodes one frame into {@code out}. For a batch only the header is decoded
+     * and {@link Frame#code} holds the entry count; walk the entries with
+     * {@link #decodeBatchEntry}.
+     *
+     * @return false if the bytes are not a frame of a version we understand or
+     *         are too short for their type
+     */
+    public static boolean decode(byte[] buf, int off, int len, Frame out) {
+        if (len < HEADER_SIZE || buf[off] != MAGIC)
+            return false;
+        int version = buf[off + 1] & 0xFF;
+        if (version != VERSION)
+            return false;
+
+        out.version = version;
+        out.type = buf[off + 2] & TYPE_MASK;
+        out.reliable = (buf[off + 2] & FLAG_RELIABLE) != 0;
+        out.sequence = getShort(buf, off + 3) & 0xFFFF;
+        out.timeMs = getInt(buf, off + 5) & 0xFFFFFFFFL;
+        return decodePayload(buf, off + HEADER_SIZE, len - HEADER_SIZE, out);
+    }
+
+    /**
+     * Decodes the batch entry at buf[p] into {@code out}, keeping the sequence
+     * number and timestamp of the container.
+     *
+     * @return the offset of the next entry, or -1 if the entry is malformed
+     */
+    public static int decodeBatchEntry(byte[] buf, int p, int end, Frame out) {
+        if (p >= end)
+            return -1;
+        int type = buf[p] & TYPE_MASK;
+        if (type == TYPE_BATCH || type == TYPE_STATE)
+            return -1; // Not allowed in a batch
+        out.type = type;
+        out.reliable = (buf[p] & FLAG_RELIABLE) != 0;
+        if (!decodePayload(buf, p + 1, end - p - 1, out))
+            return -1;
+        return p + 1 + payloadSize(type);
+    }
+
+    private static boolean decodePayload(byte[] buf, int p, int payload, Frame out) {
+        int size = payloadSize(out.type);
+        if (size < 0 || payload < size)
+            return false;
+        switch (out.type) {
+            case TYPE_MOTION:
+                out.x = Float.intBitsToFloat(getInt(buf, p));
+                out.y = Float.intBitsToFloat(getInt(buf, p + 4));
+                return true;
+            case TYPE_CLICK:
+            case TYPE_KEY:
+            case TYPE_SWIPE:
+                out.code = buf[p] & 0xFF;
+                return true;
+            case TYPE_SCROLL:
+            case TYPE_SMOOTH_SCROLL:
+            case TYPE_HSCROLL:
+            case TYPE_ZOOM:
+                out.amount = getShort(buf, p);
+                return true;
+            case TYPE_MOUSE_BUTTON:
+                out.code = buf[p] & 0xFF;
+                out.pressed = buf[p + 1] != 0;
+                return true;
+            case TYPE_BUTTON:
+                out.code = buf[p] & 0xFF;
+                out.group = buf[p + 1] & 0xFF;
+                out.pressed = buf[p + 2] != 0;
+                return true;
+            case TYPE_ANALOG:
+                out.code = buf[p] & 0xFF;
+                out.x = Float.intBitsToFloat(getInt(buf, p + 1));
+                out.y = Float.intBitsToFloat(getInt(buf, p + 5));
+                return true;
+            case TYPE_TICK:
+                out.code = buf[p] & 0xFF;
+                out.x = Float.intBitsToFloat(getInt(buf, p + 1));
+                out.y = Float.intBitsToFloat(getInt(buf, p + 5));
+                for (int i = 0; i < SOURCES.length * 2; i++) {
+                    out.analog[i] = Float.intBitsToFloat(getInt(buf, p + 9 + i * 4));
+                }
+                return true;
+            case TYPE_BATCH:
+                out.code = buf[p] & 0xFF;
+                return true;
+            case TYPE_PING:
+            case TYPE_PONG:
+                out.code = getInt(buf, p);
+                out.probeNanos = ((long) getInt(buf, p + 4) << 32) | (getInt(buf, p + 8) & 0xFFFFFFFFL);
+                return true;
+            case TYPE_ACK:
+            case TYPE_STATE_ACK:
+                out.code = getShort(buf, p) & 0xFFFF;
+                return true;
+            case TYPE_STATE:
+                return decodeState(buf, p, payload, out);
+            default:
+                return false;
+        }
+    }
+
+    private static boolean decodeState(byte[] buf, int p, int payload, Frame out) {
+        int end = p + payload;
+        out.code = getShort(buf, p) & 0xFFFF;
+        out.group = getShort(buf, p + 2) & 0xFFFF;
+        int changed = buf[p + 4] & 0xFF;
+        out.changed = changed;
+        p += 5;
+        if ((changed & STATE_BUTTONS) != 0) {
+            if (p + 4 > end)
+                return false;
+            out.buttons = getInt(buf, p);
+            p += 4;
+        }
+        for (int i = 0; i < STATE_AXES; i++) {
+            if ((changed & (2 << i)) != 0) {
+                if (p + 2 > end)
+                    return false;
+                out.axes[i] = getShort(buf, p);
+                p += 2;
+            }
+        }
+        return true;
+    }
+
+    private static int writeHeader(byte[] buf, int off, int type, int seq, long timeMs) {
+        buf[off] = MAGIC;
+        buf[off + 1] = (byte) VERSION;
+        buf[off + 2] = (byte) type;
+        putShort(buf, off + 3, seq);
+        putInt(buf, off + 5, (int) timeMs);
+        return off + HEADER_SIZE;
+    }
+
+    private static int putShort(byte[] buf, int p, int v) {
+        buf[p] = (byte) (v >> 8);
+        buf[p + 1] = (byte) v;
+        return p + 2;
+    }
+
+    private static int putInt(byte[] buf, int p, int v) {
+        buf[p] = (byte) (v >> 24);
+        buf[p + 1] = (byte) (v >> 16);
+        buf[p + 2] = (byte) (v >> 8);
+        buf[p + 3] = (byte) v;
+        return p + 4;
+    }
+
+    private static int putFloat(byte[] buf, int p, float v) {
+        return putInt(buf, p, Float.floatToIntBits(v));
+    }
+
+    private static short getShort(byte[] buf, int p) {
+        return (short) (((buf[p] & 0xFF) << 8) | (buf[p + 1] & 0xFF));
+    }
+
+    private static int getInt(byte[] buf, int p) {
+        return ((buf[p] & 0xFF) << 24) | ((buf[p + 1] & 0xFF) << 16) | ((buf[p + 2] & 0xFF) << 8)
+                | (buf[p + 3] & 0xFF);
+    }
+
+    private static int clampShort(int v) {
+        if (v > Short.MAX_VALUE)
+            return Short.MAX_VALUE;
+        if (v < Short.MIN_VALUE)
+            return Short.MIN_VALUE;
+        return v;
+    }
+
+    private static int indexOf(String[] table, String name) {
+        for (int i = 0; i < table.length; i++) {
+            if (table[i].equals(name))
+                return i + 1;
+        }
+        return 0;
+    }
+
+    private static String nameOf(String[] table, int code) {
+        if (code < 1 || code > table.length)
+            return null;
+        return table[code - 1];
+    }
+}
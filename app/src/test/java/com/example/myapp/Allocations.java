@@ -0,0 +1,26 @@
+package com.example.myapp;
+
+import java.lang.management.ManagementFactory;
+
+/** Bytes allocated per thread, from the JVM's thread allocation counters. */
+final class Allocations {
+
+    private static final com.sun.management.ThreadMXBean BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Allocations() {
+    }
+
+    /** Bytes the calling thread allocates while running {@code work}. */
+    static long measure(Runnable work) {
+        long threadId = Thread.currentThread().getId();
+        long before = BEAN.getThreadAllocatedBytes(threadId);
+        work.run();
+        return BEAN.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    /** Bytes {@code thread} has allocated so far, for measuring work on another thread. */
+    static long allocatedBytes(Thread thread) {
+        return BEAN.getThreadAllocatedBytes(thread.getId());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AnalogChangeFilterTest {
+
+    private static final int TILT = WireProtocol.sourceCode("tilt");
+    private static final int LEFT_STICK = WireProtocol.sourceCode("left_stick");
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void stillPhone_sendsOnlyHeartbeats() {
+        AnalogChangeFilter filter = new AnalogChangeFilter();
+        Random random = new Random(9);
+        // 10 s of tilt at 200 Hz with a little sensor noise
+        int samples = 2000;
+        for (int i = 0; i < samples; i++) {
+            float noise = (float) random.nextGaussian() * 0.0005f;
+            filter.shouldSend(TILT, 0.2f + noise, -0.1f - noise, i * 5 * MS);
+        }
+
+        long sent = filter.getSentCount(TILT);
+        assertEquals(samples, sent + filter.getSuppressedCount(TILT));
+        // One at the start, then one per 250 ms heartbeat
+        assertEquals(1 + 10_000 / 250, sent, 1);
+    }
+
+    @Test
+    public void movingValue_isSentOncePastTheDeadband() {
+        AnalogChangeFilter filter = new AnalogChangeFilter();
+        assertTrue(filter.shouldSend(LEFT_STICK, 0.5f, 0.5f, 0));
+        assertFalse(filter.shouldSend(LEFT_STICK, 0.503f, 0.5f, MS));
+        // Small steps add up against the last sent value, not the last seen one
+        assertFalse(filter.shouldSend(LEFT_STICK, 0.504f, 0.5f, 2 * MS));
+        assertTrue(filter.shouldSend(LEFT_STICK, 0.506f, 0.5f, 3 * MS));
+        assertFalse(filter.shouldSend(LEFT_STICK, 0.506f, 0.502f, 4 * MS));
+        assertTrue(filter.shouldSend(LEFT_STICK, 0.506f, 0.49f, 5 * MS));
+    }
+
+    @Test
+    public void restAndFullScale_alwaysGetThrough() {
+        AnalogChangeFilter filter = new AnalogChangeFilter();
+        filter.shouldSend(LEFT_STICK, 0.002f, -0.997f, 0);
+
+        assertTrue(filter.shouldSend(LEFT_STICK, 0.002f, -1f, MS));
+        assertTrue(filter.shouldSend(LEFT_STICK, 0f, -1f, 2 * MS));
+        assertFalse(filter.shouldSend(LEFT_STICK, 0f, -1f, 3 * MS));
+    }
+
+    @Test
+    public void sources_areIndependent() {
+        AnalogChangeFilter filter = new AnalogChangeFilter();
+        filter.setDeadband(TILT, 0.05f);
+        assertTrue(filter.shouldSend(TILT, 0.3f, 0.3f, 0));
+        assertTrue(filter.shouldSend(LEFT_STICK, 0.3f, 0.3f, 0));
+
+        assertFalse(filter.shouldSend(TILT, 0.33f, 0.3f, MS));
+        assertTrue(filter.shouldSend(LEFT_STICK, 0.33f, 0.3f, MS));
+        assertEquals(1, filter.getSentCount(TILT));
+        assertEquals(1, filter.getSuppressedCount(TILT));
+        assertEquals(2, filter.getSentCount(LEFT_STICK));
+        assertEquals(0, filter.getSuppressedCount(LEFT_STICK));
+    }
+
+    @Test
+    public void heartbeat_resendsUnchangedValue() {
+        AnalogChangeFilter filter = new AnalogChangeFilter();
+        filter.setHeartbeatNanos(100 * MS);
+        assertTrue(filter.shouldSend(TILT, 0.1f, 0.1f, 0));
+        assertFalse(filter.shouldSend(TILT, 0.1f, 0.1f, 99 * MS));
+        assertTrue(filter.shouldSend(TILT, 0.1f, 0.1f, 100 * MS));
+        assertFalse(filter.shouldSend(TILT, 0.1f, 0.1f, 150 * MS));
+    }
+
+    @Test
+    public void reset_sendsTheNextSampleAgain() {
+        AnalogChangeFilter filter = new AnalogChangeFilter();
+        filter.shouldSend(TILT, 0.1f, 0.1f, 0);
+        filter.reset();
+
+        assertTrue(filter.shouldSend(TILT, 0.1f, 0.1f, MS));
+        assertEquals(2, filter.getSentCount(TILT));
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EventRingTest {
+
+    private static final int MOTION = WireProtocol.TYPE_MOTION;
+    private static final int BUTTON = WireProtocol.TYPE_BUTTON;
+
+    private final EventRing.Record record = new EventRing.Record();
+
+    private EventRing newRing(int capacity) {
+        EventRing ring = new EventRing(capacity);
+        ring.setOverflowPolicy(MOTION, EventRing.OverflowPolicy.DROP_OLDEST);
+        return ring;
+    }
+
+    @Test
+    public void pollsInFifoOrder() {
+        EventRing ring = newRing(8);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(ring.offer(MOTION, i, 0, 0, i, -i, i));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(ring.poll(record));
+            assertEquals(i, record.code);
+            assertEquals(-i, record.y, 0f);
+        }
+        assertFalse(ring.poll(record));
+    }
+
+    @Test
+    public void dropOldest_evictsStaleMotion() {
+        EventRing ring = newRing(4);
+        for (int i = 0; i < 6; i++) {
+            ring.offer(MOTION, i, 0, 0, 0f, 0f, 0);
+        }
+
+        assertEquals(4, ring.size());
+        assertEquals(2, ring.getDroppedCount());
+        assertTrue(ring.poll(record));
+        assertEquals(2, record.code);
+    }
+
+    @Test
+    public void buttonEvictsMotionButNeverAnotherButton() {
+        EventRing ring = newRing(4);
+        ring.offer(MOTION, 0, 0, 0, 0f, 0f, 0);
+        ring.offer(BUTTON, 1, 0, 1, 0f, 0f, 0);
+        ring.offer(BUTTON, 2, 0, 0, 0f, 0f, 0);
+        ring.offer(MOTION, 3, 0, 0, 0f, 0f, 0);
+
+        // Full: the oldest record is motion, so the button takes its place
+        assertTrue(ring.offer(BUTTON, 4, 0, 1, 0f, 0f, 0));
+        // Full with a button at the head: new motion is dropped instead
+        assertFalse(ring.offer(MOTION, 5, 0, 0, 0f, 0f, 0));
+
+        int[] expected = { 1, 2, 3, 4 };
+        for (int code : expected) {
+            assertTrue(ring.poll(record));
+            assertEquals(code, record.code);
+        }
+    }
+
+    @Test
+    public void batch_isPublishedOnlyAtEnd() {
+        EventRing ring = newRing(8);
+        ring.beginBatch();
+        ring.offer(MOTION, 1, 0, 0, 0f, 0f, 0);
+        ring.offer(BUTTON, 2, 0, 1, 0f, 0f, 0);
+        assertTrue(ring.isEmpty());
+
+        ring.endBatch();
+        assertEquals(2, ring.size());
+    }
+
+    @Test
+    public void batch_fillingTheRingIsPublishedEarly() {
+        EventRing ring = newRing(4);
+        ring.beginBatch();
+        for (int i = 0; i < 6; i++) {
+            assertTrue(ring.offer(MOTION, i, 0, 0, 0f, 0f, i));
+        }
+
+        // The two oldest were evicted to make room instead of blocking forever
+        assertTrue(ring.poll(record));
+        assertEquals(2, record.code);
+        ring.endBatch();
+        assertEquals(3, ring.size());
+    }
+
+    @Test
+    public void neverDrop_waitsForConsumer() throws Exception {
+        EventRing ring = newRing(4);
+        ring.setMaxWaitNanos(5_000_000_000L);
+        for (int i = 0; i < 4; i++) {
+            ring.offer(BUTTON, i, 0, 0, 0f, 0f, 0);
+        }
+
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            ring.poll(new EventRing.Record());
+        });
+        consumer.start();
+
+        assertTrue(ring.offer(BUTTON, 4, 0, 0, 0f, 0f, 0));
+        consumer.join();
+        assertEquals(4, ring.size());
+        assertEquals(0, ring.getDroppedCount());
+    }
+
+    @Test
+    public void neverDrop_givesUpAfterMaxWait() {
+        EventRing ring = newRing(4);
+        ring.setMaxWaitNanos(5_000_000L);
+        for (int i = 0; i < 4; i++) {
+            ring.offer(BUTTON, i, 0, 0, 0f, 0f, 0);
+        }
+
+        // Nobody consumes: the producer must not be stuck
+        assertFalse(ring.offer(BUTTON, 4, 0, 0, 0f, 0f, 0));
+        assertEquals(4, ring.size());
+        assertEquals(1, ring.getDroppedCount());
+    }
+
+    @Test
+    public void close_failsOffersAndWakesConsumer() throws Exception {
+        EventRing ring = newRing(4);
+        Thread consumer = new Thread(() -> ring.awaitRecord(10));
+        consumer.start();
+        Thread.sleep(20);
+
+        ring.close();
+        consumer.join(1000);
+
+        assertFalse(consumer.isAlive());
+        assertFalse(ring.offer(BUTTON, 0, 0, 0, 0f, 0f, 0));
+    }
+
+    @Test
+    public void concurrentProducerAndConsumer_deliverEverythingInOrder() throws Exception {
+        EventRing ring = newRing(64);
+        final int count = 200_000;
+        long[] received = new long[1];
+        boolean[] ordered = { true };
+
+        Thread consumer = new Thread(() -> {
+            EventRing.Record r = new EventRing.Record();
+            int expected = 0;
+            while (expected < count) {
+                if (!ring.poll(r)) {
+                    ring.awaitRecord(100);
+                    continue;
+                }
+                if (r.code != expected)
+                    ordered[0] = false;
+                expected++;
+            }
+            received[0] = expected;
+        });
+        consumer.start();
+
+        for (int i = 0; i < count; i++) {
+            ring.offer(BUTTON, i, 0, 0, 0f, 0f, 0);
+        }
+        consumer.join(10_000);
+
+        assertEquals(count, received[0]);
+        assertTrue(ordered[0]);
+    }
+}
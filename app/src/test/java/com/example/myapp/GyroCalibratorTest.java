@@ -0,0 +1,97 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GyroCalibratorTest {
+
+    private static final long PERIOD = 10_000_000L; // 100 Hz
+
+    private final Random random = new Random(7);
+    private long now = 1_000_000_000L;
+
+    private void feed(GyroCalibrator c, float seconds, float x, float y, float z, float noise) {
+        int samples = (int) (seconds * 1e9f / PERIOD);
+        for (int i = 0; i < samples; i++) {
+            c.addSample(x + (float) random.nextGaussian() * noise, y + (float) random.nextGaussian() * noise,
+                    z + (float) random.nextGaussian() * noise, now);
+            now += PERIOD;
+        }
+    }
+
+    @Test
+    public void stillDevice_calibratesToMeanRate() {
+        GyroCalibrator c = new GyroCalibrator();
+        c.startCalibration();
+
+        feed(c, 2f, 0.02f, -0.015f, 0.03f, 0.005f);
+
+        assertFalse(c.isCalibrating());
+        assertTrue(c.isCalibrated());
+        assertEquals(0.02f, c.getBiasX(), 0.002f);
+        assertEquals(-0.015f, c.getBiasY(), 0.002f);
+        assertEquals(0.03f, c.getBiasZ(), 0.002f);
+    }
+
+    @Test
+    public void movement_restartsCalibration() {
+        GyroCalibrator c = new GyroCalibrator();
+        c.startCalibration();
+
+        feed(c, 1.2f, 0.01f, 0f, 0f, 0.005f);
+        feed(c, 0.6f, 0.01f, 0f, 0f, 0.5f); // Picked up
+        assertTrue(c.isCalibrating());
+        feed(c, 1.2f, 0.01f, 0f, 0f, 0.005f);
+        assertTrue("needs three still windows in a row", c.isCalibrating());
+        feed(c, 0.6f, 0.01f, 0f, 0f, 0.005f);
+
+        assertFalse(c.isCalibrating());
+        assertEquals(0.01f, c.getBiasX(), 0.002f);
+    }
+
+    @Test
+    public void steadyTurn_isNotTakenForBias() {
+        GyroCalibrator c = new GyroCalibrator();
+        c.startCalibration();
+
+        // Quiet, but far faster than any real bias
+        feed(c, 3f, 0f, 0f, 0.3f, 0.005f);
+
+        assertTrue(c.isCalibrating());
+        assertFalse(c.isCalibrated());
+    }
+
+    @Test
+    public void onlineTracking_followsDriftAtRestOnly() {
+        GyroCalibrator c = new GyroCalibrator();
+        c.setBias(0.01f, 0f, 0f);
+
+        // Bias warms up to 0.015 while the phone rests
+        feed(c, 10f, 0.015f, 0f, 0f, 0.005f);
+        assertEquals(0.015f, c.getBiasX(), 0.001f);
+        long updates = c.getTrackingUpdates();
+        assertTrue(updates > 0);
+
+        // Slow deliberate pointer movement must not be absorbed
+        feed(c, 5f, 0.015f, 0.05f, 0f, 0.005f);
+        // Nor shaky handheld use
+        feed(c, 5f, 0.015f, 0f, 0f, 0.2f);
+
+        // Only the rest window still open at the switch may count
+        assertTrue(c.getTrackingUpdates() <= updates + 1);
+        assertEquals(0f, c.getBiasY(), 0.002f);
+    }
+
+    @Test
+    public void withoutCalibration_biasStaysZero() {
+        GyroCalibrator c = new GyroCalibrator();
+
+        feed(c, 5f, 0.02f, 0f, 0f, 0.005f);
+
+        assertFalse(c.isCalibrated());
+        assertEquals(0f, c.getBiasX(), 0f);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InputTraceTest {
+
+    private static class Collector implements InputTrace.Listener {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void onSensor(int type, float x, float y, float z, long timestampNanos) {
+            records.add("sensor " + type + " " + x + " " + y + " " + z + " @" + timestampNanos);
+        }
+
+        @Override
+        public void onTouchpad(int action, float x, float y, long timeNanos) {
+            records.add("touch " + action + " " + x + " " + y + " @" + timeNanos);
+        }
+
+        @Override
+        public void onJoystick(int id, float x, float y, long timeNanos) {
+            records.add("stick " + id + " " + x + " " + y + " @" + timeNanos);
+        }
+
+        @Override
+        public void onJoystickReleased(int id, long timeNanos) {
+            records.add("release " + id + " @" + timeNanos);
+        }
+    }
+
+    @Test
+    public void recordAndReplay_roundTripsEveryRecord() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputTrace.Recorder recorder = new InputTrace.Recorder(bytes);
+        recorder.sensor(4, 0.25f, -1.5f, 3e-3f, 123_456_789_012L);
+        recorder.touchpad(InputTrace.TOUCH_MOVE, 10.5f, 20f, 5_000_000L);
+        recorder.joystick(0x7f0a0042, -1f, 0.5f, 6_000_000L);
+        recorder.joystickReleased(0x7f0a0042, 7_000_000L);
+        recorder.close();
+
+        Collector collector = new Collector();
+        long count = InputTrace.replay(new ByteArrayInputStream(bytes.toByteArray()), collector);
+
+        assertEquals(4, count);
+        assertEquals(4, recorder.getRecordCount());
+        assertEquals("sensor 4 0.25 -1.5 0.003 @123456789012", collector.records.get(0));
+        assertEquals("touch 1 10.5 20.0 @5000000", collector.records.get(1));
+        assertEquals("stick 2131361858 -1.0 0.5 @6000000", collector.records.get(2));
+        assertEquals("release 2131361858 @7000000", collector.records.get(3));
+        // 5 byte header, 9 bytes per record header, then the payloads
+        assertEquals(5 + 4 * 9 + 13 + 9 + 12 + 4, bytes.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void replay_rejectsOtherFiles() throws IOException {
+        InputTrace.replay(new ByteArrayInputStream("{\"type\":\"handshake\"}".getBytes()), new Collector());
+    }
+
+    @Test(expected = IOException.class)
+    public void replay_rejectsTruncatedRecord() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputTrace.Recorder recorder = new InputTrace.Recorder(bytes);
+        recorder.sensor(1, 0f, 0f, 9.81f, 1L);
+        recorder.close();
+        byte[] trace = bytes.toByteArray();
+
+        InputTrace.replay(new ByteArrayInputStream(trace, 0, trace.length - 2), new Collector());
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValues_areExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int v = 0; v < 64; v++) {
+            h.record(v);
+        }
+
+        assertEquals(64, h.getCount());
+        assertEquals(31, h.getValueAtPercentile(50));
+        assertEquals(63, h.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void largeValues_stayWithinBucketPrecision() {
+        for (long v = 64; v < LatencyHistogram.MAX_VALUE; v = v * 3 / 2 + 7) {
+            long reported = LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(v));
+            assertTrue(v + " -> " + reported, reported >= v);
+            assertTrue(v + " -> " + reported, reported - v <= v / 32);
+        }
+    }
+
+    @Test
+    public void percentiles_ofUniformSamples() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int v = 1; v <= 10_000; v++) {
+            h.record(v);
+        }
+
+        assertEquals(5_000, h.getValueAtPercentile(50), 5_000 / 32);
+        assertEquals(9_900, h.getValueAtPercentile(99), 9_900 / 32);
+        assertEquals(9_990, h.getValueAtPercentile(99.9), 9_990 / 32);
+        assertEquals(10_000, h.getMax());
+        assertEquals(5_000.5, h.getMean(), 1e-6);
+    }
+
+    @Test
+    public void outliers_areClampedAndResetClears() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(Long.MAX_VALUE);
+        h.record(-5);
+
+        assertEquals(LatencyHistogram.MAX_VALUE, h.getMax());
+        assertEquals(0, h.getMin());
+
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getValueAtPercentile(99));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyProbeTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final LatencyProbe probe = new LatencyProbe((frame, length) -> { });
+
+    @Test
+    public void pong_recordsRoundTrip() {
+        long sent = 1_000 * MS;
+        int id = probe.register(sent);
+        probe.onPong(id, sent, sent + 4 * MS);
+
+        LatencyStats stats = probe.getStats();
+        assertEquals(1, stats.getSamples());
+        assertEquals(4_000, stats.getP50Micros(), 4_000 / 32);
+        assertEquals(0.0, stats.getLossRate(), 0);
+    }
+
+    @Test
+    public void duplicateAndForeignPongs_areIgnored() {
+        long sent = 1_000 * MS;
+        int id = probe.register(sent);
+        probe.onPong(id, sent, sent + 4 * MS);
+        probe.onPong(id, sent, sent + 9 * MS);
+        probe.onPong(id + 1, sent, sent + 9 * MS);
+
+        assertEquals(1, probe.getStats().getSamples());
+    }
+
+    @Test
+    public void unansweredProbe_countsAsLostAfterTimeout() {
+        long t = 1_000 * MS;
+        int first = probe.register(t);
+        probe.register(t + 200 * MS);
+        probe.register(t + LatencyProbe.TIMEOUT_NANOS + 300 * MS); // first has expired by now
+
+        // A late pong no longer counts as a sample
+        probe.onPong(first, t, t + LatencyProbe.TIMEOUT_NANOS + 400 * MS);
+
+        LatencyStats stats = probe.getStats();
+        assertEquals(3, stats.getProbesSent());
+        assertEquals(0, stats.getSamples());
+        assertEquals(1.0, stats.getLossRate(), 0);
+    }
+
+    @Test
+    public void jitter_tracksVariationBetweenRoundTrips() {
+        long t = 1_000 * MS;
+        for (int i = 0; i < 200; i++) {
+            long rtt = (i % 2 == 0 ? 3 : 5) * MS; // Alternating 3 ms / 5 ms
+            int id = probe.register(t);
+            probe.onPong(id, t, t + rtt);
+            t += 200 * MS;
+        }
+
+        assertEquals(2_000, probe.getStats().getJitterMicros(), 100);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.myapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays a burst of queued input through EventSender, as if the sender thread
+ * had fallen behind, and checks what reaches the wire.
+ */
+public class MotionCoalescingTest {
+
+    // Touchpad swipe captured from MouseFragment (dx, dy per ACTION_MOVE, sensitivity 1.5)
+    private static final float[][] SWIPE = {
+            { 1.5f, 0.0f }, { 3.0f, -1.5f }, { 4.5f, -1.5f }, { 6.0f, -3.0f }, { 7.5f, -3.0f },
+            { 9.0f, -4.5f }, { 10.5f, -4.5f }, { 10.5f, -6.0f }, { 12.0f, -6.0f }, { 10.5f, -4.5f },
+            { 9.0f, -4.5f }, { 7.5f, -3.0f }, { 6.0f, -3.0f }, { 4.5f, -1.5f }, { 3.0f, -1.5f },
+            { 1.5f, 0.0f }, { 1.5f, 0.0f }, { 0.0f, 1.5f }, { -1.5f, 1.5f }, { -3.0f, 3.0f },
+            { -4.5f, 3.0f }, { -6.0f, 4.5f }, { -4.5f, 3.0f }, { -3.0f, 1.5f }, { -1.5f, 1.5f },
+            { -0.75f, 0.75f }, { -0.75f, 0.0f }, { 0.0f, 0.75f }, { 0.75f, 0.0f }, { 0.0f, -0.75f } };
+
+    private EventRing ring;
+    private EventSender sender;
+    private final List<WireProtocol.Frame> frames = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        ring = new EventRing(256);
+        sender = new EventSender(ring, (frame, length) -> {
+            WireProtocol.Frame f = new WireProtocol.Frame();
+            assertTrue(WireProtocol.decode(frame, 0, length, f));
+            frames.add(f);
+        });
+        sender.reset(0);
+    }
+
+    @Test
+    public void burst_isMergedIntoOnePacketPerRun() throws Exception {
+        replaySwipeWithClickAt(SWIPE.length / 2);
+
+        sender.drain();
+
+        // motion, click, motion
+        assertEquals(3, frames.size());
+        assertEquals(WireProtocol.TYPE_MOTION, frames.get(0).type);
+        assertEquals(WireProtocol.TYPE_CLICK, frames.get(1).type);
+        assertEquals(WireProtocol.TYPE_MOTION, frames.get(2).type);
+        assertDisplacementPreserved();
+    }
+
+    @Test
+    public void motionBeforeClick_staysBeforeClick() throws Exception {
+        int clickAt = 10;
+        replaySwipeWithClickAt(clickAt);
+
+        sender.drain();
+
+        float dxBeforeClick = 0;
+        for (int i = 0; i < clickAt; i++) {
+            dxBeforeClick += SWIPE[i][0];
+        }
+        assertEquals(dxBeforeClick, frames.get(0).x, 1e-3f);
+    }
+
+    @Test
+    public void analog_keepsLatestSamplePerSource() throws Exception {
+        int left = WireProtocol.sourceCode("left_stick");
+        int tilt = WireProtocol.sourceCode("tilt");
+        for (int i = 1; i <= 20; i++) {
+            ring.offer(WireProtocol.TYPE_ANALOG, left, 0, 0, i / 20f, 0f, i);
+            ring.offer(WireProtocol.TYPE_ANALOG, tilt, 0, 0, 0f, -i / 20f, i);
+        }
+        ring.offer(WireProtocol.TYPE_BUTTON, WireProtocol.keyCode("CROSS"), WireProtocol.groupCode("action"), 1,
+                0f, 0f, 21);
+
+        sender.drain();
+
+        assertEquals(3, frames.size());
+        assertEquals(left, frames.get(0).code);
+        assertEquals(1f, frames.get(0).x, 0f);
+        assertEquals(tilt, frames.get(1).code);
+        assertEquals(-1f, frames.get(1).y, 0f);
+        assertEquals(WireProtocol.TYPE_BUTTON, frames.get(2).type);
+    }
+
+    @Test
+    public void coalescingOff_sendsEveryRecord() throws Exception {
+        sender.setCoalescing(false);
+        replaySwipeWithClickAt(SWIPE.length / 2);
+
+        sender.drain();
+
+        assertEquals(SWIPE.length + 1, frames.size());
+        assertDisplacementPreserved();
+    }
+
+    @Test
+    public void batching_sendsOneDatagramPerDrain() throws Exception {
+        sender.setBatching(true);
+        replaySwipeWithClickAt(SWIPE.length / 2);
+
+        sender.drain();
+
+        // motion, click, motion in one container
+        assertEquals(1, frames.size());
+        assertEquals(WireProtocol.TYPE_BATCH, frames.get(0).type);
+        assertEquals(3, frames.get(0).code);
+    }
+
+    @Test
+    public void batching_loneRecordIsSentAsPlainFrame() throws Exception {
+        sender.setBatching(true);
+        ring.offer(WireProtocol.TYPE_CLICK, WireProtocol.clickCode("L"), 0, 0, 0f, 0f, 0);
+
+        sender.drain();
+
+        assertEquals(1, frames.size());
+        assertEquals(WireProtocol.TYPE_CLICK, frames.get(0).type);
+    }
+
+    @Test
+    public void edgesAreReliable_motionIsNot() throws Exception {
+        replaySwipeWithClickAt(SWIPE.length / 2);
+
+        sender.drain();
+
+        assertFalse(frames.get(0).reliable);
+        assertTrue(frames.get(1).reliable);
+        assertEquals(1, sender.getReliableLane().getPendingCount());
+    }
+
+    @Test
+    public void batchWithAnEdge_isReliable() throws Exception {
+        sender.setBatching(true);
+        replaySwipeWithClickAt(SWIPE.length / 2);
+
+        sender.drain();
+
+        assertTrue(frames.get(0).reliable);
+        sender.onAck(frames.get(0).sequence);
+        assertEquals(0, sender.getReliableLane().getPendingCount());
+    }
+
+    @Test
+    public void mouseButtonPress_holdsLaterMotionUntilAcked() throws Exception {
+        int pressAt = 10;
+        for (int i = 0; i < SWIPE.length; i++) {
+            if (i == pressAt) {
+                ring.offer(WireProtocol.TYPE_MOUSE_BUTTON, WireProtocol.clickCode("L"), 0, 1, 0f, 0f, i);
+            }
+            ring.offer(WireProtocol.TYPE_MOTION, 0, 0, 0, SWIPE[i][0], SWIPE[i][1], i);
+        }
+
+        sender.drain();
+        assertEquals(2, frames.size());
+        WireProtocol.Frame press = frames.get(1);
+        assertEquals(WireProtocol.TYPE_MOUSE_BUTTON, press.type);
+        assertTrue(press.reliable);
+        long wait = sender.nanosUntilBarrierLifts(System.nanoTime());
+        assertTrue(wait > 0 && wait <= EventSender.MAX_BARRIER_NANOS);
+
+        // Unacked, say lost: the drag motion must not get to the receiver first
+        sender.drain();
+        assertEquals(2, frames.size());
+
+        assertFalse(sender.onAck(press.sequence - 1));
+        assertTrue(sender.onAck(press.sequence));
+        assertEquals(-1, sender.nanosUntilBarrierLifts(System.nanoTime()));
+        sender.drain();
+        assertEquals(3, frames.size());
+        assertEquals(WireProtocol.TYPE_MOTION, frames.get(2).type);
+        assertDisplacementPreserved();
+    }
+
+    @Test
+    public void senderKeepingUp_addsNoDelay() throws Exception {
+        for (float[] d : SWIPE) {
+            ring.offer(WireProtocol.TYPE_MOTION, 0, 0, 0, d[0], d[1], 0);
+            sender.drain();
+        }
+
+        assertEquals(SWIPE.length, frames.size());
+    }
+
+    private void replaySwipeWithClickAt(int clickAt) {
+        for (int i = 0; i < SWIPE.length; i++) {
+            if (i == clickAt) {
+                ring.offer(WireProtocol.TYPE_CLICK, WireProtocol.clickCode("L"), 0, 0, 0f, 0f, i);
+            }
+            ring.offer(WireProtocol.TYPE_MOTION, 0, 0, 0, SWIPE[i][0], SWIPE[i][1], i);
+        }
+    }
+
+    private void assertDisplacementPreserved() {
+        float expectedX = 0, expectedY = 0;
+        for (float[] d : SWIPE) {
+            expectedX += d[0];
+            expectedY += d[1];
+        }
+        float sentX = 0, sentY = 0;
+        for (WireProtocol.Frame f : frames) {
+            if (f.type == WireProtocol.TYPE_MOTION) {
+                sentX += f.x;
+                sentY += f.y;
+            }
+        }
+        assertEquals(expectedX, sentX, 1e-3f);
+        assertEquals(expectedY, sentY, 1e-3f);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.myapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the binary send path does not allocate once it is warmed up,
+ * neither on the calling thread nor on the NetworkSender thread that encodes
+ * and sends. Runs against a local receiver on the loopback interface that
+ * acknowledges reliable frames like the real one.
+ */
+public class NetworkManagerAllocationTest {
+
+    private static final int WARMUP_EVENTS = 50_000;
+    private static final int MEASURED_EVENTS = 10_000;
+
+    private DatagramSocket receiver;
+    private Thread receiverThread;
+    private NetworkManager networkManager;
+    private final AtomicInteger markers = new AtomicInteger(); // Right clicks seen, sent after each measured run
+
+    @Before
+    public void setUp() throws Exception {
+        receiver = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        receiverThread = new Thread(() -> {
+            byte[] buf = new byte[1024];
+            byte[] ack = new byte[WireProtocol.MAX_FRAME_SIZE];
+            DatagramPacket packet = new DatagramPacket(buf, buf.length);
+            WireProtocol.Frame frame = new WireProtocol.Frame();
+            int marker = WireProtocol.clickCode("R");
+            try {
+                while (!receiver.isClosed()) {
+                    packet.setLength(buf.length);
+                    receiver.receive(packet);
+                    if (buf[0] == '{') {
+                        byte[] hello = ("ACK proto=" + WireProtocol.VERSION).getBytes();
+                        receiver.send(new DatagramPacket(hello, hello.length, packet.getSocketAddress()));
+                    } else if (WireProtocol.decode(buf, 0, packet.getLength(), frame)) {
+                        if (frame.reliable) {
+                            int len = WireProtocol.encodeAck(ack, 0, 0, 0, frame.sequence);
+                            receiver.send(new DatagramPacket(ack, len, packet.getSocketAddress()));
+                        }
+                        if (frame.type == WireProtocol.TYPE_CLICK && frame.code == marker) {
+                            markers.incrementAndGet();
+                        }
+                    }
+                }
+            } catch (Exception ignored) {
+                // Socket closed
+            }
+        });
+        receiverThread.start();
+
+        networkManager = NetworkManager.getInstance();
+        // The desktop JDK's DatagramSocket.send allocates per datagram by itself; the NIO channel does not
+        networkManager.setNioTransport(true);
+        CountDownLatch connected = new CountDownLatch(1);
+        networkManager.connect("127.0.0.1", receiver.getLocalPort(), new NetworkManager.ConnectionCallback() {
+            @Override
+            public void onSuccess() {
+                connected.countDown();
+            }
+
+            @Override
+            public void onFailure(String error) {
+            }
+        });
+        assertTrue("handshake timed out", connected.await(5, TimeUnit.SECONDS));
+        assertTrue(networkManager.isBinaryProtocol());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        networkManager.disconnect();
+        networkManager.setNioTransport(false);
+        receiver.close();
+        receiverThread.join(1000);
+    }
+
+    @Test
+    public void sendPath_allocatesNothingAfterWarmup() throws Exception {
+        Thread sender = findThread("NetworkSender");
+        runEvents(WARMUP_EVENTS, sender);
+
+        long[] overhead = runEvents(0, sender);
+        long[] measured = runEvents(MEASURED_EVENTS, sender);
+        long allocated = measured[0] - overhead[0];
+        long senderAllocated = measured[1] - overhead[1];
+
+        // Even the smallest object is 16 bytes, so any per-event allocation shows up here.
+        // A one-off allocation by the JVM itself (deoptimization, class init) does not.
+        assertEquals("bytes allocated per event (" + allocated + " total)", 0, allocated / MEASURED_EVENTS);
+        assertEquals("bytes allocated per event on the sender thread (" + senderAllocated + " total)", 0,
+                senderAllocated / MEASURED_EVENTS);
+    }
+
+    /**
+     * Sends {@code events}, then a marker, and waits until the receiver has the
+     * marker, so the sender thread is done with everything before it.
+     * @return bytes allocated by this thread and by {@code sender} meanwhile
+     */
+    private long[] runEvents(int events, Thread sender) throws InterruptedException {
+        Thread caller = Thread.currentThread();
+        long before = Allocations.allocatedBytes(caller);
+        long senderBefore = Allocations.allocatedBytes(sender);
+        for (int i = 0; i < events; i++) {
+            sendEvent(i);
+        }
+        int expected = markers.get() + 1;
+        networkManager.sendClick("R");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (markers.get() < expected) {
+            assertTrue("marker never arrived", System.nanoTime() - deadline < 0);
+            Thread.sleep(1);
+        }
+        return new long[] { Allocations.allocatedBytes(caller) - before,
+                Allocations.allocatedBytes(sender) - senderBefore };
+    }
+
+    private static Thread findThread(String name) {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(t.getName()))
+                return t;
+        }
+        throw new AssertionError("no thread " + name);
+    }
+
+    private void sendEvent(int i) {
+        switch (i & 3) {
+            case 0:
+                networkManager.sendMotion(1.5f, -0.5f);
+                break;
+            case 1:
+                networkManager.sendAnalog("left_stick", 0.25f, 0.75f);
+                break;
+            case 2:
+                networkManager.sendButton("CROSS", "action", (i & 4) != 0);
+                break;
+            default:
+                networkManager.sendClick("L");
+                break;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OneEuroFilterTest {
+
+    private static final long PERIOD_NANOS = 1_000_000_000L / 120; // Touch and sensor rates are ~120 Hz
+
+    // Standard deviation of the output for a constant signal plus gaussian noise
+    private static double restingJitter(OneEuroFilter filter, double noise) {
+        Random random = new Random(5);
+        int samples = 1200;
+        int settle = 240;
+        double sum = 0, sumSq = 0;
+        for (int i = 0; i < samples; i++) {
+            float out = filter.filter(0.5f + (float) (random.nextGaussian() * noise), i * PERIOD_NANOS);
+            if (i >= settle) {
+                sum += out;
+                sumSq += out * out;
+            }
+        }
+        int n = samples - settle;
+        double mean = sum / n;
+        return Math.sqrt(sumSq / n - mean * mean);
+    }
+
+    // How far behind a ramp at `speed` units/s the output runs once settled, in ms
+    private static double rampLagMillis(OneEuroFilter filter, float speed) {
+        float value = 0f;
+        float out = 0f;
+        for (int i = 0; i < 120; i++) {
+            value = speed * i / 120f;
+            out = filter.filter(value, i * PERIOD_NANOS);
+        }
+        return (value - out) / speed * 1000;
+    }
+
+    @Test
+    public void atRest_removesMostJitter() {
+        double noise = 0.02;
+        double jitter = restingJitter(new OneEuroFilter(JoystickView.DEFAULT_MIN_CUTOFF, JoystickView.DEFAULT_BETA), noise);
+
+        assertTrue("jitter " + jitter, jitter < noise / 3);
+    }
+
+    @Test
+    public void whenMoving_lagsFarLessThanFixedLowPassWithSameRestingJitter() {
+        float minCutoff = JoystickView.DEFAULT_MIN_CUTOFF;
+        float beta = JoystickView.DEFAULT_BETA;
+        double noise = 0.02;
+
+        // beta 0 is a plain low-pass at minCutoff
+        double adaptiveJitter = restingJitter(new OneEuroFilter(minCutoff, beta), noise);
+        double fixedJitter = restingJitter(new OneEuroFilter(minCutoff, 0f), noise);
+        double adaptiveLag = rampLagMillis(new OneEuroFilter(minCutoff, beta), 5f);
+        double fixedLag = rampLagMillis(new OneEuroFilter(minCutoff, 0f), 5f);
+
+        assertEquals(fixedJitter, adaptiveJitter, fixedJitter * 0.5);
+        assertTrue("lag " + adaptiveLag + " ms", adaptiveLag < fixedLag / 3);
+        assertTrue("lag " + adaptiveLag + " ms", adaptiveLag < 40);
+    }
+
+    @Test
+    public void tiltTuning_tradesLagForStillness() {
+        float minCutoff = SensorHelper.TILT_MIN_CUTOFF;
+        float beta = SensorHelper.TILT_BETA;
+
+        double jitter = restingJitter(new OneEuroFilter(minCutoff, beta), 0.01);
+        double slowLag = rampLagMillis(new OneEuroFilter(minCutoff, beta), 0.5f);
+        double fastLag = rampLagMillis(new OneEuroFilter(minCutoff, beta), 4f);
+
+        assertTrue(jitter < 0.01 / 4);
+        assertTrue(fastLag < slowLag / 2);
+    }
+
+    @Test
+    public void firstSample_passesThrough() {
+        OneEuroFilter filter = new OneEuroFilter(1f, 0f);
+        assertEquals(0.8f, filter.filter(0.8f, 1_000L), 0f);
+        float next = filter.filter(0f, 1_000L + PERIOD_NANOS);
+        assertTrue(next > 0f && next < 0.8f);
+
+        filter.reset();
+        assertEquals(-0.3f, filter.filter(-0.3f, 2_000_000_000L), 0f);
+    }
+
+    @Test
+    public void repeatedTimestamp_returnsPreviousOutput() {
+        OneEuroFilter filter = new OneEuroFilter(1f, 0f);
+        filter.filter(0f, 0L);
+        float out = filter.filter(1f, PERIOD_NANOS);
+
+        assertEquals(out, filter.filter(5f, PERIOD_NANOS), 0f);
+        assertEquals(out, filter.filter(5f, 0L), 0f);
+    }
+
+    @Test
+    public void output_isIndependentOfSampleRate() {
+        // Same ramp at 60 and 480 Hz ends in the same place
+        float[] ends = new float[2];
+        int[] rates = { 60, 480 };
+        for (int r = 0; r < rates.length; r++) {
+            OneEuroFilter filter = new OneEuroFilter(2f, 0.5f);
+            long period = 1_000_000_000L / rates[r];
+            for (int i = 0; i <= rates[r] / 2; i++) {
+                ends[r] = filter.filter(2f * i / rates[r], i * period);
+            }
+        }
+        assertEquals(ends[0], ends[1], 0.03f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCutoff() {
+        new OneEuroFilter(0f, 1f);
+    }
+
+    @Test
+    public void filter_allocatesNothing() {
+        OneEuroFilter filter = new OneEuroFilter(1.5f, 1f);
+        for (int i = 0; i < 100_000; i++) {
+            filter.filter((i & 63) / 64f, i * PERIOD_NANOS);
+        }
+
+        int samples = 100_000;
+        float[] sink = new float[1];
+        long allocated = Allocations.measure(() -> {
+            for (int i = 0; i < samples; i++) {
+                sink[0] += filter.filter((i & 63) / 64f, (100_000 + i) * PERIOD_NANOS);
+            }
+        });
+
+        assertFalse(Float.isNaN(sink[0]));
+        assertEquals("bytes allocated per sample (" + allocated + " total)", 0, allocated / samples);
+    }
+}
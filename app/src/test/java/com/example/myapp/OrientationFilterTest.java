@@ -0,0 +1,240 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OrientationFilterTest {
+
+    private static final float DT = 0.01f; // 100 Hz
+    private static final float G = 9.81f;
+
+    /**
+     * A simulated sensor recording: the true orientation follows a known
+     * angular velocity, the gyro reports it with bias and noise and the
+     * accelerometer reports gravity plus hand-shake vibration.
+     */
+    private static class Trace {
+        final int length;
+        final float[] gyro;
+        final float[] accel;
+        final float[] trueGravity;
+
+        Trace(int length, long seed, float biasX, float biasY, float biasZ, float gyroNoise, float accelNoise,
+                double tiltX, double tiltY, double swingAmplitude) {
+            this.length = length;
+            gyro = new float[length * 3];
+            accel = new float[length * 3];
+            trueGravity = new float[length * 3];
+            Random random = new Random(seed);
+            // Start tilted about x, then y
+            double[] q = multiply(axisAngle(1, 0, 0, tiltX), axisAngle(0, 1, 0, tiltY));
+            for (int i = 0; i < length; i++) {
+                double t = i * DT;
+                double wx = swingAmplitude * Math.sin(2 * Math.PI * 0.5 * t);
+                double wy = swingAmplitude * 0.7 * Math.sin(2 * Math.PI * 0.3 * t + 1);
+                double wz = swingAmplitude * 0.5 * Math.cos(2 * Math.PI * 0.2 * t);
+                for (int step = 0; step < 10; step++) {
+                    q = integrate(q, wx, wy, wz, DT / 10.0);
+                }
+                double gx = 2 * (q[1] * q[3] - q[0] * q[2]);
+                double gy = 2 * (q[0] * q[1] + q[2] * q[3]);
+                double gz = q[0] * q[0] - q[1] * q[1] - q[2] * q[2] + q[3] * q[3];
+                trueGravity[i * 3] = (float) gx;
+                trueGravity[i * 3 + 1] = (float) gy;
+                trueGravity[i * 3 + 2] = (float) gz;
+                gyro[i * 3] = (float) (wx + biasX + random.nextGaussian() * gyroNoise);
+                gyro[i * 3 + 1] = (float) (wy + biasY + random.nextGaussian() * gyroNoise);
+                gyro[i * 3 + 2] = (float) (wz + biasZ + random.nextGaussian() * gyroNoise);
+                accel[i * 3] = (float) (gx * G + random.nextGaussian() * accelNoise);
+                accel[i * 3 + 1] = (float) (gy * G + random.nextGaussian() * accelNoise);
+                accel[i * 3 + 2] = (float) (gz * G + random.nextGaussian() * accelNoise);
+            }
+        }
+
+        void replay(OrientationFilter filter, int i) {
+            filter.update(gyro[i * 3], gyro[i * 3 + 1], gyro[i * 3 + 2], accel[i * 3], accel[i * 3 + 1],
+                    accel[i * 3 + 2], DT);
+        }
+
+        double errorDegrees(OrientationFilter filter, int i) {
+            double dot = filter.getGravityX() * trueGravity[i * 3] + filter.getGravityY() * trueGravity[i * 3 + 1]
+                    + filter.getGravityZ() * trueGravity[i * 3 + 2];
+            return Math.toDegrees(Math.acos(Math.min(1.0, dot)));
+        }
+
+        double rawErrorDegrees(int i) {
+            double ax = accel[i * 3], ay = accel[i * 3 + 1], az = accel[i * 3 + 2];
+            double norm = Math.sqrt(ax * ax + ay * ay + az * az);
+            double dot = (ax * trueGravity[i * 3] + ay * trueGravity[i * 3 + 1] + az * trueGravity[i * 3 + 2])
+                    / norm;
+            return Math.toDegrees(Math.acos(Math.min(1.0, dot)));
+        }
+
+        private static double[] axisAngle(double x, double y, double z, double angle) {
+            double s = Math.sin(angle / 2);
+            return new double[] { Math.cos(angle / 2), x * s, y * s, z * s };
+        }
+
+        private static double[] multiply(double[] a, double[] b) {
+            return new double[] {
+                    a[0] * b[0] - a[1] * b[1] - a[2] * b[2] - a[3] * b[3],
+                    a[0] * b[1] + a[1] * b[0] + a[2] * b[3] - a[3] * b[2],
+                    a[0] * b[2] - a[1] * b[3] + a[2] * b[0] + a[3] * b[1],
+                    a[0] * b[3] + a[1] * b[2] - a[2] * b[1] + a[3] * b[0] };
+        }
+
+        // Same convention as the filter: q' = q + 0.5 q (x) w dt
+        private static double[] integrate(double[] q, double wx, double wy, double wz, double dt) {
+            double[] d = multiply(q, new double[] { 0, wx, wy, wz });
+            double[] r = new double[4];
+            double norm = 0;
+            for (int k = 0; k < 4; k++) {
+                r[k] = q[k] + 0.5 * d[k] * dt;
+                norm += r[k] * r[k];
+            }
+            norm = Math.sqrt(norm);
+            for (int k = 0; k < 4; k++) {
+                r[k] /= norm;
+            }
+            return r;
+        }
+    }
+
+    @Test
+    public void initFromAccel_matchesMeasuredGravity() {
+        OrientationFilter filter = new OrientationFilter();
+        float[][] samples = { { 0, 0, G }, { 0, G, 0 }, { G, 0, 0 }, { 0, 0, -G }, { 3, -4, 8 } };
+        for (float[] a : samples) {
+            filter.initFromAccel(a[0], a[1], a[2]);
+            float norm = (float) Math.sqrt(a[0] * a[0] + a[1] * a[1] + a[2] * a[2]);
+            assertEquals(a[0] / norm, filter.getGravityX(), 1e-4f);
+            assertEquals(a[1] / norm, filter.getGravityY(), 1e-4f);
+            assertEquals(a[2] / norm, filter.getGravityZ(), 1e-4f);
+        }
+    }
+
+    @Test
+    public void staticTilt_convergesFromLevelStart() {
+        Trace trace = new Trace(1000, 1, 0, 0, 0, 0.005f, 0.3f, 0.5, -0.3, 0);
+        OrientationFilter filter = new OrientationFilter();
+        filter.initFromAccel(0, 0, G); // Wrong on purpose: the filter has to pull itself over
+
+        for (int i = 0; i < trace.length; i++) {
+            trace.replay(filter, i);
+        }
+
+        assertEquals(0, trace.errorDegrees(filter, trace.length - 1), 1.0);
+    }
+
+    @Test
+    public void movingTrace_tracksTiltAndRejectsVibration() {
+        Trace trace = new Trace(3000, 2, 0, 0, 0, 0.01f, 1.5f, 0.3, 0.2, 1.5);
+        OrientationFilter filter = new OrientationFilter();
+
+        double filtered = 0, raw = 0, worst = 0;
+        for (int i = 0; i < trace.length; i++) {
+            trace.replay(filter, i);
+            double error = trace.errorDegrees(filter, i);
+            filtered += error;
+            raw += trace.rawErrorDegrees(i);
+            if (i >= 100) { // Started from one noisy accelerometer sample
+                worst = Math.max(worst, error);
+            }
+        }
+        filtered /= trace.length;
+        raw /= trace.length;
+
+        assertTrue("mean " + filtered, filtered < 2.0);
+        assertTrue("worst " + worst, worst < 6.0);
+        assertTrue("filter should beat the raw accelerometer", filtered < raw / 2);
+    }
+
+    @Test
+    public void gyroBias_isEstimatedAndRemovedFromRates() {
+        // Tilted still device so bias on all three axes is observable over time
+        Trace trace = new Trace(30_000, 3, 0.02f, -0.03f, 0.015f, 0.005f, 0.2f, 0.6, 0.4, 0);
+        OrientationFilter filter = new OrientationFilter();
+
+        for (int i = 0; i < trace.length; i++) {
+            trace.replay(filter, i);
+        }
+
+        assertEquals(0, trace.errorDegrees(filter, trace.length - 1), 1.0);
+        // The part of the bias that tilts gravity is observable and must be mostly gone
+        float gx = filter.getGravityX(), gy = filter.getGravityY(), gz = filter.getGravityZ();
+        float rx = filter.getBiasX() - 0.02f, ry = filter.getBiasY() + 0.03f, rz = filter.getBiasZ() - 0.015f;
+        float along = rx * gx + ry * gy + rz * gz;
+        float ox = rx - along * gx, oy = ry - along * gy, oz = rz - along * gz;
+        float residual = (float) Math.sqrt(ox * ox + oy * oy + oz * oz);
+        assertTrue("residual " + residual, residual < 0.01f);
+    }
+
+    @Test
+    public void magnetometer_holdsHeadingAgainstGyroDrift() {
+        OrientationFilter withMag = new OrientationFilter();
+        OrientationFilter gyroOnly = new OrientationFilter();
+        withMag.setZeta(0);
+        gyroOnly.setZeta(0);
+        float[] q = new float[4];
+        // Level and still, field along the device x axis and down; gyro z reports a constant drift
+        for (int i = 0; i < 3000; i++) {
+            withMag.update(0, 0, 0.05f, 0, 0, G, 20, 0, -40, DT);
+            gyroOnly.update(0, 0, 0.05f, 0, 0, G, DT);
+        }
+
+        gyroOnly.getQuaternion(q);
+        double driftOnly = Math.toDegrees(2 * Math.abs(Math.atan2(q[3], q[0])));
+        withMag.getQuaternion(q);
+        double driftMag = Math.toDegrees(2 * Math.abs(Math.atan2(q[3], q[0])));
+
+        assertTrue("gyro only " + driftOnly, driftOnly > 60);
+        assertTrue("with magnetometer " + driftMag, driftMag < 10);
+    }
+
+    @Test
+    public void update_benchmark() {
+        Trace trace = new Trace(4096, 4, 0.01f, 0, 0, 0.01f, 0.5f, 0.2, 0.1, 1.0);
+        OrientationFilter filter = new OrientationFilter();
+        int mask = trace.length - 1;
+
+        // Warm up the JIT, then time; reported with -Dbenchmark.stats=true, not asserted
+        for (int i = 0; i < 200_000; i++) {
+            trace.replay(filter, i & mask);
+        }
+        int samples = 2_000_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            trace.replay(filter, i & mask);
+        }
+        double nanosPerUpdate = (System.nanoTime() - start) / (double) samples;
+
+        float sink = filter.getGravityX() + filter.getGravityY() + filter.getGravityZ();
+        assertFalse(Float.isNaN(sink));
+        if (Boolean.getBoolean("benchmark.stats"))
+            System.out.printf("orientation update: %.1f ns/sample%n", nanosPerUpdate);
+    }
+
+    @Test
+    public void update_allocatesNothing() {
+        Trace trace = new Trace(4096, 4, 0.01f, 0, 0, 0.01f, 0.5f, 0.2, 0.1, 1.0);
+        OrientationFilter filter = new OrientationFilter();
+        int mask = trace.length - 1;
+        for (int i = 0; i < 200_000; i++) {
+            trace.replay(filter, i & mask);
+        }
+
+        int samples = 100_000;
+        long allocated = Allocations.measure(() -> {
+            for (int i = 0; i < samples; i++) {
+                trace.replay(filter, i & mask);
+            }
+        });
+
+        float sink = filter.getGravityX() + filter.getGravityY() + filter.getGravityZ();
+        assertFalse(Float.isNaN(sink));
+        assertEquals("bytes allocated per sample (" + allocated + " total)", 0, allocated / samples);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PointerBallisticsTest {
+
+    @Test
+    public void slowMotion_accumulatesSubPixelRemainder() {
+        PointerBallistics b = new PointerBallistics(PointerBallistics.LINEAR, 1f);
+        int x = 0, y = 0;
+        for (int i = 0; i < 10; i++) {
+            b.apply(0.3f, -0.25f, 0.02f);
+            x += b.getX();
+            y += b.getY();
+        }
+
+        // Truncating each delta on the host would have moved nothing
+        assertEquals(3, x);
+        assertEquals(-2, y);
+    }
+
+    @Test
+    public void integerDeltas_addUpToScaledMotion() {
+        PointerBallistics b = new PointerBallistics(PointerBallistics.LINEAR, 1.5f);
+        Random random = new Random(11);
+        double totalX = 0, totalY = 0;
+        long sentX = 0, sentY = 0;
+        for (int i = 0; i < 100_000; i++) {
+            float dx = (float) random.nextGaussian() * 3f;
+            float dy = (float) random.nextGaussian() * 3f;
+            b.apply(dx, dy, 0.01f);
+            totalX += dx * 1.5;
+            totalY += dy * 1.5;
+            sentX += b.getX();
+            sentY += b.getY();
+        }
+
+        // Off by less than a pixel (plus float rounding over 100k steps)
+        assertEquals(totalX, sentX, 1.05);
+        assertEquals(totalY, sentY, 1.05);
+    }
+
+    @Test
+    public void piecewise_interpolatesAndClamps() {
+        PointerBallistics.Curve c = PointerBallistics.piecewise(new float[] { 100f, 300f }, new float[] { 0.5f, 1.5f });
+
+        assertEquals(0.5f, c.gain(0f), 1e-6f);
+        assertEquals(0.5f, c.gain(100f), 1e-6f);
+        assertEquals(1.0f, c.gain(200f), 1e-6f);
+        assertEquals(1.5f, c.gain(300f), 1e-6f);
+        assertEquals(1.5f, c.gain(10_000f), 1e-6f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void piecewise_rejectsUnsortedSpeeds() {
+        PointerBallistics.piecewise(new float[] { 100f, 50f }, new float[] { 1f, 2f });
+    }
+
+    @Test
+    public void enhanced_isFinerWhenSlowAndFasterWhenFast() {
+        PointerBallistics.Curve c = PointerBallistics.ENHANCED;
+        float previous = 0f;
+        for (float speed = 0f; speed < 5000f; speed += 50f) {
+            float gain = c.gain(speed);
+            assertTrue("not monotonic at " + speed, gain >= previous);
+            previous = gain;
+        }
+
+        PointerBallistics slow = new PointerBallistics(c, 1f);
+        PointerBallistics fast = new PointerBallistics(c, 1f);
+        int slowTotal = 0, fastTotal = 0;
+        // Same 100 px of input, once over a second and once over 50 ms
+        for (int i = 0; i < 100; i++) {
+            slow.apply(1f, 0f, 0.01f);
+            slowTotal += slow.getX();
+        }
+        for (int i = 0; i < 5; i++) {
+            fast.apply(20f, 0f, 0.01f);
+            fastTotal += fast.getX();
+        }
+        assertTrue(slowTotal < 100);
+        assertTrue(fastTotal > 100);
+    }
+
+    @Test
+    public void forName_fallsBackToLinear() {
+        assertSame(PointerBallistics.ENHANCED, PointerBallistics.forName("enhanced"));
+        assertSame(PointerBallistics.LINEAR, PointerBallistics.forName("linear"));
+        assertSame(PointerBallistics.LINEAR, PointerBallistics.forName(null));
+    }
+
+    @Test
+    public void apply_benchmark() {
+        PointerBallistics b = new PointerBallistics(PointerBallistics.ENHANCED, 1.5f);
+        float[] deltas = new float[1024];
+        Random random = new Random(3);
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = (float) random.nextGaussian() * 8f;
+        }
+
+        // Warm up the JIT, then time; reported with -Dbenchmark.stats=true, not asserted
+        for (int i = 0; i < 200_000; i++) {
+            b.apply(deltas[i & 1023], deltas[(i + 1) & 1023], 0.01f);
+        }
+        int samples = 5_000_000;
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            b.apply(deltas[i & 1023], deltas[(i + 1) & 1023], 0.01f);
+            sink += b.getX();
+        }
+        double nanosPerSample = (System.nanoTime() - start) / (double) samples;
+
+        if (Boolean.getBoolean("benchmark.stats"))
+            System.out.printf("pointer ballistics: %.1f ns/sample (%d)%n", nanosPerSample, sink);
+    }
+
+    @Test
+    public void apply_allocatesNothing() {
+        PointerBallistics b = new PointerBallistics(PointerBallistics.ENHANCED, 1.5f);
+        float[] deltas = new float[1024];
+        Random random = new Random(3);
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = (float) random.nextGaussian() * 8f;
+        }
+        for (int i = 0; i < 200_000; i++) {
+            b.apply(deltas[i & 1023], deltas[(i + 1) & 1023], 0.01f);
+        }
+
+        int samples = 100_000;
+        long allocated = Allocations.measure(() -> {
+            for (int i = 0; i < samples; i++) {
+                b.apply(deltas[i & 1023], deltas[(i + 1) & 1023], 0.01f);
+            }
+        });
+
+        assertEquals("bytes allocated per sample (" + allocated + " total)", 0, allocated / samples);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.myapp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory {@link Transport} standing in for the PC receiver: answers the
+ * handshake, acknowledges reliable frames and tallies what was sent.
+ */
+class RecordingTransport implements Transport {
+
+    private final byte[] reply = ("ACK proto=" + WireProtocol.VERSION).getBytes();
+    private final WireProtocol.Frame frame = new WireProtocol.Frame();
+    private final ExecutorService acker = Executors.newSingleThreadExecutor();
+    private volatile Receiver receiver;
+    private boolean handshakeSeen = false;
+
+    private int datagrams = 0;
+    private int bytes = 0;
+    private final int[] framesByType = new int[16];
+    private double motionX = 0;
+    private double motionY = 0;
+    private final float[] lastAnalog = new float[WireProtocol.SOURCES.length * 2];
+
+    @Override
+    public void open(InetAddress address, int port) {
+    }
+
+    @Override
+    public synchronized void send(byte[] data, int offset, int length) {
+        if (data[offset] == '{') {
+            handshakeSeen = true;
+            notifyAll();
+            return;
+        }
+        datagrams++;
+        bytes += length;
+        if (!WireProtocol.decode(data, offset, length, frame))
+            return;
+        if (frame.reliable) {
+            acknowledge(frame.sequence);
+        }
+        if (frame.type == WireProtocol.TYPE_BATCH) {
+            int end = offset + length;
+            int p = offset + WireProtocol.BATCH_ENTRIES_OFFSET;
+            for (int i = 0; i < frame.code && p > 0; i++) {
+                p = WireProtocol.decodeBatchEntry(data, p, end, frame);
+                if (p > 0)
+                    tally();
+            }
+        } else {
+            tally();
+        }
+    }
+
+    private void tally() {
+        framesByType[frame.type]++;
+        switch (frame.type) {
+            case WireProtocol.TYPE_MOTION:
+                motionX += frame.x;
+                motionY += frame.y;
+                break;
+            case WireProtocol.TYPE_TICK:
+                if ((frame.code & WireProtocol.TICK_MOTION) != 0) {
+                    motionX += frame.x;
+                    motionY += frame.y;
+                }
+                System.arraycopy(frame.analog, 0, lastAnalog, 0, lastAnalog.length);
+                break;
+            case WireProtocol.TYPE_ANALOG:
+                lastAnalog[(frame.code - 1) * 2] = frame.x;
+                lastAnalog[(frame.code - 1) * 2 + 1] = frame.y;
+                break;
+        }
+    }
+
+    private void acknowledge(int seq) {
+        byte[] ack = new byte[WireProtocol.MAX_FRAME_SIZE];
+        int length = WireProtocol.encodeAck(ack, 0, 0, 0, seq);
+        acker.execute(() -> {
+            Receiver r = receiver;
+            if (r != null)
+                r.onDatagram(ack, length);
+        });
+    }
+
+    @Override
+    public synchronized int receive(byte[] buffer, int timeoutMs) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!handshakeSeen) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0)
+                throw new SocketTimeoutException();
+            try {
+                wait(left);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+        System.arraycopy(reply, 0, buffer, 0, reply.length);
+        return reply.length;
+    }
+
+    @Override
+    public void startReceiving(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void close() {
+        receiver = null;
+        acker.shutdownNow();
+    }
+
+    synchronized int getDatagrams() {
+        return datagrams;
+    }
+
+    synchronized int getBytes() {
+        return bytes;
+    }
+
+    synchronized int getFrames(int type) {
+        return framesByType[type];
+    }
+
+    synchronized double getMotionX() {
+        return motionX;
+    }
+
+    synchronized double getMotionY() {
+        return motionY;
+    }
+
+    /** Latest x, y of an analog source code, from ANALOG or TICK frames. */
+    synchronized float getAnalog(int source, int axis) {
+        return lastAnalog[(source - 1) * 2 + axis];
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReliableLaneTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final ReliableLane lane = new ReliableLane(4);
+    private final List<Integer> resent = new ArrayList<>();
+    private final EventSender.FrameSink sink = (frame, length) -> {
+        WireProtocol.Frame f = new WireProtocol.Frame();
+        assertTrue(WireProtocol.decode(frame, 0, length, f));
+        resent.add(f.sequence);
+    };
+    private final byte[] buf = new byte[WireProtocol.MAX_FRAME_SIZE];
+
+    private void track(int seq, long now) {
+        int length = WireProtocol.encodeButton(buf, 0, seq, 0, WireProtocol.keyCode("W"),
+                WireProtocol.groupCode("keyboard"), false);
+        WireProtocol.setReliable(buf, 0);
+        lane.track(seq, buf, length, now);
+    }
+
+    @Test
+    public void lostRelease_isResentUntilAcked() throws Exception {
+        track(7, 0);
+
+        lane.retransmitDue(ReliableLane.INITIAL_RTO_NANOS - 1, sink);
+        assertTrue(resent.isEmpty());
+
+        lane.retransmitDue(ReliableLane.INITIAL_RTO_NANOS, sink);
+        assertEquals(1, resent.size());
+        assertEquals(7, (int) resent.get(0)); // Same sequence, so the receiver can drop duplicates
+
+        lane.onAck(7, ReliableLane.INITIAL_RTO_NANOS + 5 * MS);
+        lane.retransmitDue(10_000 * MS, sink);
+        assertEquals(1, resent.size());
+        assertEquals(0, lane.getPendingCount());
+    }
+
+    @Test
+    public void resends_backOffAndEventuallyGiveUp() throws Exception {
+        track(1, 0);
+        long now = 0;
+        long lastGap = 0;
+        for (int i = 0; i < ReliableLane.MAX_RETRIES; i++) {
+            now += lane.nanosUntilNextRetransmit(now);
+            long before = now;
+            lane.retransmitDue(now, sink);
+            long gap = lane.nanosUntilNextRetransmit(before);
+            assertTrue(gap >= lastGap);
+            lastGap = gap;
+        }
+        assertEquals(ReliableLane.MAX_RETRIES, resent.size());
+
+        now += lane.nanosUntilNextRetransmit(now);
+        lane.retransmitDue(now, sink);
+        assertEquals(0, lane.getPendingCount());
+        assertEquals(1, lane.getFailedCount());
+        assertEquals(-1, lane.nanosUntilNextRetransmit(now));
+    }
+
+    @Test
+    public void rto_followsMeasuredRoundTrip() {
+        for (int i = 0; i < 20; i++) {
+            track(i, i * 100 * MS);
+            lane.onAck(i, i * 100 * MS + 4 * MS);
+        }
+
+        // Steady 4 ms round trips: srtt ~4 ms, rttvar ~0, clamped to the minimum
+        assertEquals(ReliableLane.MIN_RTO_NANOS, lane.getRtoNanos());
+    }
+
+    @Test
+    public void ackForResentFrame_doesNotSampleRtt() throws Exception {
+        track(3, 0);
+        lane.retransmitDue(ReliableLane.INITIAL_RTO_NANOS, sink);
+        lane.onAck(3, ReliableLane.INITIAL_RTO_NANOS + 1 * MS);
+
+        assertEquals(ReliableLane.INITIAL_RTO_NANOS, lane.getRtoNanos());
+    }
+
+    @Test
+    public void fullLane_givesUpOldest() {
+        for (int i = 0; i < 5; i++) {
+            track(i, i * MS);
+        }
+
+        assertEquals(4, lane.getPendingCount());
+        assertEquals(1, lane.getFailedCount());
+    }
+}
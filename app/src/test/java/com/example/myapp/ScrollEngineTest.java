@@ -0,0 +1,123 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScrollEngineTest {
+
+    private static final long MS = 1_000_000L;
+
+    private int sent = 0;
+    private int messages = 0;
+    private final ScrollEngine engine = new ScrollEngine(units -> {
+        sent += units;
+        messages++;
+    });
+
+    // Drags `distance` px over `durationMs` (a multiple of 8) from time `t`: touches every 8 ms, ticks at 60 Hz
+    private long drag(float from, float distance, long durationMs, long t) {
+        engine.onDown(from, t);
+        long nextTick = t;
+        for (long ms = 8; ms <= durationMs; ms += 8) {
+            engine.onMove(from + distance * ms / durationMs, t + ms * MS);
+            while (nextTick <= t + ms * MS) {
+                engine.tick(nextTick);
+                nextTick += 16 * MS;
+            }
+        }
+        return t + durationMs * MS;
+    }
+
+    private void runTicks(long from, long periodNanos) {
+        for (long t = from; engine.tick(t); t += periodNanos) {
+        }
+    }
+
+    @Test
+    public void slowDrag_sendsEveryPixelWithoutLosingFractions() {
+        engine.onDown(100f, 0);
+        // 0.3 px per touch: each alone is under a notch, and under the old 10 px threshold
+        for (int i = 1; i <= 100; i++) {
+            engine.onMove(100f + 0.3f * i, i * 8 * MS);
+            engine.tick(i * 8 * MS);
+        }
+        engine.onUp(130f, 2000 * MS); // Held still before lifting: no fling
+        engine.tick(2000 * MS);
+
+        assertFalse(engine.isFlinging());
+        // 30 px at 5 px per notch
+        assertEquals(6 * WireProtocol.SCROLL_UNITS_PER_NOTCH, sent, 1);
+    }
+
+    @Test
+    public void fling_coastsAboutVelocityOverFriction() {
+        long up = drag(0f, 96f, 96, 0); // 1000 px/s
+        engine.onUp(96f, up);
+        assertTrue(engine.isFlinging());
+        int dragged = sent;
+        runTicks(up, 16 * MS);
+
+        float coasted = (sent - dragged) / ScrollEngine.UNITS_PER_PIXEL;
+        float expected = (1000f - ScrollEngine.STOP_VELOCITY) / ScrollEngine.FRICTION;
+        assertEquals(expected, coasted, 5f);
+        assertFalse(engine.isFlinging());
+    }
+
+    @Test
+    public void flingDistance_doesNotDependOnTickRate() {
+        long up = drag(0f, -144f, 96, 0);
+        engine.onUp(-144f, up);
+        int start = sent;
+        runTicks(up, 16_666_667L);
+        int at60 = sent - start;
+
+        sent = 0;
+        up = drag(0f, -144f, 96, 10_000 * MS);
+        engine.onUp(-144f, up);
+        start = sent;
+        runTicks(up, 4_166_667L);
+        int at240 = sent - start;
+
+        assertTrue(at60 < 0);
+        // Within a few px; the stop threshold lands on a different tick
+        assertEquals(at60, at240, 3 * ScrollEngine.UNITS_PER_PIXEL);
+    }
+
+    @Test
+    public void pauseBeforeLift_doesNotFling() {
+        long t = drag(0f, 96f, 96, 0);
+        engine.onMove(96f, t + 30 * MS);
+        engine.onUp(96f, t + 80 * MS);
+
+        assertFalse(engine.isFlinging());
+        assertFalse(engine.tick(t + 96 * MS));
+    }
+
+    @Test
+    public void newTouch_stopsTheFling() {
+        long up = drag(0f, 192f, 96, 0);
+        engine.onUp(192f, up);
+        engine.tick(up);
+        engine.tick(up + 16 * MS);
+        int before = sent;
+
+        engine.onDown(50f, up + 20 * MS);
+        assertFalse(engine.isFlinging());
+        engine.tick(up + 32 * MS);
+        assertEquals(before, sent);
+    }
+
+    @Test
+    public void sendsAtMostOncePerTick() {
+        engine.onDown(0f, 0);
+        for (int i = 1; i <= 16; i++) {
+            engine.onMove(i * 2f, i * MS); // 1 kHz touches
+        }
+        assertEquals(0, messages);
+        assertTrue(engine.tick(16 * MS));
+
+        assertEquals(1, messages);
+        assertEquals(32 * (int) ScrollEngine.UNITS_PER_PIXEL, sent);
+    }
+}
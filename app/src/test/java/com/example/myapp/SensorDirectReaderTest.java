@@ -0,0 +1,85 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SensorDirectReaderTest {
+
+    private static final int CAPACITY = 8;
+
+    private final byte[] buf = new byte[SensorDirectReader.REPORT_SIZE * CAPACITY];
+    private final List<float[]> samples = new ArrayList<>();
+    private final SensorDirectReader.Sink sink = (type, x, y, z, t) -> samples.add(new float[] { type, x, y, z, t });
+
+    // Writes report number `counter` the way the sensor hub does: into the next ring slot
+    private void write(long counter, int type, float x, long timestamp) {
+        int off = (int) ((counter - 1) % CAPACITY) * SensorDirectReader.REPORT_SIZE;
+        putInt(off, SensorDirectReader.REPORT_SIZE);
+        putInt(off + SensorDirectReader.OFFSET_TYPE, type);
+        putInt(off + SensorDirectReader.OFFSET_COUNTER, (int) counter);
+        putInt(off + SensorDirectReader.OFFSET_TIMESTAMP, (int) timestamp);
+        putInt(off + SensorDirectReader.OFFSET_TIMESTAMP + 4, (int) (timestamp >>> 32));
+        putInt(off + SensorDirectReader.OFFSET_VALUES, Float.floatToIntBits(x));
+        putInt(off + SensorDirectReader.OFFSET_VALUES + 4, Float.floatToIntBits(-x));
+        putInt(off + SensorDirectReader.OFFSET_VALUES + 8, Float.floatToIntBits(2 * x));
+    }
+
+    private void putInt(int off, int v) {
+        buf[off] = (byte) v;
+        buf[off + 1] = (byte) (v >> 8);
+        buf[off + 2] = (byte) (v >> 16);
+        buf[off + 3] = (byte) (v >> 24);
+    }
+
+    @Test
+    public void drain_deliversNewReportsInOrder() {
+        SensorDirectReader reader = new SensorDirectReader(null);
+        write(1, 4, 0.5f, 5_000_000_000L);
+        write(2, 1, 9.8f, 5_001_000_000L);
+
+        assertEquals(2, reader.drain(buf, CAPACITY, sink));
+        assertEquals(0, reader.drain(buf, CAPACITY, sink)); // Nothing new
+
+        assertEquals(4, samples.get(0)[0], 0f);
+        assertEquals(0.5f, samples.get(0)[1], 0f);
+        assertEquals(-0.5f, samples.get(0)[2], 0f);
+        assertEquals(1.0f, samples.get(0)[3], 0f);
+        assertEquals(5_000_000_000L, (long) samples.get(0)[4], 1000);
+        assertEquals(9.8f, samples.get(1)[1], 0f);
+    }
+
+    @Test
+    public void drain_followsTheRingAcrossWrap() {
+        SensorDirectReader reader = new SensorDirectReader(null);
+        for (int i = 1; i <= 6; i++) {
+            write(i, 4, i, i);
+        }
+        assertEquals(6, reader.drain(buf, CAPACITY, sink));
+        for (int i = 7; i <= 12; i++) {
+            write(i, 4, i, i);
+        }
+
+        assertEquals(6, reader.drain(buf, CAPACITY, sink));
+        for (int i = 0; i < 12; i++) {
+            assertEquals(i + 1, samples.get(i)[1], 0f);
+        }
+        assertEquals(0, reader.getLostCount());
+    }
+
+    @Test
+    public void drain_skipsReportsOverwrittenByTheWriter() {
+        SensorDirectReader reader = new SensorDirectReader(null);
+        for (int i = 1; i <= 11; i++) {
+            write(i, 4, i, i); // Reports 1-3 are overwritten by 9-11
+        }
+
+        assertEquals(8, reader.drain(buf, CAPACITY, sink));
+        assertEquals(3, reader.getLostCount());
+        assertEquals(4f, samples.get(0)[1], 0f);
+        assertEquals(11f, samples.get(7)[1], 0f);
+    }
+}
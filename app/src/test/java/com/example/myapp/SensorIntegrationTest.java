@@ -0,0 +1,88 @@
+package com.example.myapp;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorIntegrationTest {
+
+    private static class Totals implements SensorHelper.SensorCallback {
+        float x, y;
+        int calls;
+
+        @Override
+        public void onMotionDetected(float dx, float dy) {
+            x += dx;
+            y += dy;
+            calls++;
+        }
+
+        @Override
+        public void onTiltDetected(float pitch, float roll) {
+        }
+    }
+
+    // Turns at a constant rate for `seconds`, sampled at `hz`
+    private static Totals turn(int hz, float rateX, float rateZ, float seconds) {
+        SensorHelper helper = new SensorHelper(true);
+        Totals totals = new Totals();
+        helper.setCallback(totals);
+        long t = 1_000_000_000L;
+        helper.onSample(Sensor.TYPE_ACCELEROMETER, 0f, 0f, 9.81f, t);
+        long period = 1_000_000_000L / hz;
+        int samples = Math.round(seconds * hz);
+        for (int i = 0; i <= samples; i++) {
+            helper.onSample(Sensor.TYPE_GYROSCOPE, rateX, 0f, rateZ, t + i * period);
+        }
+        return totals;
+    }
+
+    @Test
+    public void motion_isIndependentOfSampleRate() {
+        // Lying flat and turning about the vertical, consistent with a steady accelerometer
+        Totals at50 = turn(50, 0f, -0.5f, 1f);
+        Totals at400 = turn(400, 0f, -0.5f, 1f);
+
+        // 0.5 rad at 1000 px/rad, within the sub-pixel carry
+        assertEquals(500f, at50.x, 1f);
+        assertEquals(0f, at50.y, 0f);
+        assertEquals(at50.x, at400.x, 1f);
+        assertEquals(0f, at400.y, 0f);
+        assertTrue(at400.calls > at50.calls);
+    }
+
+    @Test
+    public void batchedDelivery_integratesBySampleTime() {
+        SensorHelper helper = new SensorHelper(true);
+        Totals totals = new Totals();
+        helper.setCallback(totals);
+        long t = 1_000_000_000L;
+        helper.onSample(Sensor.TYPE_ACCELEROMETER, 0f, 0f, 9.81f, t);
+        // Uneven spacing, as a FIFO flush or a busy sensor hub produces
+        long[] offsets = { 0, 2_000_000, 3_000_000, 11_000_000, 12_000_000, 30_000_000, 50_000_000 };
+        for (long offset : offsets) {
+            helper.onSample(Sensor.TYPE_GYROSCOPE, 0f, 0f, -1f, t + offset);
+        }
+
+        assertEquals(50f, totals.x, 1f); // 1 rad/s for 50 ms
+    }
+
+    @Test
+    public void timestampGap_isNotIntegrated() {
+        SensorHelper helper = new SensorHelper(true);
+        Totals totals = new Totals();
+        helper.setCallback(totals);
+        long t = 1_000_000_000L;
+        helper.onSample(Sensor.TYPE_ACCELEROMETER, 0f, 0f, 9.81f, t);
+        helper.onSample(Sensor.TYPE_GYROSCOPE, 0f, 0f, -1f, t);
+        helper.onSample(Sensor.TYPE_GYROSCOPE, 0f, 0f, -1f, t + 10_000_000L);
+        helper.onSample(Sensor.TYPE_GYROSCOPE, 0f, 0f, -1f, t + 2_010_000_000L); // Stalled for 2 s
+        helper.onSample(Sensor.TYPE_GYROSCOPE, 0f, 0f, -1f, t + 2_020_000_000L);
+        helper.onSample(Sensor.TYPE_GYROSCOPE, 0f, 0f, -1f, t + 2_020_000_000L); // Duplicate
+
+        assertEquals(1, helper.getGapCount());
+        assertEquals(20f, totals.x, 1f);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorRateStatsTest {
+
+    @Test
+    public void steadySamples_reportRateWithoutJitter() {
+        SensorRateStats stats = new SensorRateStats();
+        for (int i = 0; i < 401; i++) {
+            stats.record(1_000_000_000L + i * 2_500_000L); // 400 Hz
+        }
+
+        assertEquals(400.0, stats.getRateHz(), 1e-6);
+        assertEquals(0, stats.getJitterMicros());
+        assertEquals(2_500, stats.getMaxIntervalMicros());
+    }
+
+    @Test
+    public void unevenSamples_reportJitterAndWorstGap() {
+        SensorRateStats stats = new SensorRateStats();
+        long t = 0;
+        for (int i = 0; i < 1000; i++) {
+            t += i % 2 == 0 ? 4_000_000L : 6_000_000L; // 5 ms +- 1 ms
+            stats.record(t);
+        }
+        assertEquals(1_000, stats.getJitterMicros(), 10);
+
+        t += 50_000_000L; // One stall
+        stats.record(t);
+
+        assertTrue(stats.getJitterMicros() > 1_000);
+        assertEquals(50_000, stats.getMaxIntervalMicros());
+        assertEquals(1001, stats.getCount());
+
+        stats.reset();
+        assertEquals(0.0, stats.getRateHz(), 0);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.myapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs StateSnapshotSender against a minimal receiver over a lossy link and
+ * checks that the receiver always converges on the phone's state.
+ */
+public class StateSnapshotTest {
+
+    private final ControllerState state = new ControllerState();
+    private final WireProtocol.Frame frame = new WireProtocol.Frame();
+    private final Random random = new Random(42);
+    private StateSnapshotSender sender;
+
+    // Receiver side
+    private final Map<Integer, int[]> received = new HashMap<>(); // id -> buttons, axes...
+    private int[] applied = null;
+    private double lossRate = 0;
+    private int lastLength;
+
+    @Before
+    public void setUp() {
+        sender = new StateSnapshotSender(state, (buf, length) -> {
+            lastLength = length;
+            if (random.nextDouble() < lossRate)
+                return;
+            receive(buf, length);
+        });
+    }
+
+    private void receive(byte[] buf, int length) {
+        assertTrue(WireProtocol.decode(buf, 0, length, frame));
+        assertEquals(WireProtocol.TYPE_STATE, frame.type);
+        int[] snapshot;
+        if ((frame.changed & WireProtocol.STATE_KEYFRAME) != 0) {
+            snapshot = new int[1 + WireProtocol.STATE_AXES];
+        } else {
+            int[] base = received.get(frame.group);
+            assertNotNull("delta against a base the receiver never acked", base);
+            snapshot = base.clone();
+        }
+        if ((frame.changed & WireProtocol.STATE_BUTTONS) != 0) {
+            snapshot[0] = frame.buttons;
+        }
+        for (int i = 0; i < WireProtocol.STATE_AXES; i++) {
+            if ((frame.changed & (2 << i)) != 0) {
+                snapshot[1 + i] = frame.axes[i];
+            }
+        }
+        received.put(frame.code, snapshot);
+        applied = snapshot;
+        if (random.nextDouble() >= lossRate) {
+            sender.onAck(frame.code); // The ack can be lost too
+        }
+    }
+
+    private void assertReceiverMatches() {
+        int[] axes = new int[WireProtocol.STATE_AXES];
+        int buttons = state.sample(axes);
+        assertNotNull(applied);
+        assertEquals(buttons, applied[0]);
+        for (int i = 0; i < axes.length; i++) {
+            assertEquals(axes[i], applied[1 + i]);
+        }
+    }
+
+    @Test
+    public void unchangedState_sendsSmallDeltas() throws Exception {
+        state.setButton("CROSS", "action", true);
+        state.setAnalog("left_stick", 0.5f, -0.25f);
+        int keyframe = sender.sendSnapshot(0);
+        int delta = sender.sendSnapshot(16);
+
+        assertEquals(WireProtocol.HEADER_SIZE + 5, delta);
+        assertTrue(delta < keyframe);
+        assertReceiverMatches();
+    }
+
+    @Test
+    public void keyframe_everyInterval() throws Exception {
+        for (int i = 0; i < StateSnapshotSender.KEYFRAME_INTERVAL * 4; i++) {
+            sender.sendSnapshot(i);
+        }
+
+        assertEquals(4, sender.getKeyframesSent());
+    }
+
+    @Test
+    public void lossyLink_converges() throws Exception {
+        lossRate = 0.3;
+        String[] keys = { "UP", "CROSS", "W", "L1" };
+        for (int i = 0; i < 2_000; i++) {
+            if (i % 7 == 0) {
+                state.setButton(keys[random.nextInt(keys.length)], i % 3 == 0 ? "keyboard" : "action",
+                        random.nextBoolean());
+            }
+            state.setAnalog("right_stick", random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1);
+            sender.sendSnapshot(i);
+        }
+
+        // Input stops; a few lossless snapshots later the receiver must be in sync
+        lossRate = 0;
+        sender.sendSnapshot(2_000);
+        assertReceiverMatches();
+    }
+
+    @Test
+    public void keyboardGroup_doesNotAliasDpad() {
+        state.setButton("UP", "dpad", true);
+        state.setButton("UP", "keyboard", true);
+        state.setButton("UP", "keyboard", false);
+
+        int buttons = state.sample(new int[WireProtocol.STATE_AXES]);
+        assertEquals(1 << WireProtocol.buttonBit(WireProtocol.keyCode("UP"), WireProtocol.groupCode("dpad")),
+                buttons);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TouchDispatchLatencyTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void vsyncBuffering_showsUpInTheTail() {
+        TouchDispatchLatency latency = new TouchDispatchLatency();
+        // Touches every 4 ms held until the next 60 Hz frame, then sent 0.5 ms into it
+        long frame = 16_666_667L;
+        for (long t = 0; t < 1000 * MS; t += 4 * MS) {
+            long nextFrame = (t / frame + 1) * frame;
+            latency.record(t, nextFrame + MS / 2);
+        }
+
+        assertTrue(latency.getP50Micros() > 4_000);
+        assertTrue(latency.getP99Micros() > 15_000);
+        assertTrue(latency.getMaxMicros() <= 17_500);
+    }
+
+    @Test
+    public void unbufferedTouches_staySmall() {
+        TouchDispatchLatency latency = new TouchDispatchLatency();
+        for (long t = 0; t < 1000 * MS; t += 4 * MS) {
+            latency.record(t, t + 700_000L);
+        }
+
+        assertEquals(250, latency.getCount());
+        assertEquals(700, latency.getP50Micros(), 25);
+        assertEquals(700, latency.getMaxMicros());
+        assertEquals("touch to send 0.7 / 0.7 / 0.7 ms (250)", latency.toString());
+    }
+
+    @Test
+    public void reset_startsOver() {
+        TouchDispatchLatency latency = new TouchDispatchLatency();
+        latency.record(0, 5 * MS);
+        latency.reset();
+
+        assertEquals(0, latency.getCount());
+        assertEquals("touch to send --", latency.toString());
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TouchPredictorTest {
+
+    private static final long FRAME_NANOS = 1_000_000_000L / 120; // Touch sample rate
+    private static final long HORIZON_NANOS = 16_000_000L; // About one 60 Hz frame
+    private static final int STROKES = 20;
+    private static final long STROKE_NANOS = 300_000_000L;
+    private static final long HOLD_NANOS = 200_000_000L;
+
+    // Finger path: minimum-jerk strokes between random points, each followed by a hold
+    private static final class Path {
+        final float[] fromX = new float[STROKES], fromY = new float[STROKES];
+        final float[] toX = new float[STROKES], toY = new float[STROKES];
+
+        Path(long seed) {
+            Random random = new Random(seed);
+            float x = 500, y = 500;
+            for (int i = 0; i < STROKES; i++) {
+                fromX[i] = x;
+                fromY[i] = y;
+                x = 100 + random.nextFloat() * 800;
+                y = 100 + random.nextFloat() * 800;
+                toX[i] = x;
+                toY[i] = y;
+            }
+        }
+
+        long duration() {
+            return STROKES * (STROKE_NANOS + HOLD_NANOS);
+        }
+
+        // Progress through the current stroke at `t`, 0..1, and which stroke
+        private static int stroke(long t) {
+            return (int) Math.min(STROKES - 1, t / (STROKE_NANOS + HOLD_NANOS));
+        }
+
+        private static double progress(long t) {
+            long within = t - stroke(t) * (STROKE_NANOS + HOLD_NANOS);
+            double s = Math.min(1.0, within / (double) STROKE_NANOS);
+            return s * s * s * (10 - 15 * s + 6 * s * s);
+        }
+
+        boolean isMoving(long t) {
+            return t - stroke(t) * (STROKE_NANOS + HOLD_NANOS) < STROKE_NANOS;
+        }
+
+        float x(long t) {
+            int i = stroke(t);
+            return (float) (fromX[i] + (toX[i] - fromX[i]) * progress(t));
+        }
+
+        float y(long t) {
+            int i = stroke(t);
+            return (float) (fromY[i] + (toY[i] - fromY[i]) * progress(t));
+        }
+    }
+
+    // A touchpad drag along `path` with digitizer noise, as MouseFragment would record it
+    private static byte[] record(Path path, double noisePx) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputTrace.Recorder recorder = new InputTrace.Recorder(bytes);
+        Random random = new Random(21);
+        recorder.touchpad(InputTrace.TOUCH_DOWN, path.x(0), path.y(0), 0L);
+        for (long t = FRAME_NANOS; t <= path.duration(); t += FRAME_NANOS) {
+            recorder.touchpad(InputTrace.TOUCH_MOVE, path.x(t) + (float) (random.nextGaussian() * noisePx),
+                    path.y(t) + (float) (random.nextGaussian() * noisePx), t);
+        }
+        recorder.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void prediction_halvesTheErrorOfSendingTheLastSample() throws IOException {
+        Path path = new Path(4);
+        byte[] trace = record(path, 0.3);
+        TouchPredictor predictor = new TouchPredictor();
+        double[] sums = new double[4]; // Predicted and plain error while moving, then at rest
+        int[] counts = new int[2];
+        float[] worstAtRest = new float[1];
+
+        InputTrace.replay(new ByteArrayInputStream(trace), new InputTrace.Listener() {
+            @Override
+            public void onTouchpad(int action, float x, float y, long timeNanos) {
+                if (action == InputTrace.TOUCH_DOWN)
+                    predictor.reset();
+                predictor.add(x, y, timeNanos);
+                predictor.predict(HORIZON_NANOS);
+                long target = timeNanos + HORIZON_NANOS;
+                if (target > path.duration())
+                    return;
+                double predicted = Math.hypot(x + predictor.getDx() - path.x(target),
+                        y + predictor.getDy() - path.y(target));
+                double plain = Math.hypot(x - path.x(target), y - path.y(target));
+                if (path.isMoving(timeNanos) && path.isMoving(target)) {
+                    sums[0] += predicted;
+                    sums[1] += plain;
+                    counts[0]++;
+                } else if (!path.isMoving(timeNanos - TouchPredictor.WINDOW_NANOS)) {
+                    // Still for a whole window: any offset is noise being extrapolated
+                    sums[2] += predicted;
+                    sums[3] += plain;
+                    counts[1]++;
+                    worstAtRest[0] = Math.max(worstAtRest[0], (float) Math.hypot(predictor.getDx(), predictor.getDy()));
+                }
+            }
+
+            @Override
+            public void onSensor(int type, float x, float y, float z, long timestampNanos) {
+            }
+
+            @Override
+            public void onJoystick(int id, float x, float y, long timeNanos) {
+            }
+
+            @Override
+            public void onJoystickReleased(int id, long timeNanos) {
+            }
+        });
+
+        double moving = sums[0] / counts[0], movingPlain = sums[1] / counts[0];
+        double resting = sums[2] / counts[1], restingPlain = sums[3] / counts[1];
+        assertTrue(moving < movingPlain / 2);
+        // Noise must not become visible wobble when the finger is still
+        assertTrue(resting < restingPlain + 0.5);
+        assertTrue(worstAtRest[0] < 2f);
+    }
+
+    @Test
+    public void steadyLine_isPredictedExactly() {
+        TouchPredictor predictor = new TouchPredictor();
+        assertFalse(predictor.predict(HORIZON_NANOS));
+        for (int i = 0; i < 5; i++) {
+            predictor.add(10f + 2f * i, 20f - i, i * FRAME_NANOS);
+        }
+
+        assertTrue(predictor.predict(FRAME_NANOS * 3));
+        assertEquals(6f, predictor.getDx(), 1e-3f);
+        assertEquals(-3f, predictor.getDy(), 1e-3f);
+    }
+
+    @Test
+    public void deceleratingFinger_isNotPredictedToTurnBack() {
+        TouchPredictor predictor = new TouchPredictor();
+        // Braking hard: 12, 8, 4, 1 px per frame
+        float[] xs = { 0f, 12f, 20f, 24f, 25f };
+        for (int i = 0; i < xs.length; i++) {
+            predictor.add(xs[i], 0f, i * FRAME_NANOS);
+        }
+
+        predictor.predict(HORIZON_NANOS * 2);
+        assertTrue(predictor.getDx() >= 0f);
+    }
+
+    @Test
+    public void tracker_takesBackThePredictionOnLift() throws IOException {
+        Path path = new Path(8);
+        byte[] trace = record(path, 0.3);
+        long[] plain = new long[2];
+        long[] predicted = new long[2];
+        long[] maxLead = new long[1];
+        TouchpadTracker plainTracker = new TouchpadTracker((dx, dy) -> {
+            plain[0] += (long) dx;
+            plain[1] += (long) dy;
+        }, PointerBallistics.ENHANCED);
+        TouchpadTracker predictedTracker = new TouchpadTracker((dx, dy) -> {
+            predicted[0] += (long) dx;
+            predicted[1] += (long) dy;
+        }, PointerBallistics.ENHANCED);
+        predictedTracker.setPredictionNanos(HORIZON_NANOS);
+
+        // Both trackers see the same touches
+        TraceReplayer toPlain = new TraceReplayer(null, plainTracker, null);
+        InputTrace.replay(new ByteArrayInputStream(trace), new TraceReplayer(null, predictedTracker, null) {
+            @Override
+            public void onTouchpad(int action, float x, float y, long timeNanos) {
+                toPlain.onTouchpad(action, x, y, timeNanos);
+                super.onTouchpad(action, x, y, timeNanos);
+                maxLead[0] = Math.max(maxLead[0], Math.abs(predicted[0] - plain[0]) + Math.abs(predicted[1] - plain[1]));
+            }
+        });
+        assertTrue("cursor never led the finger", maxLead[0] > 5);
+
+        long liftTime = path.duration() + FRAME_NANOS;
+        plainTracker.onUp(path.x(liftTime), path.y(liftTime), liftTime);
+        predictedTracker.onUp(path.x(liftTime), path.y(liftTime), liftTime);
+        assertEquals(plain[0], predicted[0]);
+        assertEquals(plain[1], predicted[1]);
+    }
+}
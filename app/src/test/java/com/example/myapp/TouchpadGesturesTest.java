@@ -0,0 +1,314 @@
+package com.example.myapp;
+
+import android.view.MotionEvent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TouchpadGesturesTest {
+
+    private static final long MS = 1_000_000L;
+
+    // What the recognizer reported, cursor moves left out; sums for the analog gestures
+    private final List<String> log = new ArrayList<>();
+    private int cursorMoves = 0;
+    private int vertical = 0;
+    private int horizontal = 0;
+    private int zoom = 0;
+
+    private final TouchpadGestures gestures = new TouchpadGestures(new TouchpadGestures.Listener() {
+        @Override
+        public void onCursorDown(float x, float y, long timeNanos) {
+            log.add("cursor down");
+        }
+
+        @Override
+        public void onCursorMove(float x, float y, long timeNanos) {
+            cursorMoves++;
+        }
+
+        @Override
+        public void onCursorUp(float x, float y, long timeNanos) {
+            log.add("cursor up");
+        }
+
+        @Override
+        public void onClick(String action) {
+            log.add("click " + action);
+        }
+
+        @Override
+        public void onDragButton(boolean pressed) {
+            log.add(pressed ? "press" : "release");
+        }
+
+        @Override
+        public void onScroll(int verticalUnits, int horizontalUnits) {
+            vertical += verticalUnits;
+            horizontal += horizontalUnits;
+        }
+
+        @Override
+        public void onZoom(int units) {
+            zoom += units;
+        }
+
+        @Override
+        public void onSwipe(String direction) {
+            log.add("swipe " + direction);
+        }
+    });
+
+    // Synthetic touch stream: the fingers currently down, in MotionEvent pointer order
+    private final int[] ids = new int[8];
+    private final float[] xs = new float[8];
+    private final float[] ys = new float[8];
+    private int fingers = 0;
+
+    private void down(int id, float x, float y, long ms) {
+        ids[fingers] = id;
+        xs[fingers] = x;
+        ys[fingers] = y;
+        fingers++;
+        int action = fingers == 1 ? MotionEvent.ACTION_DOWN : MotionEvent.ACTION_POINTER_DOWN;
+        gestures.onTouch(action, fingers - 1, fingers, ids, xs, ys, ms * MS);
+    }
+
+    // Moves every finger by (dx, dy), or only finger `id` when it is >= 0
+    private void move(int id, float dx, float dy, long ms) {
+        for (int i = 0; i < fingers; i++) {
+            if (id < 0 || ids[i] == id) {
+                xs[i] += dx;
+                ys[i] += dy;
+            }
+        }
+        gestures.onTouch(MotionEvent.ACTION_MOVE, 0, fingers, ids, xs, ys, ms * MS);
+    }
+
+    private void up(int id, long ms) {
+        int index = 0;
+        while (ids[index] != id)
+            index++;
+        int action = fingers == 1 ? MotionEvent.ACTION_UP : MotionEvent.ACTION_POINTER_UP;
+        gestures.onTouch(action, index, fingers, ids, xs, ys, ms * MS);
+        fingers--;
+        for (int i = index; i < fingers; i++) {
+            ids[i] = ids[i + 1];
+            xs[i] = xs[i + 1];
+            ys[i] = ys[i + 1];
+        }
+    }
+
+    @Test
+    public void tap_clicksOnceNoSecondTapFollows() {
+        down(0, 100f, 100f, 0);
+        move(0, 2f, 1f, 40);
+        up(0, 80);
+        assertTrue(gestures.hasPendingTap());
+
+        gestures.onTimeout(200 * MS);
+        assertFalse(log.contains("click L"));
+        gestures.onTimeout(380 * MS);
+
+        assertFalse(gestures.hasPendingTap());
+        assertEquals(List.of("cursor down", "cursor up", "click L"), log);
+    }
+
+    @Test
+    public void twoTaps_doubleClick() {
+        down(0, 100f, 100f, 0);
+        up(0, 60);
+        down(0, 104f, 98f, 200);
+        up(0, 260);
+        gestures.onTimeout(1000 * MS);
+
+        assertEquals(List.of("cursor down", "cursor up", "click D"), log);
+    }
+
+    @Test
+    public void tapThenTouchAndMove_dragsWithTheButtonHeld() {
+        down(0, 100f, 100f, 0);
+        up(0, 60);
+        down(0, 100f, 100f, 200);
+        for (int i = 1; i <= 10; i++) {
+            move(0, 5f, 0f, 200 + i * 8);
+        }
+        up(0, 300);
+        gestures.onTimeout(1000 * MS);
+
+        // The press goes out before the cursor moves, the release after it stops
+        assertEquals(List.of("cursor down", "cursor up", "press", "cursor down", "cursor up", "release"), log);
+        assertTrue(cursorMoves > 0);
+    }
+
+    @Test
+    public void tapThenTouchAndHold_alsoDrags() {
+        down(0, 100f, 100f, 0);
+        up(0, 60);
+        down(0, 100f, 100f, 200);
+        move(0, 1f, 0f, 200 + TouchpadGestures.TAP_NANOS / MS + 10);
+
+        assertTrue(log.contains("press"));
+        gestures.onTouch(MotionEvent.ACTION_CANCEL, 0, 1, ids, xs, ys, 600 * MS);
+        assertEquals("release", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void dragLock_keepsTheButtonDownUntilATap() {
+        gestures.setDragLock(true);
+        down(0, 100f, 100f, 0);
+        up(0, 60);
+        down(0, 100f, 100f, 200);
+        for (int i = 1; i <= 10; i++) {
+            move(0, 5f, 0f, 200 + i * 8);
+        }
+        up(0, 300);
+        assertTrue(gestures.isDragLocked());
+
+        // Carry on dragging from a new touch, long after any double-tap window
+        down(0, 100f, 400f, 2000);
+        for (int i = 1; i <= 10; i++) {
+            move(0, 0f, -5f, 2000 + i * 8);
+        }
+        up(0, 2100);
+        assertFalse(log.contains("release"));
+
+        down(0, 150f, 300f, 3000);
+        up(0, 3060);
+        gestures.onTimeout(5000 * MS);
+
+        assertFalse(gestures.isDragLocked());
+        assertEquals(List.of("cursor down", "cursor up", "press", "cursor down", "cursor up", "cursor down",
+                "cursor up", "cursor down", "cursor up", "release"), log);
+    }
+
+    @Test
+    public void cancel_releasesALockedDrag() {
+        gestures.setDragLock(true);
+        down(0, 100f, 100f, 0);
+        up(0, 60);
+        down(0, 100f, 100f, 200);
+        move(0, 30f, 0f, 220);
+        up(0, 240);
+
+        gestures.cancel(1000 * MS);
+        assertEquals("release", log.get(log.size() - 1));
+        assertFalse(gestures.isDragLocked());
+    }
+
+    @Test
+    public void oneFingerDrag_onlyMovesTheCursor() {
+        down(0, 100f, 100f, 0);
+        for (int i = 1; i <= 20; i++) {
+            move(0, 4f, 3f, i * 8);
+        }
+        up(0, 170);
+        gestures.onTimeout(1000 * MS);
+
+        assertEquals(20, cursorMoves);
+        assertEquals(List.of("cursor down", "cursor up"), log);
+    }
+
+    @Test
+    public void twoFingers_scrollVerticallyPastTheSlop() {
+        down(0, 100f, 300f, 0);
+        down(1, 200f, 300f, 10);
+        for (int i = 1; i <= 20; i++) {
+            move(-1, 0f, 5f, 10 + i * 8);
+        }
+        up(0, 200);
+        up(1, 205);
+
+        // Decided at 20 px, past the 16 px slop; the remaining 80 px scroll
+        assertEquals(80 * ScrollEngine.UNITS_PER_PIXEL, vertical, 1);
+        assertEquals(0, horizontal);
+        assertEquals(0, zoom);
+        assertEquals(List.of("cursor down", "cursor up"), log); // No right click
+    }
+
+    @Test
+    public void twoFingers_scrollSidewaysWithTheContent() {
+        down(0, 100f, 300f, 0);
+        down(1, 200f, 300f, 10);
+        for (int i = 1; i <= 20; i++) {
+            move(-1, 5f, 0f, 10 + i * 8);
+        }
+
+        // Fingers going right pull the content right: scroll left
+        assertTrue(horizontal < 0);
+        assertEquals(0, vertical);
+    }
+
+    @Test
+    public void pinchOut_zoomsIn() {
+        down(0, 200f, 300f, 0);
+        down(1, 300f, 300f, 10);
+        for (int i = 1; i <= 25; i++) {
+            move(0, -2f, 0f, 10 + i * 8);
+            move(1, 2f, 0f, 10 + i * 8 + 1);
+        }
+
+        // 100 px apart to 200: ln 2 / ln 1.25 notches, less the slop
+        assertTrue(zoom > WireProtocol.SCROLL_UNITS_PER_NOTCH * 2);
+        assertTrue(zoom < WireProtocol.SCROLL_UNITS_PER_NOTCH * Math.log(2) / Math.log(1.25));
+        assertEquals(0, vertical);
+        assertEquals(0, horizontal);
+    }
+
+    @Test
+    public void twoFingerTap_rightClicksOnce() {
+        down(0, 100f, 100f, 0);
+        down(1, 160f, 100f, 15);
+        move(-1, 1f, 1f, 40);
+        up(1, 90);
+        up(0, 95);
+        gestures.onTimeout(1000 * MS);
+
+        assertEquals(List.of("cursor down", "cursor up", "click R"), log);
+    }
+
+    @Test
+    public void threeFingers_swipeOnce() {
+        down(0, 300f, 300f, 0);
+        down(1, 350f, 300f, 5);
+        down(2, 400f, 300f, 10);
+        for (int i = 1; i <= 30; i++) {
+            move(-1, -6f, 1f, 10 + i * 8);
+        }
+        up(0, 300);
+        up(1, 300);
+        up(2, 300);
+
+        assertEquals(List.of("cursor down", "cursor up", "swipe LEFT"), log);
+        assertEquals(0, vertical);
+    }
+
+    @Test
+    public void extraFingers_areIgnored() {
+        for (int id = 0; id < 7; id++) {
+            down(id, 100f + id * 40f, 300f, id);
+        }
+        for (int i = 1; i <= 20; i++) {
+            move(-1, 0f, -8f, 10 + i * 8);
+        }
+        for (int id = 0; id < 7; id++) {
+            up(id, 400 + id);
+        }
+
+        assertEquals(List.of("cursor down", "cursor up", "swipe UP"), log);
+    }
+
+    @Test
+    public void touchAfterTheTapWindow_isANewCursorTouch() {
+        down(0, 100f, 100f, 0);
+        up(0, 60);
+        down(0, 100f, 100f, 60 + TouchpadGestures.DOUBLE_TAP_NANOS / MS + 50);
+
+        // The timeout was not run, so the late touch delivers the click itself
+        assertEquals(List.of("cursor down", "cursor up", "click L", "cursor down"), log);
+    }
+}
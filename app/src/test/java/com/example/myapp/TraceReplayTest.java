@@ -0,0 +1,131 @@
+package com.example.myapp;
+
+import android.hardware.Sensor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays a recorded input trace through SensorHelper, the touchpad and a
+ * joystick listener into NetworkManager, with an in-memory transport in place
+ * of the network, and checks what the receiver would get.
+ */
+public class TraceReplayTest {
+
+    private static final int LEFT_STICK = 1;
+
+    private RecordingTransport transport;
+    private NetworkManager networkManager;
+    private long droppedBefore; // The ring's drop count lives as long as the singleton
+
+    @Before
+    public void setUp() throws Exception {
+        transport = new RecordingTransport();
+        networkManager = NetworkManager.getInstance();
+        networkManager.setTransportFactory(() -> transport);
+        CountDownLatch connected = new CountDownLatch(1);
+        networkManager.connect("127.0.0.1", 5005, new NetworkManager.ConnectionCallback() {
+            @Override
+            public void onSuccess() {
+                connected.countDown();
+            }
+
+            @Override
+            public void onFailure(String error) {
+            }
+        });
+        assertTrue("handshake timed out", connected.await(5, TimeUnit.SECONDS));
+        assertTrue(networkManager.isBinaryProtocol());
+        // The replay runs far faster than real time. Unpaced, that burst would overflow
+        // the event ring, which drops the oldest motion; the scheduler sums it instead.
+        networkManager.setTransmitRate(TransmitScheduler.RATE_250_HZ);
+        droppedBefore = networkManager.getDroppedEventCount();
+    }
+
+    @After
+    public void tearDown() {
+        networkManager.setTransmitRate(0);
+        networkManager.disconnect();
+        networkManager.setTransportFactory(null);
+    }
+
+    // A session: 2 s of turning the phone at 0.5 rad/s, a touchpad swipe and a stick push
+    private static byte[] recordSession() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputTrace.Recorder recorder = new InputTrace.Recorder(bytes);
+        long t = 1_000_000_000L;
+        recorder.sensor(Sensor.TYPE_ACCELEROMETER, 0f, 0f, 9.81f, t);
+        for (int i = 0; i <= 400; i++) { // 200 Hz gyro, 100 Hz accelerometer
+            long ts = t + i * 5_000_000L;
+            recorder.sensor(Sensor.TYPE_GYROSCOPE, 0f, 0f, -0.5f, ts);
+            if (i % 2 == 0)
+                recorder.sensor(Sensor.TYPE_ACCELEROMETER, 0f, 0f, 9.81f, ts + 1_000_000L);
+        }
+        recorder.touchpad(InputTrace.TOUCH_DOWN, 100f, 100f, 0L);
+        for (int i = 1; i <= 50; i++) {
+            recorder.touchpad(InputTrace.TOUCH_MOVE, 100f + 2 * i, 100f - i, i * 8_000_000L);
+        }
+        recorder.touchpad(InputTrace.TOUCH_UP, 200f, 50f, 408_000_000L);
+        for (int i = 1; i <= 10; i++) {
+            recorder.joystick(LEFT_STICK, 0.1f * i, 0f, i * 16_000_000L);
+        }
+        recorder.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void replayedSession_reachesTheReceiver() throws Exception {
+        SensorHelper sensorHelper = new SensorHelper(true);
+        sensorHelper.setCallback(new SensorHelper.SensorCallback() {
+            @Override
+            public void onMotionDetected(float dx, float dy) {
+                networkManager.sendMotion(dx, dy); // As MouseFragment does
+            }
+
+            @Override
+            public void onTiltDetected(float pitch, float roll) {
+            }
+        });
+        TouchpadTracker touchpad = new TouchpadTracker(networkManager::sendMotion, PointerBallistics.LINEAR);
+        JoystickView.JoystickListener joysticks = new JoystickView.JoystickListener() {
+            @Override
+            public void onJoystickMoved(float xPercent, float yPercent, int id) {
+                networkManager.sendAnalog(id == LEFT_STICK ? "left_stick" : "right_stick", xPercent, yPercent);
+            }
+
+            @Override
+            public void onJoystickReleased(int id) {
+                onJoystickMoved(0, 0, id);
+            }
+        };
+
+        byte[] trace = recordSession();
+        long records = InputTrace.replay(new ByteArrayInputStream(trace),
+                new TraceReplayer(sensorHelper, touchpad, joysticks));
+
+        // Gyro: 1 rad at 1000 px/rad. Touchpad: (100, -50) at 1.5x.
+        double expectedX = 1000 + 150, expectedY = -75;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Math.abs(transport.getMotionX() - expectedX) > 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50); // Let the last analog frame through
+
+        assertEquals(1 + 401 + 201 + 52 + 10, records);
+        assertEquals(expectedX, transport.getMotionX(), 2);
+        assertEquals(expectedY, transport.getMotionY(), 2);
+        assertEquals(1.0f, transport.getAnalog(WireProtocol.sourceCode("left_stick"), 0), 1e-6f);
+        // Coalescing must keep the datagram count at or below one per input event
+        assertTrue(transport.getDatagrams() <= records);
+        assertEquals(droppedBefore, networkManager.getDroppedEventCount());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.myapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trip latency and throughput of both transports against a local echo
+ * receiver on the loopback interface. Run with -Dtransport.stats=true to print
+ * the numbers so the two can be compared; the assertions only check that
+ * nothing was lost.
+ */
+public class TransportLoopbackTest {
+
+    private static final int PINGS = 2_000;
+    private static final int BURST_FRAMES = 20_000;
+    private static final int WINDOW = 32; // Frames in flight, small enough that loopback never drops
+    private static final long TIMEOUT_NANOS = 5_000_000_000L;
+
+    private DatagramSocket echo;
+    private Thread echoThread;
+    private final AtomicInteger received = new AtomicInteger();
+    private final byte[] frame = new byte[WireProtocol.MAX_FRAME_SIZE];
+
+    @Before
+    public void setUp() throws Exception {
+        echo = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        echoThread = new Thread(() -> {
+            byte[] buf = new byte[Transport.MAX_DATAGRAM_SIZE];
+            DatagramPacket packet = new DatagramPacket(buf, buf.length);
+            try {
+                while (!echo.isClosed()) {
+                    packet.setLength(buf.length);
+                    echo.receive(packet);
+                    echo.send(packet);
+                }
+            } catch (Exception ignored) {
+                // Socket closed
+            }
+        });
+        echoThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        echo.close();
+        echoThread.join(1000);
+    }
+
+    @Test
+    public void datagramSocket_loopback() throws Exception {
+        measure("DatagramSocket", new DatagramSocketTransport());
+    }
+
+    @Test
+    public void nio_loopback() throws Exception {
+        measure("NIO", new NioTransport());
+    }
+
+    @Test
+    public void nio_receiveTimesOut() throws Exception {
+        NioTransport transport = new NioTransport();
+        DatagramSocket silent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        try {
+            transport.open(InetAddress.getLoopbackAddress(), silent.getLocalPort());
+            transport.receive(new byte[16], 50);
+            fail("expected a timeout");
+        } catch (java.net.SocketTimeoutException expected) {
+            // Nothing was sent to us
+        } finally {
+            transport.close();
+            silent.close();
+        }
+    }
+
+    private void measure(String name, Transport transport) throws Exception {
+        transport.open(InetAddress.getLoopbackAddress(), echo.getLocalPort());
+        try {
+            int length = WireProtocol.encodeMotion(frame, 0, 1, 0, 1f, -1f);
+
+            // Handshake-style blocking receive before the receive thread starts
+            transport.send(frame, 0, length);
+            assertEquals(length, transport.receive(new byte[Transport.MAX_DATAGRAM_SIZE], 2000));
+
+            transport.startReceiving((data, len) -> received.incrementAndGet());
+
+            long[] rtt = new long[PINGS];
+            for (int i = 0; i < PINGS; i++) {
+                int expected = received.get() + 1;
+                long start = System.nanoTime();
+                transport.send(frame, 0, length);
+                awaitReceived(expected);
+                rtt[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(rtt);
+
+            received.set(0);
+            long start = System.nanoTime();
+            for (int sent = 0; sent < BURST_FRAMES; sent++) {
+                awaitReceived(sent - WINDOW);
+                transport.send(frame, 0, length);
+            }
+            awaitReceived(BURST_FRAMES);
+            long elapsed = System.nanoTime() - start;
+
+            if (Boolean.getBoolean("transport.stats"))
+                System.out.printf("%s: rtt p50 %d us, p99 %d us, %d frames/s%n", name,
+                        rtt[PINGS / 2] / 1000, rtt[PINGS * 99 / 100] / 1000,
+                        BURST_FRAMES * 1_000_000_000L / elapsed);
+            assertEquals(BURST_FRAMES, received.get());
+        } finally {
+            transport.close();
+        }
+    }
+
+    private void awaitReceived(int count) {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (received.get() < count) {
+            if (System.nanoTime() - deadline > 0)
+                fail("echo timed out at " + received.get() + " of " + count);
+            Thread.yield();
+        }
+    }
+}
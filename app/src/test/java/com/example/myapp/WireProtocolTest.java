@@ -0,0 +1,242 @@
+package com.example.myapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WireProtocolTest {
+
+    private final byte[] buf = new byte[WireProtocol.MAX_FRAME_SIZE];
+    private final WireProtocol.Frame frame = new WireProtocol.Frame();
+
+    @Test
+    public void motion_roundTrip() {
+        int len = WireProtocol.encodeMotion(buf, 0, 42, 123456L, 3.25f, -7.5f);
+
+        assertEquals(WireProtocol.HEADER_SIZE + 8, len);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_MOTION, frame.type);
+        assertEquals(42, frame.sequence);
+        assertEquals(123456L, frame.timeMs);
+        assertEquals(3.25f, frame.x, 0f);
+        assertEquals(-7.5f, frame.y, 0f);
+    }
+
+    @Test
+    public void click_roundTrip() {
+        int len = WireProtocol.encodeClick(buf, 0, 1, 0, WireProtocol.clickCode("R"));
+
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_CLICK, frame.type);
+        assertEquals("R", WireProtocol.clickName(frame.code));
+    }
+
+    @Test
+    public void scroll_roundTripAndClamp() {
+        int len = WireProtocol.encodeScroll(buf, 0, 2, 0, -12);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(-12, frame.amount);
+
+        len = WireProtocol.encodeScroll(buf, 0, 3, 0, 100000);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(Short.MAX_VALUE, frame.amount);
+    }
+
+    @Test
+    public void smoothScroll_roundTripAndClamp() {
+        int len = WireProtocol.encodeSmoothScroll(buf, 0, 2, 0, -37);
+        assertEquals(WireProtocol.HEADER_SIZE + 2, len);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_SMOOTH_SCROLL, frame.type);
+        assertEquals(-37, frame.amount);
+
+        len = WireProtocol.encodeSmoothScroll(buf, 0, 3, 0, -100000);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(Short.MIN_VALUE, frame.amount);
+    }
+
+    @Test
+    public void key_roundTrip() {
+        int len = WireProtocol.encodeKey(buf, 0, 4, 0, WireProtocol.keyCode("SELECT"));
+
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_KEY, frame.type);
+        assertEquals("SELECT", WireProtocol.keyName(frame.code));
+    }
+
+    @Test
+    public void button_roundTrip() {
+        int len = WireProtocol.encodeButton(buf, 0, 5, 99, WireProtocol.keyCode("CROSS"),
+                WireProtocol.groupCode("action"), true);
+
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_BUTTON, frame.type);
+        assertEquals("CROSS", WireProtocol.keyName(frame.code));
+        assertEquals("action", WireProtocol.groupName(frame.group));
+        assertTrue(frame.pressed);
+
+        len = WireProtocol.encodeButton(buf, 0, 6, 99, WireProtocol.keyCode("W"),
+                WireProtocol.groupCode("keyboard"), false);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertFalse(frame.pressed);
+    }
+
+    @Test
+    public void gestures_roundTrip() {
+        int len = WireProtocol.encodeHorizontalScroll(buf, 0, 7, 0, -250);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_HSCROLL, frame.type);
+        assertEquals(-250, frame.amount);
+
+        len = WireProtocol.encodeZoom(buf, 0, 8, 0, 40);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_ZOOM, frame.type);
+        assertEquals(40, frame.amount);
+
+        len = WireProtocol.encodeSwipe(buf, 0, 9, 0, WireProtocol.swipeCode("RIGHT"));
+        assertEquals(WireProtocol.HEADER_SIZE + 1, len);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_SWIPE, frame.type);
+        assertEquals("RIGHT", WireProtocol.swipeName(frame.code));
+
+        len = WireProtocol.encodeMouseButton(buf, 0, 10, 0, WireProtocol.clickCode("L"), true);
+        assertEquals(WireProtocol.HEADER_SIZE + 2, len);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_MOUSE_BUTTON, frame.type);
+        assertEquals("L", WireProtocol.clickName(frame.code));
+        assertTrue(frame.pressed);
+    }
+
+    @Test
+    public void analog_roundTrip() {
+        int len = WireProtocol.encodeAnalog(buf, 0, 7, 0, WireProtocol.sourceCode("tilt"), -0.5f, 1.0f);
+
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_ANALOG, frame.type);
+        assertEquals("tilt", WireProtocol.sourceName(frame.code));
+        assertEquals(-0.5f, frame.x, 0f);
+        assertEquals(1.0f, frame.y, 0f);
+    }
+
+    @Test
+    public void tick_roundTrip() {
+        float[] analog = { 0.1f, 0.2f, -0.3f, -0.4f, 0.5f, 0.6f };
+        int tilt = WireProtocol.sourceCode("tilt");
+        int mask = WireProtocol.TICK_MOTION | (1 << tilt);
+        int len = WireProtocol.encodeTick(buf, 0, 8, 16, mask, 4f, -2f, analog);
+
+        assertTrue(len <= WireProtocol.MAX_FRAME_SIZE);
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_TICK, frame.type);
+        assertEquals(4f, frame.x, 0f);
+        assertEquals(-2f, frame.y, 0f);
+        assertTrue(WireProtocol.tickHasSource(frame.code, tilt));
+        assertFalse(WireProtocol.tickHasSource(frame.code, WireProtocol.sourceCode("left_stick")));
+        assertArrayEquals(analog, frame.analog, 0f);
+    }
+
+    @Test
+    public void ping_roundTrip() {
+        long sendNanos = 0x0123_4567_89AB_CDEFL;
+        int len = WireProtocol.encodePing(buf, 0, 10, 0, 77, sendNanos);
+
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_PING, frame.type);
+        assertEquals(77, frame.code);
+        assertEquals(sendNanos, frame.probeNanos);
+
+        // The receiver answers by rewriting the type byte
+        buf[2] = WireProtocol.TYPE_PONG;
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_PONG, frame.type);
+        assertEquals(sendNanos, frame.probeNanos);
+    }
+
+    @Test
+    public void batch_roundTrip() {
+        byte[] batch = new byte[WireProtocol.MAX_BATCH_SIZE];
+        int len = WireProtocol.beginBatch(batch, 0, 9, 500);
+        int frameLen = WireProtocol.encodeAnalog(buf, 0, 0, 0, WireProtocol.sourceCode("left_stick"), 0.75f, -1f);
+        len = WireProtocol.appendToBatch(batch, 0, len, buf, 0, frameLen);
+        frameLen = WireProtocol.encodeButton(buf, 0, 0, 0, WireProtocol.keyCode("W"),
+                WireProtocol.groupCode("keyboard"), true);
+        len = WireProtocol.appendToBatch(batch, 0, len, buf, 0, frameLen);
+
+        assertTrue(WireProtocol.decode(batch, 0, len, frame));
+        assertEquals(WireProtocol.TYPE_BATCH, frame.type);
+        assertEquals(9, frame.sequence);
+        assertEquals(2, frame.code);
+
+        int p = WireProtocol.decodeBatchEntry(batch, WireProtocol.BATCH_ENTRIES_OFFSET, len, frame);
+        assertEquals(WireProtocol.TYPE_ANALOG, frame.type);
+        assertEquals(0.75f, frame.x, 0f);
+        assertEquals(500L, frame.timeMs);
+
+        p = WireProtocol.decodeBatchEntry(batch, p, len, frame);
+        assertEquals(len, p);
+        assertEquals(WireProtocol.TYPE_BUTTON, frame.type);
+        assertEquals("W", WireProtocol.keyName(frame.code));
+        assertTrue(frame.pressed);
+    }
+
+    @Test
+    public void batch_rejectsEntriesPastMaxSize() {
+        byte[] batch = new byte[WireProtocol.MAX_BATCH_SIZE];
+        int len = WireProtocol.beginBatch(batch, 0, 1, 0);
+        int frameLen = WireProtocol.encodeMotion(buf, 0, 0, 0, 1f, 1f);
+        int entries = 0;
+        int next;
+        while ((next = WireProtocol.appendToBatch(batch, 0, len, buf, 0, frameLen)) > 0) {
+            len = next;
+            entries++;
+        }
+
+        assertTrue(len <= WireProtocol.MAX_BATCH_SIZE);
+        assertEquals((WireProtocol.MAX_BATCH_SIZE - WireProtocol.BATCH_ENTRIES_OFFSET) / 9, entries);
+        assertEquals(-1, WireProtocol.decodeBatchEntry(batch, len - 3, len, frame));
+    }
+
+    @Test
+    public void encode_atOffset() {
+        byte[] big = new byte[64];
+        int len = WireProtocol.encodeMotion(big, 10, 8, 0, 1f, 2f);
+
+        assertTrue(WireProtocol.decode(big, 10, len, frame));
+        assertEquals(1f, frame.x, 0f);
+    }
+
+    @Test
+    public void sequenceAndTime_wrap() {
+        int len = WireProtocol.encodeMotion(buf, 0, 0x1FFFF, 0x1_0000_0005L, 0f, 0f);
+
+        assertTrue(WireProtocol.decode(buf, 0, len, frame));
+        assertEquals(0xFFFF, frame.sequence);
+        assertEquals(5L, frame.timeMs);
+    }
+
+    @Test
+    public void decode_rejectsJsonAndTruncatedFrames() {
+        byte[] json = "{\"type\":\"mouse_motion\"}".getBytes();
+        assertFalse(WireProtocol.decode(json, 0, json.length, frame));
+
+        int len = WireProtocol.encodeMotion(buf, 0, 1, 0, 1f, 1f);
+        assertFalse(WireProtocol.decode(buf, 0, len - 1, frame));
+        assertFalse(WireProtocol.decode(buf, 0, 3, frame));
+    }
+
+    @Test
+    public void decode_rejectsUnknownVersion() {
+        int len = WireProtocol.encodeMotion(buf, 0, 1, 0, 1f, 1f);
+        buf[1] = (byte) (WireProtocol.VERSION + 1);
+
+        assertFalse(WireProtocol.decode(buf, 0, len, frame));
+    }
+
+    @Test
+    public void unknownNames_mapToZero() {
+        assertEquals(0, WireProtocol.keyCode("F13"));
+        assertEquals(0, WireProtocol.sourceCode(null));
+        assertNull(WireProtocol.keyName(0));
+        assertNull(WireProtocol.keyName(WireProtocol.KEYS.length + 1));
+    }
+}
@@ -1,5 +1,7 @@
 import socket
 import json
+import struct
+import sys
 import pyautogui
 import pynput
 import threading
@@ -20,6 +22,23 @@ running = True
 keyboard = pynput.keyboard.Controller()
 mouse = pynput.mouse.Controller()
 
+MOUSE_BUTTONS = {"L": pynput.mouse.Button.left, "R": pynput.mouse.Button.right}
+
+# Three-finger swipes: the fingers pull the next desktop in, up shows all windows, down the desktop
+Key = pynput.keyboard.Key
+if sys.platform == "win32":
+    SWIPE_KEYS = {"LEFT": [Key.ctrl, Key.cmd, Key.right], "RIGHT": [Key.ctrl, Key.cmd, Key.left],
+                  "UP": [Key.cmd, Key.tab], "DOWN": [Key.cmd, 'd']}
+    ZOOM_MODIFIER = Key.ctrl
+elif sys.platform == "darwin":
+    SWIPE_KEYS = {"LEFT": [Key.ctrl, Key.right], "RIGHT": [Key.ctrl, Key.left],
+                  "UP": [Key.ctrl, Key.up], "DOWN": [Key.f11]}
+    ZOOM_MODIFIER = Key.cmd
+else:
+    SWIPE_KEYS = {"LEFT": [Key.ctrl, Key.alt, Key.right], "RIGHT": [Key.ctrl, Key.alt, Key.left],
+                  "UP": [Key.cmd], "DOWN": [Key.ctrl, Key.alt, 'd']}
+    ZOOM_MODIFIER = Key.ctrl
+
 # Key Mappings
 BUTTON_MAP = {
     "UP": pynput.keyboard.Key.up,
@@ -36,11 +55,44 @@ BUTTON_MAP = {
     "R1": 'e'
 }
 
+# Binary protocol (see WireProtocol.java)
+# Header: magic u8, version u8, type u8, seq u16, time_ms u32 (big-endian)
+PROTO_MAGIC = 0xA7
+PROTO_VERSION = 1
+HEADER = struct.Struct(">BBBHI")
+
+CLICK_ACTIONS = ["L", "R", "D"]
+KEYS = ["UP", "DOWN", "LEFT", "RIGHT", "CROSS", "CIRCLE", "TRIANGLE", "SQUARE",
+        "START", "SELECT", "L1", "R1", "W", "A", "S", "D"]
+GROUPS = ["dpad", "action", "shoulder", "system", "keyboard"]
+SOURCES = ["left_stick", "right_stick", "tilt"]
+FLAG_RELIABLE = 0x80  # Type high bit: acknowledge this frame with TYPE_ACK
+TYPE_ACK = 0x0B
+TYPE_STATE = 0x0C
+TYPE_STATE_ACK = 0x0D
+TYPE_SMOOTH_SCROLL = 0x0E
+TYPE_HSCROLL = 0x0F
+TYPE_ZOOM = 0x10
+TYPE_SWIPE = 0x11
+TYPE_MOUSE_BUTTON = 0x12
+SCROLL_UNITS_PER_NOTCH = 120  # Smooth scroll, horizontal scroll and zoom amounts, as Windows' WHEEL_DELTA
+SWIPES = ["LEFT", "RIGHT", "UP", "DOWN"]
+STATE_AXIS_SCALE = 1000.0
+STATE_HISTORY = 64  # Snapshots kept as delta bases, at least as many as the app keeps
+STATS_INTERVAL = 10  # Seconds between loss/reorder reports
+# Payload size per message type, needed to walk the entries of a batch
+PAYLOAD_SIZES = {0x01: 8, 0x02: 1, 0x03: 2, 0x04: 1, 0x05: 3, 0x06: 9, 0x07: 9 + 8 * len(SOURCES),
+                 TYPE_SMOOTH_SCROLL: 2, TYPE_HSCROLL: 2, TYPE_ZOOM: 2, TYPE_SWIPE: 1, TYPE_MOUSE_BUTTON: 2}
+
 print(f"Listening on {UDP_PORT}...")
 
 sock = socket.socket(socket.AF_INET, socket.SOCK_DGRAM)
 sock.bind((UDP_IP, UDP_PORT))
 
+# Host key -> controller buttons holding it down, as (is keyboard group, key name): the same
+# key in the keyboard group and on the controller map to one host key and must not release each other
+held_buttons = {}
+
 def handle_button(data):
     key_name = data.get("key")
     action = data.get("action")
@@ -50,10 +102,16 @@ def handle_button(data):
         print(f"Unknown key: {key_name}")
         return
 
+    holders = held_buttons.setdefault(key, set())
+    button = (data.get("group") == "keyboard", key_name)
     if action == "PRESS":
-        keyboard.press(key)
+        if not holders:
+            keyboard.press(key)
+        holders.add(button)
     elif action == "RELEASE":
-        keyboard.release(key)
+        holders.discard(button)
+        if not holders:
+            keyboard.release(key)
 
 def handle_analog(data):
     source = data.get("source")
@@ -110,11 +168,70 @@ def handle_mouse_click(data):
         mouse.click(pynput.mouse.Button.left)
     elif action == "R":
         mouse.click(pynput.mouse.Button.right)
+    elif action == "D":
+        mouse.click(pynput.mouse.Button.left, 2)
 
 def handle_mouse_scroll(data):
     amount = data.get("amount", 0)
     mouse.scroll(0, amount)
 
+scroll_unit_remainders = {"vertical": 0, "horizontal": 0, "zoom": 0}
+
+def scroll_units(axis, units):
+    # Windows takes fractions of a notch; elsewhere pynput scrolls whole notches, so carry the rest
+    if sys.platform == "win32":
+        notches = units / SCROLL_UNITS_PER_NOTCH
+    else:
+        scroll_unit_remainders[axis] += units
+        notches = int(scroll_unit_remainders[axis] / SCROLL_UNITS_PER_NOTCH)
+        scroll_unit_remainders[axis] -= notches * SCROLL_UNITS_PER_NOTCH
+        if not notches:
+            return
+    if axis == "horizontal":
+        mouse.scroll(notches, 0)
+    elif axis == "zoom":
+        with keyboard.pressed(ZOOM_MODIFIER):
+            mouse.scroll(0, notches)
+    else:
+        mouse.scroll(0, notches)
+
+def handle_smooth_scroll(data):
+    scroll_units("vertical", data.get("units", 0))
+
+def handle_horizontal_scroll(data):
+    scroll_units("horizontal", data.get("units", 0))
+
+def handle_zoom(data):
+    scroll_units("zoom", data.get("units", 0))
+
+def handle_swipe(data):
+    keys = SWIPE_KEYS.get(data.get("direction"))
+    if not keys:
+        return
+    for key in keys:
+        keyboard.press(key)
+    for key in reversed(keys):
+        keyboard.release(key)
+
+pressed_mouse_buttons = set()
+
+def handle_mouse_button(data):
+    button = MOUSE_BUTTONS.get(data.get("button"))
+    if button is None:
+        return
+    if data.get("action") == "PRESS":
+        pressed_mouse_buttons.add(button)
+        mouse.press(button)
+    else:
+        pressed_mouse_buttons.discard(button)
+        mouse.release(button)
+
+def release_mouse_buttons():
+    # A new session must not inherit a drag the last one never finished
+    for button in list(pressed_mouse_buttons):
+        mouse.release(button)
+    pressed_mouse_buttons.clear()
+
 def handle_keyboard(data):
     key_name = data.get("key")
     # Mapping for simple keys or look up in BUTTON_MAP if appropriate
@@ -133,6 +250,213 @@ def handle_keyboard(data):
 
 
 
+def lookup(table, code):
+    if 1 <= code <= len(table):
+        return table[code - 1]
+    return None
+
+class SequenceTracker:
+    """Per-session loss, reordering and duplicate counters over the 16-bit header sequence."""
+    WINDOW = 64
+
+    def __init__(self):
+        self.reset()
+
+    def reset(self):
+        self.highest = None
+        self.seen = 0  # Bit i set: highest - i was received
+        self.received = 0
+        self.lost = 0  # Gaps that have not been filled (yet)
+        self.reordered = 0  # Arrived after a higher sequence number, incl. resends
+        self.duplicates = 0
+
+    def track(self, seq):
+        """Returns "new", "late" (older than the highest seen) or "duplicate"."""
+        if self.highest is None:
+            # Nothing before the first datagram belongs to this session
+            self.highest, self.seen = seq, (1 << self.WINDOW) - 1
+            self.received += 1
+            return "new"
+        ahead = (seq - self.highest) & 0xFFFF
+        if 0 < ahead < 0x8000:
+            self.lost += ahead - 1
+            self.seen = ((self.seen << ahead) | 1) & ((1 << self.WINDOW) - 1)
+            self.highest = seq
+            self.received += 1
+            return "new"
+        behind = (self.highest - seq) & 0xFFFF
+        if behind >= self.WINDOW or self.seen & (1 << behind):
+            self.duplicates += 1
+            return "duplicate"
+        self.seen |= 1 << behind
+        self.received += 1
+        self.reordered += 1
+        self.lost -= 1
+        return "late"
+
+    def summary(self):
+        total = self.received + self.lost
+        loss = 100.0 * self.lost / total if total else 0.0
+        return (f"Packets: {self.received} received, {self.lost} lost ({loss:.2f}%), "
+                f"{self.reordered} reordered, {self.duplicates} duplicates")
+
+
+seq_tracker = SequenceTracker()
+
+
+class SnapshotReceiver:
+    """Decodes delta-encoded controller snapshots and applies the newest one."""
+    AXES = 2 * len(SOURCES)
+
+    def __init__(self):
+        self.reset()
+
+    def reset(self):
+        self.history = {}  # id -> (buttons, axes) as received
+        self.latest = None
+        self.buttons = 0
+        self.axes = (0,) * self.AXES
+
+    def receive(self, data, p):
+        """Returns the snapshot id to acknowledge, or None if it could not be decoded."""
+        snap_id, base, changed = struct.unpack_from(">HHB", data, p)
+        p += 5
+        if changed & 0x80:  # keyframe
+            buttons, axes = 0, [0] * self.AXES
+        elif base in self.history:
+            buttons, axes = self.history[base][0], list(self.history[base][1])
+        else:
+            return None  # Base already dropped; the next keyframe resyncs us
+        if changed & 1:
+            (buttons,) = struct.unpack_from(">I", data, p)
+            p += 4
+        for i in range(self.AXES):
+            if changed & (2 << i):
+                (axes[i],) = struct.unpack_from(">h", data, p)
+                p += 2
+
+        self.history[snap_id] = (buttons, tuple(axes))
+        while len(self.history) > STATE_HISTORY:
+            del self.history[next(iter(self.history))]
+        ahead = (snap_id - self.latest) & 0xFFFF if self.latest is not None else 1
+        if 0 < ahead < 0x8000:
+            self.apply(buttons, tuple(axes))
+            self.latest = snap_id
+        return snap_id
+
+    def apply(self, buttons, axes):
+        flipped = buttons ^ self.buttons
+        for bit in range(32):
+            if flipped & (1 << bit):
+                # Bits 16..31 are the keyboard group, as WireProtocol.buttonBit lays them out
+                handle_button({"key": KEYS[bit % 16],
+                               "group": "keyboard" if bit >= 16 else None,
+                               "action": "PRESS" if buttons & (1 << bit) else "RELEASE"})
+        for code, source in enumerate(SOURCES, start=1):
+            i = 2 * code - 2
+            if axes[i:i + 2] != self.axes[i:i + 2]:
+                handle_analog({"source": source,
+                               "x": axes[i] / STATE_AXIS_SCALE, "y": axes[i + 1] / STATE_AXIS_SCALE})
+        self.buttons, self.axes = buttons, axes
+
+
+snapshots = SnapshotReceiver()
+
+
+def handle_binary(data, addr):
+    if len(data) < HEADER.size:
+        return
+    magic, version, msg_type, seq, time_ms = HEADER.unpack_from(data, 0)
+    if version != PROTO_VERSION:
+        print(f"Unsupported protocol version {version}")
+        return
+    p = HEADER.size
+
+    if msg_type == 0x09:    # ping: echo it straight back as a pong for the RTT probe
+        sock.sendto(data[:2] + bytes([0x0A]) + data[3:], addr)
+        return
+    if msg_type == TYPE_STATE:  # controller snapshot, has its own id space
+        snap_id = snapshots.receive(data, p)
+        if snap_id is not None:
+            sock.sendto(HEADER.pack(PROTO_MAGIC, PROTO_VERSION, TYPE_STATE_ACK, 0, 0) + struct.pack(">H", snap_id), addr)
+        return
+
+    reliable = msg_type & FLAG_RELIABLE
+    msg_type &= ~FLAG_RELIABLE
+    if reliable:
+        # Ack duplicates too: the first ack may have been the one that got lost
+        sock.sendto(HEADER.pack(PROTO_MAGIC, PROTO_VERSION, TYPE_ACK, 0, 0) + struct.pack(">H", seq), addr)
+    status = seq_tracker.track(seq)
+    if status == "duplicate":
+        return
+    # A late datagram's motion/analog is older than what we already applied: keep only its edges
+    stale = status == "late"
+
+    if msg_type == 0x08:    # batch: count, then (type, payload) per entry
+        count = data[p]
+        p += 1
+        for _ in range(count):
+            entry_type = data[p] & ~FLAG_RELIABLE if p < len(data) else None
+            size = PAYLOAD_SIZES.get(entry_type)
+            if size is None or p + 1 + size > len(data):
+                print("Malformed batch")
+                return
+            if not stale or data[p] & FLAG_RELIABLE:
+                handle_binary_message(entry_type, data, p + 1)
+            p += 1 + size
+    elif not stale or reliable:
+        handle_binary_message(msg_type, data, p)
+
+
+def handle_binary_message(msg_type, data, p):
+    if msg_type == 0x01:    # mouse_motion
+        dx, dy = struct.unpack_from(">ff", data, p)
+        handle_mouse_motion({"dx": dx, "dy": dy})
+    elif msg_type == 0x02:  # mouse_click
+        handle_mouse_click({"action": lookup(CLICK_ACTIONS, data[p])})
+    elif msg_type == 0x03:  # mouse_scroll
+        (amount,) = struct.unpack_from(">h", data, p)
+        handle_mouse_scroll({"amount": amount})
+    elif msg_type == TYPE_SMOOTH_SCROLL:
+        (units,) = struct.unpack_from(">h", data, p)
+        handle_smooth_scroll({"units": units})
+    elif msg_type == TYPE_HSCROLL:
+        (units,) = struct.unpack_from(">h", data, p)
+        handle_horizontal_scroll({"units": units})
+    elif msg_type == TYPE_ZOOM:
+        (units,) = struct.unpack_from(">h", data, p)
+        handle_zoom({"units": units})
+    elif msg_type == TYPE_SWIPE:
+        handle_swipe({"direction": lookup(SWIPES, data[p])})
+    elif msg_type == TYPE_MOUSE_BUTTON:
+        handle_mouse_button({
+            "button": lookup(CLICK_ACTIONS, data[p]),
+            "action": "PRESS" if data[p + 1] else "RELEASE",
+        })
+    elif msg_type == 0x04:  # keyboard
+        handle_keyboard({"key": lookup(KEYS, data[p])})
+    elif msg_type == 0x05:  # button
+        handle_button({
+            "key": lookup(KEYS, data[p]),
+            "group": lookup(GROUPS, data[p + 1]),
+            "action": "PRESS" if data[p + 2] else "RELEASE",
+        })
+    elif msg_type == 0x06:  # analog
+        x, y = struct.unpack_from(">ff", data, p + 1)
+        handle_analog({"source": lookup(SOURCES, data[p]), "x": x, "y": y})
+    elif msg_type == 0x07:  # tick: motion since last tick + latest analog per source
+        mask = data[p]
+        dx, dy = struct.unpack_from(">ff", data, p + 1)
+        analog = struct.unpack_from(">" + "f" * (2 * len(SOURCES)), data, p + 9)
+        if mask & 1:
+            handle_mouse_motion({"dx": dx, "dy": dy})
+        for code, source in enumerate(SOURCES, start=1):
+            if mask & (1 << code):
+                handle_analog({"source": source, "x": analog[2 * code - 2], "y": analog[2 * code - 1]})
+    else:
+        print(f"Unknown binary message type {msg_type}")
+
+
 def motion_loop():
     global joystick_velocity_x, joystick_velocity_y, running
     while running:
@@ -146,13 +470,27 @@ def motion_loop():
                 mouse.move(dx, dy)
         time.sleep(0.016) # ~60Hz
 
+def stats_loop():
+    last_received = 0
+    while running:
+        time.sleep(STATS_INTERVAL)
+        if seq_tracker.received != last_received:
+            last_received = seq_tracker.received
+            print(seq_tracker.summary())
+
 # Start motion thread
 t = threading.Thread(target=motion_loop)
 t.start()
+threading.Thread(target=stats_loop, daemon=True).start()
 
 while True:
     try:
         data, addr = sock.recvfrom(1024)
+
+        if data and data[0] == PROTO_MAGIC:
+            handle_binary(data, addr)
+            continue
+
         message = data.decode()
         
         # Check if JSON
@@ -174,7 +512,14 @@ while True:
                 handle_keyboard(payload)
             elif msg_type == "handshake":
                 print(f"Handshake requested from {addr}")
-                sock.sendto(b"ACK", addr)
+                seq_tracker.reset()
+                snapshots.reset()
+                release_mouse_buttons()
+                # Newer apps offer the binary protocol; older ones get a plain ACK and stay on JSON
+                if payload.get("proto", 0) >= PROTO_VERSION:
+                    sock.sendto(f"ACK proto={PROTO_VERSION} smooth_scroll gestures".encode(), addr)
+                else:
+                    sock.sendto(b"ACK", addr)
                 
         else:
             print(f"Received raw: {message}")